@@ -0,0 +1,235 @@
+package cellsociety;
+
+import cellsociety.configuration.XmlParser;
+import cellsociety.model.core.cell.Cell;
+import cellsociety.model.simulation.CheckpointWriter;
+import cellsociety.model.simulation.Simulation;
+import cellsociety.model.simulation.SimulationFactory;
+import cellsociety.model.simulation.SimulationHeader;
+import cellsociety.model.simulation.SimulationRecord;
+import cellsociety.model.simulation.SnapshotFile;
+import cellsociety.model.simulation.TrajectoryRecorder;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Runs a simulation from the command line, without JavaFX, so that batches of simulations can be
+ * run on machines without a display.
+ * <p>
+ * Usage: {@code HeadlessRunner <config.xml|snapshot.snap> <steps> [prefix] [stats interval]
+ * [checkpoint interval] [checkpoints kept] [keyframe interval]}
+ * <p>
+ * Writes the final state of the grid to {@code <prefix>_final.txt}, one row of the grid per line,
+ * and the number of cells in each state to {@code <prefix>_stats.csv}, as step,state,count rows,
+ * every stats interval steps (1 by default, 0 for none). A binary snapshot of the whole simulation
+ * is written to {@code <prefix>_final.snap}, from which a later run can carry on. Given a
+ * checkpoint interval, snapshots are also written every that many generations, in the background,
+ * to {@code <prefix>_checkpoint_<generation>.snap}, keeping only the most recent few (3 by
+ * default), so that long runs can be resumed after a crash. A run resumed from a snapshot carries
+ * on from the generation it was taken at, with the same random numbers. Given a keyframe interval,
+ * every generation is recorded to {@code <prefix>_trajectory.traj}, compressed, with a full grid
+ * every that many generations and only the cells that changed in between. The prefix defaults to
+ * the name of the configuration file. Steps per second and peak heap usage are printed on exit.
+ *
+ * @author Noah Loewy
+ */
+public class HeadlessRunner {
+
+  public static final String FINAL_STATE_SUFFIX = "_final.txt";
+  public static final String FINAL_SNAPSHOT_SUFFIX = "_final" + SnapshotFile.FILE_EXTENSION;
+  public static final String STATS_SUFFIX = "_stats.csv";
+  public static final String TRAJECTORY_SUFFIX = "_trajectory" + TrajectoryRecorder.FILE_EXTENSION;
+  public static final String STATS_HEADER = "step,state,count";
+  public static final int DEFAULT_CHECKPOINTS_KEPT = 3;
+  private static final double NANOS_PER_SECOND = 1e9;
+  private static final double BYTES_PER_MEGABYTE = 1024.0 * 1024.0;
+
+  /**
+   * Where, how often and how many checkpoints to write during a run
+   *
+   * @param prefix,   the path that the names of the checkpoint files start with
+   * @param interval, the number of generations between checkpoints
+   * @param kept,     the number of most recent checkpoints to keep
+   */
+  public record Checkpoints(Path prefix, int interval, int kept) {
+
+  }
+
+  /**
+   * Where and how to record every generation of a run
+   *
+   * @param path,             the trajectory file to write
+   * @param keyframeInterval, the number of generations between two full grids
+   * @param isCompressed,     whether to compress each frame with Deflate
+   */
+  public record Trajectory(Path path, int keyframeInterval, boolean isCompressed) {
+
+  }
+
+  /**
+   * Runs the simulation described by the command line arguments
+   *
+   * @param args, configuration file, number of steps, and optionally output prefix, stats interval,
+   *              checkpoint interval, number of checkpoints kept and trajectory keyframe interval
+   */
+  public static void main(String[] args) {
+    if (args.length < 2) {
+      System.err.println(
+          "Usage: HeadlessRunner <config.xml|snapshot.snap> <steps> [output prefix] "
+              + "[stats interval] [checkpoint interval] [checkpoints kept] [keyframe interval]");
+      System.exit(2);
+    }
+    try {
+      String prefix = args.length > 2 ? args[2] : args[0].replaceFirst("\\.(xml|snap)$", "");
+      int statsInterval = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+      int checkpointInterval = args.length > 4 ? Integer.parseInt(args[4]) : 0;
+      int checkpointsKept = args.length > 5 ? Integer.parseInt(args[5]) : DEFAULT_CHECKPOINTS_KEPT;
+      int keyframeInterval = args.length > 6 ? Integer.parseInt(args[6]) : 0;
+      run(args[0], Integer.parseInt(args[1]), Path.of(prefix + FINAL_STATE_SUFFIX),
+          statsInterval > 0 ? Path.of(prefix + STATS_SUFFIX) : null, statsInterval,
+          Path.of(prefix + FINAL_SNAPSHOT_SUFFIX), checkpointInterval > 0
+              ? new Checkpoints(Path.of(prefix), checkpointInterval, checkpointsKept) : null,
+          keyframeInterval > 0
+              ? new Trajectory(Path.of(prefix + TRAJECTORY_SUFFIX), keyframeInterval, true) : null);
+    } catch (RuntimeException | IOException e) {
+      System.err.println(e.getMessage());
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Loads a configuration file, runs its simulation and writes out the results
+   *
+   * @param configFile,    path to the XML configuration file
+   * @param steps,         number of steps to run
+   * @param finalState,    file to write the final state of the grid to
+   * @param stats,         file to write state counts to, or null for none
+   * @param statsInterval, number of steps between rows of state counts
+   * @throws IOException if either output file cannot be written
+   */
+  public static void run(String configFile, int steps, Path finalState, Path stats,
+      int statsInterval) throws IOException {
+    run(configFile, steps, finalState, stats, statsInterval, null, null, null);
+  }
+
+  /**
+   * Loads a configuration file or snapshot, runs its simulation and writes out the results
+   *
+   * @param configFile,    path to the XML configuration file, or to a snapshot to carry on from
+   * @param steps,         number of steps to run
+   * @param finalState,    file to write the final state of the grid to
+   * @param stats,         file to write state counts to, or null for none
+   * @param statsInterval, number of steps between rows of state counts
+   * @param snapshot,      file to write a snapshot of the final simulation to, or null for none
+   * @param checkpoints,   where, how often and how many checkpoints to write, or null for none
+   * @param trajectory,    where and how to record every generation, or null for none
+   * @throws IOException if an output file cannot be written or the snapshot cannot be read
+   */
+  public static void run(String configFile, int steps, Path finalState, Path stats,
+      int statsInterval, Path snapshot, Checkpoints checkpoints, Trajectory trajectory)
+      throws IOException {
+    SimulationHeader header;
+    Simulation<?> simulation;
+    int first = 0;
+    if (configFile.endsWith(SnapshotFile.FILE_EXTENSION)) {
+      try (SnapshotFile file = SnapshotFile.open(Path.of(configFile))) {
+        header = file.getHeader();
+        first = file.getGeneration();
+        simulation = file.restore();
+      }
+    } else {
+      XmlParser xmlParser = new XmlParser();
+      xmlParser.readXml(configFile);
+      header = new SimulationHeader(xmlParser.getType(), xmlParser.getHeight(),
+          xmlParser.getWidth(), xmlParser.getNeighborhoodType(),
+          new SimulationRecord(xmlParser.getParameters(), xmlParser.getGridEdgeType(),
+              xmlParser.getCellShape()));
+      simulation = SimulationFactory.create(header, xmlParser.getStates());
+    }
+
+    long start = System.nanoTime();
+    try (PrintWriter out = stats == null ? null
+        : new PrintWriter(Files.newBufferedWriter(stats));
+        CheckpointWriter writer = checkpoints == null ? null
+            : new CheckpointWriter(checkpoints.prefix(), header, checkpoints.interval(),
+                checkpoints.kept(), first);
+        TrajectoryRecorder recorder = trajectory == null ? null
+            : new TrajectoryRecorder(trajectory.path(), header.rows(), header.cols(),
+                trajectory.keyframeInterval(), trajectory.isCompressed())) {
+      if (out != null) {
+        out.println(STATS_HEADER);
+        writeCounts(out, first, simulation.countStates());
+      }
+      if (recorder != null) {
+        recorder.record(first, simulation.getStates());
+      }
+      for (int step = 1; step <= steps; step++) {
+        simulation.advance(1);
+        if (recorder != null) {
+          recorder.record(first + step, simulation.getStates());
+        }
+        if (out != null && step % statsInterval == 0) {
+          writeCounts(out, first + step, simulation.countStates());
+        }
+        if (writer != null) {
+          writer.update(simulation, first + step);
+        }
+      }
+      if (out != null && out.checkError()) {
+        throw new IOException("Could not write " + stats);
+      }
+    }
+    long elapsed = System.nanoTime() - start;
+
+    writeFinalState(simulation, header.cols(), finalState);
+    if (snapshot != null) {
+      SnapshotFile.write(snapshot, header, simulation, first + steps);
+    }
+    System.out.printf("%d steps of %d cells in %.3f s: %.1f steps/s%n", steps,
+        simulation.getNumCells(), elapsed / NANOS_PER_SECOND,
+        steps * NANOS_PER_SECOND / Math.max(1, elapsed));
+    System.out.printf("peak heap usage: %.1f MB%n", peakHeapUsage() / BYTES_PER_MEGABYTE);
+  }
+
+  private static void writeCounts(PrintWriter out, int step, Map<Integer, Integer> counts) {
+    for (Map.Entry<Integer, Integer> entry : counts.entrySet()) {
+      out.print(step);
+      out.print(',');
+      out.print(entry.getKey());
+      out.print(',');
+      out.println(entry.getValue());
+    }
+  }
+
+  private static void writeFinalState(Simulation<?> simulation, int width, Path file)
+      throws IOException {
+    try (BufferedWriter out = Files.newBufferedWriter(file)) {
+      Iterator<? extends Cell> iterator = simulation.getIterator();
+      for (int i = 0; iterator.hasNext(); i++) {
+        out.write(Integer.toString(iterator.next().getCurrentState()));
+        out.write((i + 1) % width == 0 ? '\n' : ' ');
+      }
+    }
+  }
+
+  /**
+   * @return the sum of the peak usage of every heap memory pool, in bytes
+   */
+  private static long peakHeapUsage() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    return peak;
+  }
+}
@@ -0,0 +1,112 @@
+package cellsociety;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generates random layouts of cells with an exact number of cells of each state, such as the
+ * random configurations of configuration files or the placement of agents in a simulation. Each
+ * layout is equally likely, as if every cell were listed and the list shuffled, but the layout is
+ * written straight into a primitive array in one pass: walking the cells in order, each cell takes
+ * a state with probability proportional to the number of cells of that state still to be placed.
+ * Layouts are reproducible from the seed of the random number generator.
+ *
+ * @author Noah Loewy
+ */
+public class RandomLayout {
+
+  private final Random myRandom;
+
+  /**
+   * Creates a generator drawing from a random number generator, such as a simulation's
+   *
+   * @param random, the random number generator
+   */
+  public RandomLayout(Random random) {
+    myRandom = random;
+  }
+
+  /**
+   * Creates a generator whose layouts are decided by a seed
+   *
+   * @param seed, the seed of the random number generator
+   */
+  public RandomLayout(long seed) {
+    this(new Random(seed));
+  }
+
+  /**
+   * Generates a layout with an exact number of cells of each state
+   *
+   * @param states, the states to place
+   * @param counts, the number of cells of each state, in the same order as states
+   * @return the state of each cell, as many cells as the counts add up to
+   * @throws IllegalArgumentException if a count is negative, the counts add up to more cells than
+   *                                  an array can hold, or there are not as many counts as states
+   */
+  public int[] generate(int[] states, int[] counts) throws IllegalArgumentException {
+    if (states.length != counts.length) {
+      throw new IllegalArgumentException(
+          "Expected " + states.length + " counts but found " + counts.length);
+    }
+    long total = 0;
+    for (int count : counts) {
+      if (count < 0) {
+        throw new IllegalArgumentException("Negative count " + count);
+      }
+      total += count;
+    }
+    if (total > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Too many cells: " + total);
+    }
+    int[] layout = new int[(int) total];
+    int[] remaining = counts.clone();
+    int kinds = (int) Arrays.stream(counts).filter(count -> count > 0).count();
+    for (int i = 0; i < layout.length; i++) {
+      if (kinds == 1) {
+        // every cell left takes the one state left
+        int k = 0;
+        while (remaining[k] == 0) {
+          k++;
+        }
+        Arrays.fill(layout, i, layout.length, states[k]);
+        break;
+      }
+      int pick = myRandom.nextInt(layout.length - i);
+      int k = 0;
+      while (pick >= remaining[k]) {
+        pick -= remaining[k];
+        k++;
+      }
+      layout[i] = states[k];
+      if (--remaining[k] == 0) {
+        kinds--;
+      }
+    }
+    return layout;
+  }
+
+  /**
+   * Chooses an exact number of cells at random, with selection sampling
+   *
+   * @param numCells, the number of cells to choose from
+   * @param count,    the number of cells to choose
+   * @return whether each cell is chosen
+   * @throws IllegalArgumentException if the count is negative or more than the number of cells
+   */
+  public boolean[] choose(int numCells, int count) throws IllegalArgumentException {
+    if (count < 0 || count > numCells) {
+      throw new IllegalArgumentException(
+          "Cannot choose " + count + " of " + numCells + " cells");
+    }
+    boolean[] isChosen = new boolean[numCells];
+    int needed = count;
+    for (int i = 0; i < numCells && needed > 0; i++) {
+      if (myRandom.nextInt(numCells - i) < needed) {
+        isChosen[i] = true;
+        needed--;
+      }
+    }
+    return isChosen;
+  }
+}
@@ -0,0 +1,356 @@
+package cellsociety;
+
+import cellsociety.configuration.ConfigurationValidator;
+import cellsociety.configuration.XmlParser;
+import cellsociety.model.core.grid.NeighborTable;
+import cellsociety.model.simulation.EnsembleSimulation;
+import cellsociety.model.simulation.Simulation;
+import cellsociety.model.simulation.SimulationFactory;
+import cellsociety.model.simulation.SimulationRecord;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs one configuration over every combination of a set of parameter values, with several seeded
+ * replicates of each, without JavaFX. Runs are independent headless simulations executed on a
+ * fixed pool of threads. Combinations are generated one at a time and only handed to the pool when
+ * a thread is free, so at most one simulation per thread exists at any time, however large the
+ * sweep.
+ * <p>
+ * Usage: {@code SweepRunner <config.xml> <steps> <results.csv> [options] <name=values>...}
+ * <p>
+ * Values are either a comma-separated list ({@code energyBoost=1,2,4}) or an inclusive range with a
+ * step ({@code probTreeIgnites=0:0.1:0.01}). Options are {@code --seeds N} (replicates per
+ * combination, 1 by default), {@code --seed S} (seed of the first replicate, 0 by default),
+ * {@code --threads T} (all processors by default) and {@code --ensemble}, which runs all replicates
+ * of a combination together as one EnsembleSimulation (Game of Life and Fire only). In ensemble
+ * mode the grid topology is built once for the whole sweep, and the seconds reported for each run
+ * are those of its ensemble divided by the number of replicates. Every swept name must be a
+ * parameter of the configuration's simulation type. For configurations whose cells are placed by a
+ * random configuration, each replicate gets its own layout, drawn from its seed, so that a row can
+ * be reproduced from its seed alone. Each run appends one row to the
+ * results file as soon as it finishes: run, seed, the swept parameter values, seconds taken and the
+ * final number of cells in each state, as state=count pairs separated by semicolons.
+ *
+ * @author Noah Loewy
+ */
+public class SweepRunner {
+
+  public static final String RANGE_SEPARATOR = ":";
+  public static final String LIST_SEPARATOR = ",";
+  private static final double NANOS_PER_SECOND = 1e9;
+  private static final double RANGE_TOLERANCE = 1e-9;
+
+  /**
+   * The values to sweep one parameter over
+   *
+   * @param name,   the name of the parameter
+   * @param values, every value the parameter takes
+   */
+  public record Sweep(String name, double[] values) {
+
+    /**
+     * Parses a sweep from the command line
+     *
+     * @param argument, of the form name=v1,v2,... or name=from:to:step
+     * @return the parsed sweep
+     * @throws IllegalArgumentException if the argument is not of either form
+     */
+    public static Sweep parse(String argument) throws IllegalArgumentException {
+      int equals = argument.indexOf('=');
+      if (equals <= 0) {
+        throw new IllegalArgumentException("Expected name=values but found " + argument);
+      }
+      String name = argument.substring(0, equals);
+      String values = argument.substring(equals + 1);
+      if (!values.contains(RANGE_SEPARATOR)) {
+        String[] list = values.split(LIST_SEPARATOR);
+        double[] parsed = new double[list.length];
+        for (int i = 0; i < list.length; i++) {
+          parsed[i] = Double.parseDouble(list[i]);
+        }
+        return new Sweep(name, parsed);
+      }
+      String[] range = values.split(RANGE_SEPARATOR);
+      if (range.length != 3) {
+        throw new IllegalArgumentException("Expected from:to:step but found " + values);
+      }
+      double from = Double.parseDouble(range[0]);
+      double to = Double.parseDouble(range[1]);
+      double step = Double.parseDouble(range[2]);
+      if (step <= 0 || to < from) {
+        throw new IllegalArgumentException("Empty range " + values);
+      }
+      double[] parsed = new double[(int) Math.floor((to - from) / step + RANGE_TOLERANCE) + 1];
+      for (int i = 0; i < parsed.length; i++) {
+        parsed[i] = from + i * step;
+      }
+      return new Sweep(name, parsed);
+    }
+  }
+
+  /**
+   * Runs the sweep described by the command line arguments
+   *
+   * @param args, configuration file, number of steps, results file, options and sweeps
+   */
+  public static void main(String[] args) {
+    if (args.length < 4) {
+      System.err.println("Usage: SweepRunner <config.xml> <steps> <results.csv> "
+          + "[--seeds N] [--seed S] [--threads T] [--ensemble] <name=values>...");
+      System.exit(2);
+    }
+    try {
+      int seeds = 1;
+      long firstSeed = 0;
+      int threads = Runtime.getRuntime().availableProcessors();
+      boolean ensemble = false;
+      List<Sweep> sweeps = new ArrayList<>();
+      for (int i = 3; i < args.length; i++) {
+        switch (args[i]) {
+          case "--seeds" -> seeds = Integer.parseInt(args[++i]);
+          case "--seed" -> firstSeed = Long.parseLong(args[++i]);
+          case "--threads" -> threads = Integer.parseInt(args[++i]);
+          case "--ensemble" -> ensemble = true;
+          default -> sweeps.add(Sweep.parse(args[i]));
+        }
+      }
+      long start = System.nanoTime();
+      long runs = run(args[0], Integer.parseInt(args[1]), sweeps, seeds, firstSeed, threads,
+          ensemble, Path.of(args[2]));
+      System.out.printf("%d runs on %d threads in %.3f s%n", runs, threads,
+          (System.nanoTime() - start) / NANOS_PER_SECOND);
+    } catch (RuntimeException | IOException e) {
+      System.err.println(e.getMessage());
+      System.exit(1);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Runs every combination of parameter values, with several replicates each, and writes one row
+   * per run to the results file
+   *
+   * @param configFile, path to the XML configuration file the runs are based on
+   * @param steps,      number of steps of each run
+   * @param sweeps,     the values to sweep each parameter over. Parameters not swept keep the value
+   *                    from the configuration file.
+   * @param seeds,      number of replicates of each combination
+   * @param firstSeed,  seed of the first replicate; replicate i uses firstSeed + i
+   * @param threads,    maximum number of simulations run at once
+   * @param ensemble,   whether to run the replicates of each combination as one ensemble
+   * @param results,    file to write the results to
+   * @return the number of runs
+   * @throws IOException              if the results file cannot be written
+   * @throws InterruptedException     if interrupted while waiting for runs to finish
+   * @throws IllegalArgumentException if a swept name is not a parameter of the simulation type
+   */
+  public static long run(String configFile, int steps, List<Sweep> sweeps, int seeds,
+      long firstSeed, int threads, boolean ensemble, Path results)
+      throws IOException, InterruptedException, IllegalArgumentException {
+    XmlParser xmlParser = new XmlParser();
+    xmlParser.setRandomSeed(firstSeed);
+    xmlParser.readXml(configFile);
+    Set<String> parameters = XmlParser.SIMULATION_PARAMETERS.get(xmlParser.getType());
+    for (Sweep sweep : sweeps) {
+      if (!parameters.contains(sweep.name())) {
+        throw new IllegalArgumentException("No parameter " + sweep.name() + " in "
+            + xmlParser.getType() + " simulations, which have " + parameters);
+      }
+    }
+    Simulation<?> template = ensemble ? create(xmlParser, xmlParser.getParameters(), null) : null;
+    NeighborTable neighbors = ensemble ? template.buildNeighborTable() : null;
+    int[] initialStates = ensemble ? template.getStates() : null;
+    if (ensemble) {
+      // fail now, rather than once per combination, if the type has no ensemble
+      SimulationFactory.createEnsemble(xmlParser.getType(), neighbors, initialStates, 1, firstSeed,
+          xmlParser.getParameters());
+    }
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    Semaphore permits = new Semaphore(threads);
+    long runs = 0;
+    try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(results))) {
+      out.println(header(sweeps));
+      int[] combination = new int[sweeps.size()];
+      do {
+        Map<String, Double> params = new HashMap<>(xmlParser.getParameters());
+        StringJoiner values = new StringJoiner(LIST_SEPARATOR);
+        for (int i = 0; i < sweeps.size(); i++) {
+          double value = sweeps.get(i).values()[combination[i]];
+          params.put(sweeps.get(i).name(), value);
+          values.add(Double.toString(value));
+        }
+        if (ensemble) {
+          long firstRun = runs;
+          runs += seeds;
+          permits.acquire();
+          pool.execute(() -> {
+            try {
+              String[] rows = runEnsemble(xmlParser, neighbors, initialStates, params, seeds,
+                  firstSeed, steps);
+              synchronized (out) {
+                for (int replicate = 0; replicate < seeds; replicate++) {
+                  out.println((firstRun + replicate) + LIST_SEPARATOR + (firstSeed + replicate)
+                      + LIST_SEPARATOR + values + rows[replicate]);
+                }
+              }
+            } finally {
+              permits.release();
+            }
+          });
+        }
+        for (int replicate = 0; !ensemble && replicate < seeds; replicate++) {
+          long run = runs++;
+          long seed = firstSeed + replicate;
+          permits.acquire();
+          pool.execute(() -> {
+            try {
+              String row = runOnce(xmlParser, params, seed, steps);
+              synchronized (out) {
+                out.println(run + LIST_SEPARATOR + seed + LIST_SEPARATOR + values + row);
+              }
+            } finally {
+              permits.release();
+            }
+          });
+        }
+      } while (nextCombination(combination, sweeps));
+      pool.shutdown();
+      pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      if (out.checkError()) {
+        throw new IOException("Could not write " + results);
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+    return runs;
+  }
+
+  private static String header(List<Sweep> sweeps) {
+    StringJoiner header = new StringJoiner(LIST_SEPARATOR);
+    header.add("run").add("seed");
+    for (Sweep sweep : sweeps) {
+      header.add(sweep.name());
+    }
+    return header.add("seconds").add("counts").toString();
+  }
+
+  /**
+   * Moves on to the next combination of parameter values, odometer style
+   *
+   * @return false once every combination has been visited
+   */
+  private static boolean nextCombination(int[] combination, List<Sweep> sweeps) {
+    for (int i = combination.length - 1; i >= 0; i--) {
+      if (++combination[i] < sweeps.get(i).values().length) {
+        return true;
+      }
+      combination[i] = 0;
+    }
+    return false;
+  }
+
+  /**
+   * Builds and runs one simulation
+   *
+   * @return the end of the run's results row, or the error that stopped it
+   */
+  private static String runOnce(XmlParser xmlParser, Map<String, Double> params, long seed,
+      int steps) {
+    try {
+      Simulation<?> simulation = create(xmlParser, params, seed);
+      long start = System.nanoTime();
+      simulation.advance(steps);
+      double seconds = (System.nanoTime() - start) / NANOS_PER_SECOND;
+      return resultsRow(seconds, simulation.countStates());
+    } catch (RuntimeException e) {
+      return errorRow(e);
+    }
+  }
+
+  /**
+   * Builds and runs one ensemble holding every replicate of a combination. A random configuration
+   * is laid out again for each replicate, from the same seed as its random number generator.
+   *
+   * @return the end of the results row of each replicate, or the error that stopped them
+   */
+  private static String[] runEnsemble(XmlParser xmlParser, NeighborTable neighbors,
+      int[] initialStates, Map<String, Double> params, int seeds, long firstSeed, int steps) {
+    String[] rows = new String[seeds];
+    try {
+      EnsembleSimulation ensemble = SimulationFactory.createEnsemble(xmlParser.getType(),
+          neighbors, initialStates, seeds, firstSeed, params);
+      for (int replicate = 0; xmlParser.isRandomlyConfigured() && replicate < seeds; replicate++) {
+        ensemble.setStates(replicate,
+            xmlParser.generateRandomStates(new RandomLayout(firstSeed + replicate)));
+      }
+      long start = System.nanoTime();
+      ensemble.advance(steps);
+      double seconds = (System.nanoTime() - start) / NANOS_PER_SECOND / seeds;
+      for (int replicate = 0; replicate < seeds; replicate++) {
+        rows[replicate] = resultsRow(seconds, ensemble.countStates(replicate));
+      }
+    } catch (RuntimeException e) {
+      Arrays.fill(rows, errorRow(e));
+    }
+    return rows;
+  }
+
+  /**
+   * Builds a simulation, seeded before its cells are created so that any random numbers drawn
+   * while creating them, such as the placement of Sugarscape agents, follow from the seed. A
+   * random configuration is laid out again from the seed too, rather than shared by every run.
+   */
+  private static Simulation<?> create(XmlParser xmlParser, Map<String, Double> params,
+      Long seed) {
+    List<Integer> states = xmlParser.getStates();
+    if (seed != null && xmlParser.isRandomlyConfigured()) {
+      states = asList(xmlParser.generateRandomStates(new RandomLayout(seed)));
+    }
+    return SimulationFactory.create(xmlParser.getType(), xmlParser.getHeight(),
+        xmlParser.getWidth(), xmlParser.getNeighborhoodType(), states,
+        new SimulationRecord(params, xmlParser.getGridEdgeType(), xmlParser.getCellShape(),
+            seed));
+  }
+
+  private static List<Integer> asList(int[] states) {
+    return new AbstractList<>() {
+      @Override
+      public Integer get(int index) {
+        return states[index];
+      }
+
+      @Override
+      public int size() {
+        return states.length;
+      }
+    };
+  }
+
+  private static String resultsRow(double seconds, Map<Integer, Integer> stateCounts) {
+    StringJoiner counts = new StringJoiner(";");
+    stateCounts.forEach((state, count) -> counts.add(state + "=" + count));
+    return LIST_SEPARATOR + seconds + LIST_SEPARATOR + counts;
+  }
+
+  private static String errorRow(RuntimeException e) {
+    return LIST_SEPARATOR + LIST_SEPARATOR
+        + ConfigurationValidator.csvField("error: " + e.getMessage());
+  }
+}
@@ -0,0 +1,86 @@
+package cellsociety;
+
+import cellsociety.configuration.ConfigurationValidator;
+import cellsociety.configuration.ConfigurationValidator.Result;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Validates every configuration file in a directory tree from the command line, without JavaFX,
+ * so that broken configurations are found before a user opens them, for instance as a health check
+ * when the program is deployed.
+ * <p>
+ * Usage: {@code ValidationRunner <directory> [report.csv] [--threads T]}
+ * <p>
+ * Files are read on T threads, all processors by default. Each invalid file is printed with the
+ * message of the exception it throws, followed by the number of valid and invalid files. The full
+ * report, as described in ConfigurationValidator, is written to the report file if given. Exits
+ * with status 0 if every file is valid, 1 if any is invalid or the directory cannot be read, and 2
+ * if the arguments are wrong.
+ *
+ * @author Noah Loewy
+ */
+public class ValidationRunner {
+
+  private static final String USAGE =
+      "Usage: ValidationRunner <directory> [report.csv] [--threads T]";
+
+  /**
+   * Validates the directory given by the command line arguments
+   *
+   * @param args, directory, and optionally report file and number of threads
+   */
+  public static void main(String[] args) {
+    Path directory = null;
+    Path report = null;
+    int threads = Runtime.getRuntime().availableProcessors();
+    try {
+      if (args.length < 1) {
+        throw new IllegalArgumentException("Missing directory");
+      }
+      directory = Path.of(args[0]);
+      for (int i = 1; i < args.length; i++) {
+        if (args[i].equals("--threads")) {
+          if (i + 1 == args.length) {
+            throw new IllegalArgumentException("Missing number of threads");
+          }
+          threads = Integer.parseInt(args[++i]);
+          if (threads <= 0) {
+            throw new IllegalArgumentException("Number of threads must be positive");
+          }
+        } else if (report == null && !args[i].startsWith("--")) {
+          report = Path.of(args[i]);
+        } else {
+          throw new IllegalArgumentException("Unexpected argument " + args[i]);
+        }
+      }
+    } catch (IllegalArgumentException e) {
+      // also covers numbers that cannot be parsed and paths that cannot be formed
+      System.err.println(e.getMessage());
+      System.err.println(USAGE);
+      System.exit(2);
+    }
+    try {
+      List<Result> results = new ConfigurationValidator(null, threads).validate(directory);
+      long invalid = 0;
+      for (Result result : results) {
+        if (!result.isValid()) {
+          System.out.println(result.file() + ": " + result.exception() + ": " + result.message());
+          invalid++;
+        }
+      }
+      System.out.println((results.size() - invalid) + " valid, " + invalid + " invalid");
+      if (report != null) {
+        ConfigurationValidator.writeReport(results, report);
+      }
+      System.exit(invalid == 0 ? 0 : 1);
+    } catch (RuntimeException | IOException e) {
+      System.err.println(e.getMessage());
+      System.exit(1);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      System.exit(1);
+    }
+  }
+}
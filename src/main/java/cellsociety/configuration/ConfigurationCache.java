@@ -0,0 +1,154 @@
+package cellsociety.configuration;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the configurations read by XmlParsers after they are parsed and validated, so that opening
+ * the same file again skips reading it. Each configuration is kept under the real path of its
+ * file, along with the time the file was last modified and its size when it was read; if either
+ * has changed since, the configuration is read again. The cell states are kept as the primitive
+ * array the parser decoded, and the configurations used least recently are dropped once they take
+ * more than the memory budget. A cache may be shared by XmlParsers on different threads.
+ *
+ * @author Judy He
+ */
+public class ConfigurationCache {
+
+  // estimate of the memory taken by the fields of a configuration other than its states
+  private static final long ENTRY_OVERHEAD_BYTES = 1024;
+  private final long myMemoryBudget;
+  private final Map<Path, CachedConfiguration> myConfigurations = new LinkedHashMap<>(16, 0.75f,
+      true);
+  private long myMemoryUsage;
+
+  /**
+   * A configuration file as it was when it was read
+   *
+   * @param path,     the real path to the file
+   * @param modified, the time the file was last modified, in milliseconds since the epoch
+   * @param size,     the size of the file in bytes
+   */
+  record FileStamp(Path path, long modified, long size) {
+
+  }
+
+  /**
+   * Every value an XmlParser reads from a configuration file, after validation. The maps and the
+   * states must not be modified.
+   */
+  record ParsedConfiguration(String type, String title, String author, String fileDescription,
+                             String displayDescription, int width, int height,
+                             String neighborhoodType, int[] states, Map<String, Double> parameters,
+                             String language, String cellShape, String gridEdgeType,
+                             String sliderInitial, String stateEncoding,
+                             Map<String, Integer> randomConfigurationTotalStates,
+                             int totalNumCells) {
+
+  }
+
+  private record CachedConfiguration(FileStamp stamp, ParsedConfiguration configuration,
+                                     long memory) {
+
+  }
+
+  /**
+   * Creates an empty cache
+   *
+   * @param memoryBudget, the number of bytes the cached configurations may take
+   */
+  public ConfigurationCache(long memoryBudget) {
+    myMemoryBudget = memoryBudget;
+  }
+
+  /**
+   * Finds the real path, modification time and size of a configuration file
+   *
+   * @param path, the path to the file
+   * @return the stamp of the file, or null if the file cannot be found or read
+   */
+  FileStamp stamp(String path) {
+    try {
+      Path realPath = Path.of(path).toRealPath();
+      BasicFileAttributes attributes = Files.readAttributes(realPath, BasicFileAttributes.class);
+      return new FileStamp(realPath, attributes.lastModifiedTime().toMillis(), attributes.size());
+    } catch (IOException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Finds the configuration read from a file, if the file has not changed since
+   *
+   * @param stamp, the stamp of the file
+   * @return the configuration, or null if it is not cached or the file has changed
+   */
+  synchronized ParsedConfiguration get(FileStamp stamp) {
+    CachedConfiguration cached = myConfigurations.get(stamp.path());
+    if (cached == null) {
+      return null;
+    }
+    if (!cached.stamp().equals(stamp)) {
+      remove(stamp.path());
+      return null;
+    }
+    return cached.configuration();
+  }
+
+  /**
+   * Keeps the configuration read from a file, dropping the configurations used least recently if
+   * the cache takes more than its memory budget. A configuration larger than the whole budget is
+   * not kept.
+   *
+   * @param stamp,         the stamp of the file, taken before it was read
+   * @param configuration, the configuration read from the file
+   */
+  synchronized void put(FileStamp stamp, ParsedConfiguration configuration) {
+    remove(stamp.path());
+    long memory = ENTRY_OVERHEAD_BYTES + (long) configuration.states().length * Integer.BYTES;
+    if (memory > myMemoryBudget) {
+      return;
+    }
+    myConfigurations.put(stamp.path(), new CachedConfiguration(stamp, configuration, memory));
+    myMemoryUsage += memory;
+    Iterator<CachedConfiguration> eldest = myConfigurations.values().iterator();
+    while (myMemoryUsage > myMemoryBudget) {
+      myMemoryUsage -= eldest.next().memory();
+      eldest.remove();
+    }
+  }
+
+  /**
+   * @return the number of configurations in the cache
+   */
+  public synchronized int size() {
+    return myConfigurations.size();
+  }
+
+  /**
+   * @return an estimate of the number of bytes taken by the cached configurations
+   */
+  public synchronized long getMemoryUsage() {
+    return myMemoryUsage;
+  }
+
+  /**
+   * Drops every cached configuration
+   */
+  public synchronized void clear() {
+    myConfigurations.clear();
+    myMemoryUsage = 0;
+  }
+
+  private void remove(Path path) {
+    CachedConfiguration removed = myConfigurations.remove(path);
+    if (removed != null) {
+      myMemoryUsage -= removed.memory();
+    }
+  }
+}
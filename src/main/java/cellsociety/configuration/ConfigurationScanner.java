@@ -0,0 +1,184 @@
+package cellsociety.configuration;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads a configuration file in a single streaming pass with StAX, without building a document.
+ * The text of every field of the simulation element is kept as a string, except for the cell
+ * states, whose text is handed to a StatesDecoder chunk by chunk as it is read. Interpreting and
+ * validating the values is left to the XmlParser. The states field may be marked as run-length
+ * encoded with an encoding attribute, as described in StatesDecoder.
+ *
+ * @author Judy He
+ */
+public class ConfigurationScanner {
+
+  private final Map<String, String> myFields = new HashMap<>();
+  private final Map<String, List<Map.Entry<String, String>>> myGroups = new HashMap<>();
+  private StatesDecoder myStates;
+  private String myStatesEncoding;
+  private boolean hasSimulation;
+  private boolean hasFields;
+
+  /**
+   * Scans a configuration file
+   *
+   * @param path,          the path to the configuration file
+   * @param statesField,   the name of the field holding the cell states
+   * @param groupFields,   the names of the fields holding a list of named values, such as
+   *                       parameters
+   * @param expectedCells, gives the number of states expected, or 0 if unknown, from the fields
+   *                       read before the states field
+   * @throws IOException        if the file cannot be read
+   * @throws XMLStreamException if the file is not well-formed XML
+   */
+  public ConfigurationScanner(String path, String statesField, List<String> groupFields,
+      ToIntFunction<ConfigurationScanner> expectedCells) throws IOException, XMLStreamException {
+    XMLInputFactory factory = XMLInputFactory.newFactory();
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    try (InputStream in = new BufferedInputStream(Files.newInputStream(Path.of(path)))) {
+      XMLStreamReader reader = factory.createXMLStreamReader(in);
+      try {
+        scan(reader, statesField, groupFields, expectedCells);
+      } finally {
+        reader.close();
+      }
+    }
+  }
+
+  /**
+   * @return true if and only if the file has a simulation element
+   */
+  public boolean hasSimulation() {
+    return hasSimulation;
+  }
+
+  /**
+   * @return true if and only if the simulation element contains at least one element
+   */
+  public boolean hasFields() {
+    return hasFields;
+  }
+
+  /**
+   * @param name, the name of a field of the simulation element
+   * @return the text of the first field with the given name, or null if there is none
+   */
+  public String getField(String name) {
+    return myFields.get(name);
+  }
+
+  /**
+   * @param name, the name of a field holding a list of named values
+   * @return the name and text of every element in the first field with the given name, in order,
+   * or null if there is no such field
+   */
+  public List<Map.Entry<String, String>> getGroup(String name) {
+    return myGroups.get(name);
+  }
+
+  /**
+   * @return the decoder holding the cell states, or null if there is no field of cell states
+   */
+  public StatesDecoder getStates() {
+    return myStates;
+  }
+
+  /**
+   * @return the encoding attribute of the field of cell states, or null if there is none
+   */
+  public String getStatesEncoding() {
+    return myStatesEncoding;
+  }
+
+  private void scan(XMLStreamReader reader, String statesField, List<String> groupFields,
+      ToIntFunction<ConfigurationScanner> expectedCells) throws XMLStreamException {
+    int depth = 0;
+    int simulationDepth = -1;
+    boolean isDone = false;
+    String field = null;
+    List<Map.Entry<String, String>> group = null;
+    String entry = null;
+    StringBuilder text = new StringBuilder();
+    StatesDecoder states = null;
+    while (reader.hasNext()) {
+      switch (reader.next()) {
+        case XMLStreamConstants.START_ELEMENT -> {
+          depth++;
+          String name = reader.getLocalName();
+          if (isDone) {
+            continue;
+          }
+          if (simulationDepth < 0) {
+            if (name.equals("simulation")) {
+              hasSimulation = true;
+              simulationDepth = depth;
+            }
+          } else if (depth == simulationDepth + 1) {
+            hasFields = true;
+            field = name;
+            text.setLength(0);
+            if (name.equals(statesField) && myStates == null) {
+              myStatesEncoding = reader.getAttributeValue(null, StatesDecoder.ENCODING_ATTRIBUTE);
+              states = new StatesDecoder(expectedCells.applyAsInt(this),
+                  StatesDecoder.RUN_LENGTH_ENCODING.equals(myStatesEncoding));
+            } else if (groupFields.contains(name) && !myGroups.containsKey(name)) {
+              group = new ArrayList<>();
+            }
+          } else if (depth == simulationDepth + 2 && group != null) {
+            entry = name;
+            text.setLength(0);
+          }
+        }
+        case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA, XMLStreamConstants.SPACE -> {
+          if (states != null) {
+            states.decode(reader.getTextCharacters(), reader.getTextStart(),
+                reader.getTextLength());
+          } else if (field != null) {
+            text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+          }
+        }
+        case XMLStreamConstants.END_ELEMENT -> {
+          if (isDone) {
+            depth--;
+            continue;
+          }
+          if (depth == simulationDepth + 2 && entry != null) {
+            group.add(new SimpleEntry<>(entry, text.toString()));
+            entry = null;
+          } else if (depth == simulationDepth + 1) {
+            if (states != null) {
+              myStates = states;
+              states = null;
+            } else if (group != null) {
+              myGroups.put(field, group);
+              group = null;
+            } else {
+              myFields.putIfAbsent(field, text.toString());
+            }
+            field = null;
+          } else if (depth == simulationDepth) {
+            isDone = true;
+          }
+          depth--;
+        }
+        default -> {
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,178 @@
+package cellsociety.configuration;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Reads and validates every configuration file in a directory tree at once, on a fixed pool of
+ * threads, the way an XmlParser does when a user opens one. Every file is read, so a single report
+ * lists all the invalid files along with the message of the exception each one throws. Valid
+ * configurations are kept in a ConfigurationCache, if given, so that opening them afterwards skips
+ * reading them.
+ * <p>
+ * The report is a CSV file with one row per configuration file: its path, whether it is valid, its
+ * simulation type and grid size, the milliseconds taken to read it, and for invalid files the
+ * name of the exception thrown and its message.
+ *
+ * @author Judy He
+ */
+public class ConfigurationValidator {
+
+  public static final String REPORT_HEADER = "file,status,type,width,height,millis,exception,"
+      + "message";
+  public static final String VALID_STATUS = "valid";
+  public static final String INVALID_STATUS = "invalid";
+  public static final List<String> FILE_EXTENSIONS = List.of(".xml",
+      "." + LifePatternReader.FILE_EXTENSION);
+  private static final double NANOS_PER_MILLI = 1e6;
+  private final ConfigurationCache myCache;
+  private final int myThreads;
+
+  /**
+   * The outcome of reading one configuration file
+   *
+   * @param file,      the configuration file
+   * @param type,      the simulation type, or null if the file is invalid
+   * @param width,     the number of columns in the grid, or 0 if the file is invalid
+   * @param height,    the number of rows in the grid, or 0 if the file is invalid
+   * @param millis,    the milliseconds taken to read and validate the file
+   * @param exception, the name of the exception thrown, or null if the file is valid
+   * @param message,   the message of the exception thrown, or null if the file is valid
+   */
+  public record Result(Path file, String type, int width, int height, double millis,
+                       String exception, String message) {
+
+    /**
+     * @return true if and only if the file is a valid configuration
+     */
+    public boolean isValid() {
+      return exception == null;
+    }
+  }
+
+  /**
+   * Creates a validator
+   *
+   * @param cache,   where to keep valid configurations, or null to not keep them
+   * @param threads, the number of files read at once
+   */
+  public ConfigurationValidator(ConfigurationCache cache, int threads) {
+    if (threads <= 0) {
+      throw new IllegalArgumentException("Number of threads must be positive");
+    }
+    myCache = cache;
+    myThreads = threads;
+  }
+
+  /**
+   * Reads and validates every configuration file under a directory
+   *
+   * @param root, the directory to search, including its subdirectories
+   * @return the outcome of reading each file, in order of their paths
+   * @throws IOException          if the directory cannot be searched
+   * @throws InterruptedException if interrupted while waiting for the files to be read
+   */
+  public List<Result> validate(Path root) throws IOException, InterruptedException {
+    List<Path> files;
+    try (Stream<Path> paths = Files.walk(root)) {
+      files = paths.filter(Files::isRegularFile).filter(this::isConfiguration).sorted().toList();
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    List<Callable<Result>> tasks = new ArrayList<>();
+    for (Path file : files) {
+      tasks.add(() -> validateFile(file));
+    }
+    ExecutorService pool = Executors.newFixedThreadPool(myThreads);
+    try {
+      List<Result> results = new ArrayList<>();
+      for (Future<Result> result : pool.invokeAll(tasks)) {
+        results.add(result.get());
+      }
+      return results;
+    } catch (ExecutionException e) {
+      // validateFile reports every exception in its result, so only errors end up here
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Writes the outcome of reading each file as a CSV report
+   *
+   * @param results, the outcome of reading each file
+   * @param report,  the file to write
+   * @throws IOException if the report cannot be written
+   */
+  public static void writeReport(List<Result> results, Path report) throws IOException {
+    try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(report))) {
+      out.println(REPORT_HEADER);
+      for (Result result : results) {
+        StringJoiner row = new StringJoiner(",");
+        row.add(csvField(result.file().toString()))
+            .add(result.isValid() ? VALID_STATUS : INVALID_STATUS)
+            .add(csvField(result.type()))
+            .add(Integer.toString(result.width()))
+            .add(Integer.toString(result.height()))
+            .add(String.format(Locale.ROOT, "%.3f", result.millis()))
+            .add(csvField(result.exception()))
+            .add(csvField(result.message()));
+        out.println(row);
+      }
+      if (out.checkError()) {
+        throw new IOException("Could not write " + report);
+      }
+    }
+  }
+
+  private boolean isConfiguration(Path file) {
+    String name = file.getFileName().toString();
+    return FILE_EXTENSIONS.stream().anyMatch(name::endsWith);
+  }
+
+  /**
+   * Reads one file, turning any exception it throws into an invalid result
+   */
+  private Result validateFile(Path file) {
+    long start = System.nanoTime();
+    try {
+      XmlParser xmlParser = new XmlParser(myCache);
+      xmlParser.readXml(file.toString());
+      return new Result(file, xmlParser.getType(), xmlParser.getWidth(), xmlParser.getHeight(),
+          (System.nanoTime() - start) / NANOS_PER_MILLI, null, null);
+    } catch (RuntimeException e) {
+      return new Result(file, null, 0, 0, (System.nanoTime() - start) / NANOS_PER_MILLI,
+          e.getClass().getSimpleName(), e.getMessage());
+    }
+  }
+
+  /**
+   * Quotes a field of a CSV file, such as the report, if it holds a comma, quote or line break
+   *
+   * @param value, the field to write
+   * @return the field as it is written in the file, or an empty string if it is null
+   */
+  public static String csvField(String value) {
+    if (value == null) {
+      return "";
+    }
+    if (value.chars().noneMatch(c -> c == ',' || c == '"' || c == '\n' || c == '\r')) {
+      return value;
+    }
+    return '"' + value.replace("\"", "\"\"") + '"';
+  }
+}
@@ -0,0 +1,205 @@
+package cellsociety.configuration;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Writes a configuration file in a single streaming pass with StAX, without building a document.
+ * Output goes through a buffered writer on a file channel, and the cell states are written a chunk
+ * at a time straight from an array of states, so saving a grid needs no more memory than the grid
+ * itself. Files are laid out like the hand-written ones in data/, one field per line, so that they
+ * can be read back by the XmlParser.
+ *
+ * @author Judy He
+ */
+public class ConfigurationWriter implements AutoCloseable {
+
+  public static final String ROOT_NAME = "simulation";
+  private static final String INDENT = "    ";
+  private static final int CHUNK_SIZE = 8192;
+  private static final int MAX_STATE_LENGTH = 11;
+  private final Writer myOutput;
+  private final XMLStreamWriter myWriter;
+  private int myDepth;
+
+  /**
+   * Opens a configuration file for writing, replacing any existing file, and starts the root
+   * simulation element
+   *
+   * @param path, the path of the file to write
+   * @throws IOException        if the file cannot be opened
+   * @throws XMLStreamException if the start of the file cannot be written
+   */
+  public ConfigurationWriter(Path path) throws IOException, XMLStreamException {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    myOutput = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8),
+        CHUNK_SIZE);
+    try {
+      myWriter = XMLOutputFactory.newFactory().createXMLStreamWriter(myOutput);
+      myWriter.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+      myWriter.writeCharacters("\n");
+      myWriter.writeStartElement(ROOT_NAME);
+      myDepth = 1;
+    } catch (XMLStreamException e) {
+      myOutput.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Writes a field holding only text
+   *
+   * @param name,    the name of the field
+   * @param content, the text of the field, or null for an empty field
+   * @throws XMLStreamException if the field cannot be written
+   */
+  public void writeField(String name, String content) throws XMLStreamException {
+    newLine();
+    myWriter.writeStartElement(name);
+    if (content != null) {
+      myWriter.writeCharacters(content);
+    }
+    myWriter.writeEndElement();
+  }
+
+  /**
+   * Starts a field holding a list of named values, such as parameters. Every field written until
+   * the matching call to endGroup is nested inside it.
+   *
+   * @param name, the name of the field
+   * @throws XMLStreamException if the field cannot be written
+   */
+  public void startGroup(String name) throws XMLStreamException {
+    newLine();
+    myWriter.writeStartElement(name);
+    myDepth++;
+  }
+
+  /**
+   * Ends the field started by the last call to startGroup
+   *
+   * @throws XMLStreamException if the field cannot be written
+   */
+  public void endGroup() throws XMLStreamException {
+    myDepth--;
+    newLine();
+    myWriter.writeEndElement();
+  }
+
+  /**
+   * Writes a field holding cell states separated by spaces, converting them to text a chunk at a
+   * time
+   *
+   * @param name,   the name of the field
+   * @param states, the state of each cell in row-major order
+   * @throws XMLStreamException if the field cannot be written
+   */
+  public void writeStates(String name, int[] states) throws XMLStreamException {
+    writeStates(name, states, false);
+  }
+
+  /**
+   * Writes a field holding cell states separated by spaces, converting them to text a chunk at a
+   * time
+   *
+   * @param name,        the name of the field
+   * @param states,      the state of each cell in row-major order
+   * @param isRunLength, whether to write runs of cells in the same state as count*state, marking
+   *                     the field as run-length encoded
+   * @throws XMLStreamException if the field cannot be written
+   */
+  public void writeStates(String name, int[] states, boolean isRunLength)
+      throws XMLStreamException {
+    newLine();
+    myWriter.writeStartElement(name);
+    if (isRunLength) {
+      myWriter.writeAttribute(StatesDecoder.ENCODING_ATTRIBUTE, StatesDecoder.RUN_LENGTH_ENCODING);
+    }
+    char[] chunk = new char[CHUNK_SIZE];
+    int length = 0;
+    int i = 0;
+    while (i < states.length) {
+      int run = 1;
+      while (isRunLength && i + run < states.length && states[i + run] == states[i]) {
+        run++;
+      }
+      if (length + 2 * MAX_STATE_LENGTH + 2 > chunk.length) {
+        myWriter.writeCharacters(chunk, 0, length);
+        length = 0;
+      }
+      if (i > 0) {
+        chunk[length++] = ' ';
+      }
+      if (run > 1) {
+        length = appendNumber(chunk, length, run);
+        chunk[length++] = StatesDecoder.RUN_SEPARATOR;
+      }
+      length = appendNumber(chunk, length, states[i]);
+      i += run;
+    }
+    myWriter.writeCharacters(chunk, 0, length);
+    myWriter.writeEndElement();
+  }
+
+  /**
+   * Ends the root simulation element and the file, and closes it
+   *
+   * @throws IOException        if the file cannot be written
+   * @throws XMLStreamException if the end of the file cannot be written
+   */
+  @Override
+  public void close() throws IOException, XMLStreamException {
+    try {
+      myDepth = 0;
+      newLine();
+      myWriter.writeEndElement();
+      myWriter.writeEndDocument();
+      myWriter.close();
+      myOutput.write('\n');
+    } finally {
+      myOutput.close();
+    }
+  }
+
+  private void newLine() throws XMLStreamException {
+    myWriter.writeCharacters("\n" + INDENT.repeat(myDepth));
+  }
+
+  /**
+   * Writes the digits of a state or run length into a chunk of characters
+   *
+   * @return the length of the chunk after the number
+   */
+  private int appendNumber(char[] chunk, int length, int number) {
+    if (number < 0) {
+      String text = Integer.toString(number);
+      text.getChars(0, text.length(), chunk, length);
+      return length + text.length();
+    }
+    int end = length + digits(number);
+    for (int i = end - 1; i >= length; i--) {
+      chunk[i] = (char) ('0' + number % 10);
+      number /= 10;
+    }
+    return end;
+  }
+
+  private int digits(int number) {
+    int count = 1;
+    while (number >= 10) {
+      number /= 10;
+      count++;
+    }
+    return count;
+  }
+}
@@ -0,0 +1,263 @@
+package cellsociety.configuration;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads a Game of Life pattern in the standard run-length encoded (.rle) format used by most Life
+ * software and pattern collections. The file holds # comment lines (#N name, #O author, #C
+ * comments), a header line x = width, y = height, rule = B3/S23, and the pattern itself, where
+ * each optionally counted b is a run of dead cells, o a run of alive cells, $ the end of a row and
+ * ! the end of the pattern. Cells are decoded straight into an array of states, with rows that end
+ * early filled with dead cells. Patterns of more than StatesDecoder.MAX_CELLS cells are rejected
+ * before the array is allocated.
+ *
+ * @author Judy He
+ */
+public class LifePatternReader {
+
+  public static final String FILE_EXTENSION = "rle";
+  public static final String DEFAULT_RULE = "B3/S23";
+  public static final int DEAD = 0;
+  public static final int ALIVE = 1;
+  private int myWidth;
+  private int myHeight;
+  private int[] myStates;
+  private String myRule = DEFAULT_RULE;
+  private String myName;
+  private String myAuthor;
+  private final List<String> myComments = new ArrayList<>();
+  private int myLineNumber;
+
+  /**
+   * Reads a pattern file
+   *
+   * @param path, the path to the pattern file
+   * @throws IOException    if the file cannot be read
+   * @throws ParseException if the file is not a valid pattern, with the line number as offset
+   */
+  public LifePatternReader(Path path) throws IOException, ParseException {
+    try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+      readHeader(reader);
+      readPattern(reader);
+    } catch (ArithmeticException e) {
+      throw new ParseException("Pattern is too large", myLineNumber);
+    }
+  }
+
+  /**
+   * @return the width of the pattern
+   */
+  public int getWidth() {
+    return myWidth;
+  }
+
+  /**
+   * @return the height of the pattern
+   */
+  public int getHeight() {
+    return myHeight;
+  }
+
+  /**
+   * @return the state of each cell in row-major order, DEAD or ALIVE
+   */
+  public int[] getStates() {
+    return myStates;
+  }
+
+  /**
+   * @return the rule of the pattern, B3/S23 if the header does not give one
+   */
+  public String getRule() {
+    return myRule;
+  }
+
+  /**
+   * @return the name of the pattern, or null if the file does not give one
+   */
+  public String getName() {
+    return myName;
+  }
+
+  /**
+   * @return the author of the pattern, or null if the file does not give one
+   */
+  public String getAuthor() {
+    return myAuthor;
+  }
+
+  /**
+   * @return every comment line of the file, in order
+   */
+  public List<String> getComments() {
+    return myComments;
+  }
+
+  /**
+   * @return the numbers of alive neighbors with which a dead cell comes alive, in increasing order
+   * @throws ParseException if the rule is not in B/S or S/B notation
+   */
+  public int[] getBirthCounts() throws ParseException {
+    return parseRule()[0];
+  }
+
+  /**
+   * @return the numbers of alive neighbors with which an alive cell stays alive, in increasing
+   * order
+   * @throws ParseException if the rule is not in B/S or S/B notation
+   */
+  public int[] getSurvivalCounts() throws ParseException {
+    return parseRule()[1];
+  }
+
+  /**
+   * Reads comment lines up to and including the header line
+   */
+  private void readHeader(BufferedReader reader) throws IOException, ParseException {
+    String line;
+    while ((line = nextLine(reader)) != null) {
+      if (line.isBlank()) {
+        continue;
+      }
+      if (!line.startsWith("#")) {
+        parseHeader(line);
+        return;
+      }
+      String text = line.length() > 2 ? line.substring(2).trim() : "";
+      switch (line.length() > 1 ? line.charAt(1) : ' ') {
+        case 'N' -> myName = text;
+        case 'O' -> myAuthor = text;
+        case 'C', 'c' -> myComments.add(text);
+        default -> {
+          // positions and other extensions do not apply to a finite grid
+        }
+      }
+    }
+    throw new ParseException("Missing header line x = width, y = height", myLineNumber);
+  }
+
+  private void parseHeader(String line) throws ParseException {
+    myWidth = -1;
+    myHeight = -1;
+    for (String entry : line.split(",")) {
+      String[] pair = entry.split("=", 2);
+      if (pair.length != 2) {
+        throw new ParseException("Badly formatted header entry " + entry.trim(), myLineNumber);
+      }
+      String value = pair[1].trim();
+      switch (pair[0].trim()) {
+        case "x" -> myWidth = parseSize(value);
+        case "y" -> myHeight = parseSize(value);
+        case "rule" -> myRule = value;
+        default -> {
+          // unknown header entries are ignored
+        }
+      }
+    }
+    if (myWidth < 0 || myHeight < 0) {
+      throw new ParseException("Missing header line x = width, y = height", myLineNumber);
+    }
+    if ((long) myWidth * myHeight > StatesDecoder.MAX_CELLS) {
+      throw new ParseException("Pattern is larger than the maximum of " + StatesDecoder.MAX_CELLS
+          + " cells", myLineNumber);
+    }
+    myStates = new int[myWidth * myHeight];
+  }
+
+  private int parseSize(String value) throws ParseException {
+    try {
+      int size = Integer.parseInt(value);
+      if (size >= 0) {
+        return size;
+      }
+    } catch (NumberFormatException e) {
+      // reported below
+    }
+    throw new ParseException("Invalid pattern size " + value, myLineNumber);
+  }
+
+  /**
+   * Decodes the runs of the pattern into the array of states, which starts out all DEAD
+   */
+  private void readPattern(BufferedReader reader) throws IOException, ParseException {
+    int row = 0;
+    int col = 0;
+    int count = 0;
+    String line;
+    while ((line = nextLine(reader)) != null) {
+      for (int i = 0; i < line.length(); i++) {
+        char c = line.charAt(i);
+        if (c >= '0' && c <= '9') {
+          count = Math.addExact(Math.multiplyExact(count, 10), c - '0');
+          continue;
+        }
+        int run = Math.max(count, 1);
+        count = 0;
+        if (c == '!') {
+          return;
+        } else if (c == '$') {
+          row = Math.addExact(row, run);
+          col = 0;
+        } else if (c == 'b' || c == '.') {
+          col = Math.addExact(col, run);
+        } else if (Character.isLetter(c)) {
+          // every state other than dead counts as alive in two-state Life
+          if (row >= myHeight || col + run > myWidth) {
+            throw new ParseException("Pattern is larger than its header", myLineNumber);
+          }
+          int start = row * myWidth + col;
+          Arrays.fill(myStates, start, start + run, ALIVE);
+          col += run;
+        } else if (!Character.isWhitespace(c)) {
+          throw new ParseException("Unexpected character " + c, myLineNumber);
+        }
+      }
+    }
+  }
+
+  /**
+   * Splits the rule into birth and survival counts
+   *
+   * @return the birth counts followed by the survival counts
+   */
+  private int[][] parseRule() throws ParseException {
+    String[] parts = myRule.split("/");
+    if (parts.length != 2) {
+      throw new ParseException("Unsupported rule " + myRule, 0);
+    }
+    String first = parts[0].trim().toUpperCase();
+    String second = parts[1].trim().toUpperCase();
+    if (first.startsWith("B") && second.startsWith("S")) {
+      return new int[][]{parseCounts(first.substring(1)), parseCounts(second.substring(1))};
+    } else if (first.startsWith("S") && second.startsWith("B")) {
+      return new int[][]{parseCounts(second.substring(1)), parseCounts(first.substring(1))};
+    }
+    // the older S/B notation without letters, such as 23/3
+    return new int[][]{parseCounts(second), parseCounts(first)};
+  }
+
+  private int[] parseCounts(String digits) throws ParseException {
+    int[] counts = new int[digits.length()];
+    for (int i = 0; i < digits.length(); i++) {
+      if (!Character.isDigit(digits.charAt(i))) {
+        throw new ParseException("Unsupported rule " + myRule, 0);
+      }
+      counts[i] = digits.charAt(i) - '0';
+    }
+    Arrays.sort(counts);
+    return counts;
+  }
+
+  private String nextLine(BufferedReader reader) throws IOException {
+    myLineNumber++;
+    return reader.readLine();
+  }
+}
@@ -0,0 +1,209 @@
+package cellsociety.configuration;
+
+import java.util.Arrays;
+
+/**
+ * Decodes the initial_states field of a configuration file straight into a primitive array, one
+ * chunk of characters at a time, so that the field never has to be held as one string or split
+ * into one string per cell. States are separated by whitespace. Tokens that are not plain
+ * non-negative integers are kept as INVALID_STATE, and the first of them is remembered so that it
+ * can be reported once the simulation type is known.
+ * <p>
+ * Run-length encoded fields, marked encoding="rle", may also hold runs written count*state, such
+ * as 400*0 for 400 cells in state 0. Runs are expanded straight into the array.
+ * <p>
+ * No field may hold more than MAX_CELLS states, so a corrupt file (such as one with a run of a
+ * billion cells) cannot make the decoder allocate more memory than a simulation could use. States
+ * past the limit are dropped, and isTooLarge reports that they were.
+ *
+ * @author Judy He
+ */
+public class StatesDecoder {
+
+  public static final int INVALID_STATE = -1;
+  public static final String ENCODING_ATTRIBUTE = "encoding";
+  public static final String RUN_LENGTH_ENCODING = "rle";
+  public static final char RUN_SEPARATOR = '*';
+  public static final int MAX_CELLS = 1 << 24;
+  private static final int DEFAULT_CAPACITY = 1024;
+  private static final int MAX_INITIAL_CAPACITY = 1 << 22;
+  private static final int MAX_DIGITS = 9;
+  private static final int NO_RUN = -1;
+  private final boolean isRunLength;
+  private final int myExpectedCells;
+  private int[] myStates;
+  private int myCount;
+  private final StringBuilder myToken = new StringBuilder();
+  private int myValue;
+  private int myRunLength = NO_RUN;
+  private int myRunStart;
+  private String myInvalidToken;
+  private int myInvalidPosition = -1;
+  private boolean isTooLarge;
+
+  /**
+   * Constructs a StatesDecoder
+   *
+   * @param expectedCells, the number of states expected, or 0 if unknown. The array grows as
+   *                       needed, but is only allocated once if the guess is right.
+   */
+  public StatesDecoder(int expectedCells) {
+    this(expectedCells, false);
+  }
+
+  /**
+   * Constructs a StatesDecoder
+   *
+   * @param expectedCells, the number of states expected, or 0 if unknown. When known, runs that
+   *                       would go past it are treated as invalid rather than expanded.
+   * @param isRunLength,   whether runs written count*state are accepted
+   */
+  public StatesDecoder(int expectedCells, boolean isRunLength) {
+    this.isRunLength = isRunLength;
+    myExpectedCells = Math.max(expectedCells, 0);
+    myStates = new int[expectedCells > 0 ? Math.min(expectedCells, MAX_INITIAL_CAPACITY)
+        : DEFAULT_CAPACITY];
+  }
+
+  /**
+   * Decodes the next chunk of the field. A state may be split between two chunks.
+   *
+   * @param chars,  characters holding the chunk
+   * @param start,  position of the first character of the chunk
+   * @param length, number of characters in the chunk
+   */
+  public void decode(char[] chars, int start, int length) {
+    for (int i = start; i < start + length; i++) {
+      char c = chars[i];
+      if (Character.isWhitespace(c)) {
+        endToken();
+      } else if (c == RUN_SEPARATOR && isRunLength && myRunLength == NO_RUN
+          && isPlainInteger()) {
+        // the digits so far were the length of a run, and the state follows
+        myToken.append(c);
+        myRunLength = myValue;
+        myRunStart = myToken.length();
+        myValue = 0;
+      } else {
+        myToken.append(c);
+        myValue = myValue * 10 + (c - '0');
+      }
+    }
+  }
+
+  /**
+   * Adds a single state, as decoded by some other means
+   *
+   * @param state, the state of the next cell
+   */
+  public void add(int state) {
+    add(state, 1);
+  }
+
+  /**
+   * Adds a run of cells in the same state
+   *
+   * @param state,  the state of the cells
+   * @param length, the number of cells in the run
+   */
+  public void add(int state, int length) {
+    if (myCount + length > myStates.length) {
+      myStates = Arrays.copyOf(myStates,
+          Math.max(myCount + length, Math.max(DEFAULT_CAPACITY, myCount * 2)));
+    }
+    Arrays.fill(myStates, myCount, myCount + length, state);
+    myCount += length;
+  }
+
+  /**
+   * Ends the field, and returns every state decoded
+   *
+   * @return the states in the order they appeared, in an array of exactly the right length
+   */
+  public int[] finish() {
+    endToken();
+    return myCount == myStates.length ? myStates : Arrays.copyOf(myStates, myCount);
+  }
+
+  /**
+   * @return the number of states decoded so far
+   */
+  public int size() {
+    return myCount;
+  }
+
+  /**
+   * @return the first token that was not a plain non-negative integer, or null if none
+   */
+  public String getInvalidToken() {
+    return myInvalidToken;
+  }
+
+  /**
+   * @return the position of the first token that was not a plain non-negative integer, or -1
+   */
+  public int getInvalidPosition() {
+    return myInvalidPosition;
+  }
+
+  /**
+   * @return true if and only if the field held more than MAX_CELLS states, some of which were
+   * dropped
+   */
+  public boolean isTooLarge() {
+    return isTooLarge;
+  }
+
+  private void endToken() {
+    if (myToken.length() == 0) {
+      return;
+    }
+    int length = myRunLength == NO_RUN ? 1 : myRunLength;
+    if (isTooLarge || (long) myCount + length > MAX_CELLS) {
+      isTooLarge = true;
+    } else if (length > 0 && isPlainInteger(myRunStart) && !isPastExpected(length)) {
+      add(myValue, length);
+    } else {
+      if (myInvalidToken == null) {
+        myInvalidToken = myToken.toString();
+        myInvalidPosition = myCount;
+      }
+      add(INVALID_STATE);
+    }
+    myToken.setLength(0);
+    myValue = 0;
+    myRunLength = NO_RUN;
+    myRunStart = 0;
+  }
+
+  /**
+   * @return true if and only if a run of the given length would take the number of states past
+   * the number expected
+   */
+  private boolean isPastExpected(int length) {
+    return length > 1 && myExpectedCells > 0 && (long) myCount + length > myExpectedCells;
+  }
+
+  private boolean isPlainInteger() {
+    return isPlainInteger(0);
+  }
+
+  /**
+   * @param start, the position in the current token at which to start
+   * @return true if and only if the rest of the current token is written exactly as
+   * Integer.toString would write a non-negative int of at most MAX_DIGITS digits
+   */
+  private boolean isPlainInteger(int start) {
+    int length = myToken.length() - start;
+    if (length == 0 || length > MAX_DIGITS || length > 1 && myToken.charAt(start) == '0') {
+      return false;
+    }
+    for (int i = start; i < myToken.length(); i++) {
+      char c = myToken.charAt(i);
+      if (c < '0' || c > '9') {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -1,5 +1,6 @@
 package cellsociety.configuration;
 
+import cellsociety.RandomLayout;
 import cellsociety.exception.InputMissingParametersException;
 import cellsociety.exception.InvalidCellStateException;
 import cellsociety.exception.InvalidFileFormatException;
@@ -7,12 +8,12 @@ import cellsociety.exception.InvalidGridBoundsException;
 import cellsociety.exception.InvalidValueException;
 import cellsociety.exception.SavingFileException;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.AbstractList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -22,20 +23,7 @@ import java.util.ResourceBundle;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
+import javax.xml.stream.XMLStreamException;
 
 
 /**
@@ -69,15 +57,17 @@ public class XmlParser {
   public static final Set<String> GAMEOFLIFE_PARAMETERS = new HashSet<>(
       Arrays.asList("aliveToAliveMin", "aliveToAliveMax", "deadToAliveMin", "deadToAliveMax"));
   public static final Set<String> PERCOLATION_PARAMETERS = new HashSet<>(
-      List.of("percolatedNeighbors"));
+      Arrays.asList("percolatedNeighbors", "analysis"));
   public static final Set<String> SCHELLING_PARAMETERS = new HashSet<>(
       List.of("proportionNeededToStay"));
   public static final Set<String> WATOR_PARAMETERS = new HashSet<>(
       Arrays.asList("fishAgeOfReproduction", "sharkAgeOfReproduction", "energyBoost",
-          "initialEnergy"));
+          "initialEnergy", "parallel"));
   public static final Set<String> SUGAR_PARAMETERS = new HashSet<>(
       Arrays.asList("minVision", "maxVision", "minMetabolism", "maxMetabolism", "minInitialSugar",
           "maxInitialSugar", "growBackRate", "numAgents"));
+  public static final Set<String> FALLING_PARAMETERS = new HashSet<>(
+      List.of("margolus"));
 
   // define valid neighborhood types
   public static final Set<String> NEIGHBORHOOD_TYPES = new HashSet<>(
@@ -120,6 +110,15 @@ public class XmlParser {
       put(SUGAR_NAME, SUGAR_CELL_STATES);
       put(FALLING_NAME, FALLING_CELL_STATES);
     }};
+  public static final Map<String, Set<String>> SIMULATION_PARAMETERS = new HashMap<>() {{
+      put(FIRE_NAME, FIRE_PARAMETERS);
+      put(GAMEOFLIFE_NAME, GAMEOFLIFE_PARAMETERS);
+      put(PERCOLATION_NAME, PERCOLATION_PARAMETERS);
+      put(SCHELLING_NAME, SCHELLING_PARAMETERS);
+      put(WATOR_NAME, WATOR_PARAMETERS);
+      put(SUGAR_NAME, SUGAR_PARAMETERS);
+      put(FALLING_NAME, FALLING_PARAMETERS);
+    }};
 
   // define names for the field as written in the XML configuration files
   public static final String TYPE_FIELD_NAME = "type";
@@ -138,6 +137,12 @@ public class XmlParser {
   public static final String INITIAL_STATES_FIELD_NAME = "initial_states";
   public static final String SLIDER_FIELD_NAME = "slider";
 
+  // define values used when importing a Game of Life pattern file
+  public static final String LIFE_PATTERN_NEIGHBORHOOD = "Moore";
+  public static final String LIFE_PATTERN_AUTHOR = "Unknown";
+  public static final String LIFE_PATTERN_SLIDER = "1";
+  public static final int EMPTY_LIFE_RULE_MIN = 1;
+
   private ResourceBundle resourceBundle; // resource bundle for error handling messages
   private String type; // simulation type
   private String title; // simulation title
@@ -149,20 +154,36 @@ public class XmlParser {
   private int width; // number of columns
   private int height; // number of rows
   private String neighborhoodType; // adjacent or cardinal
-  private List<Integer> states; // the state of each cell
+  private int[] states; // the state of each cell
   private Map<String, Double> parameters; // Hashmap mapping parameter names to their values
   private String language;
   private String cellShape;
   private String gridEdgeType;
   private String sliderInitial;
+  private String stateEncoding; // encoding of the initial states field, null if not encoded
   private final Map<String, Integer> randomConfigurationTotalStates;
   private int totalNumCells;
+  private final ConfigurationCache cache; // configurations already read, or null if not cached
+  private RandomLayout randomLayout; // generator of the layouts of random configurations
 
   /**
    * Constructor for initializing the states ArrayList and parameters HashMap
    */
   public XmlParser() {
-    states = new ArrayList<>();
+    this(null);
+  }
+
+  /**
+   * Constructor for an XmlParser that reuses the configurations kept in a cache, reading a file
+   * only if it is not in the cache or has changed since it was read
+   *
+   * @param cache, the configurations already read, shared with other XmlParsers, or null to read
+   *               every file
+   */
+  public XmlParser(ConfigurationCache cache) {
+    this.cache = cache;
+    randomLayout = new RandomLayout(new Random());
+    states = new int[0];
     parameters = new HashMap<>();
     randomConfigurationTotalStates = new HashMap<>();
     cellShape = "square";
@@ -317,9 +338,30 @@ public class XmlParser {
   /**
    * Retrieves states instance variable
    *
-   * @return states, an ArrayList keeping track of the state of each cell in the simulation.
+   * @return states, a read-only List view of the state of each cell in the simulation, backed by
+   * the primitive array of states
    */
   public List<Integer> getStates() {
+    int[] stateArray = states;
+    return new AbstractList<>() {
+      @Override
+      public Integer get(int index) {
+        return stateArray[index];
+      }
+
+      @Override
+      public int size() {
+        return stateArray.length;
+      }
+    };
+  }
+
+  /**
+   * Retrieves states instance variable as a primitive array, which must not be modified
+   *
+   * @return states, the state of each cell in the simulation in row-major order
+   */
+  public int[] getStateArray() {
     return states;
   }
 
@@ -329,7 +371,7 @@ public class XmlParser {
    * @param states, an ArrayList keeping track of the state of each cell in the simulation.
    */
   public void setStates(List<Integer> states) {
-    this.states = states;
+    this.states = states.stream().mapToInt(Integer::intValue).toArray();
   }
 
   /**
@@ -368,6 +410,26 @@ public class XmlParser {
     this.language = language;
   }
 
+  /**
+   * Retrieves stateEncoding instance variable
+   *
+   * @return stateEncoding, the encoding of the initial states field in the configuration file, such
+   * as "rle" for run-length encoding, or null if the states are written one per cell
+   */
+  public String getStateEncoding() {
+    return stateEncoding;
+  }
+
+  /**
+   * Updates stateEncoding instance variable, which decides how initial states are saved
+   *
+   * @param stateEncoding, the encoding of the initial states field, such as "rle" for run-length
+   *                       encoding, or null to write the states one per cell
+   */
+  public void setStateEncoding(String stateEncoding) {
+    this.stateEncoding = stateEncoding;
+  }
+
   /**
    * Retrieves randomConfigurationTotalStates instance variable
    *
@@ -380,7 +442,8 @@ public class XmlParser {
 
 
   /**
-   * Read an XML configuration file, initializing all attributes in the XmlParser
+   * Read an XML configuration file, initializing all attributes in the XmlParser. If the XmlParser
+   * has a cache holding the file as it is now, the values are taken from the cache instead.
    *
    * @param path, the path to the XML configuration file being read
    * @throws InvalidFileFormatException,      when the user loads a configuration file that has
@@ -399,25 +462,87 @@ public class XmlParser {
       InvalidCellStateException,
       InvalidGridBoundsException {
 
-    // parse file to Document object
-    Document doc = parseFile(path);
+    // skip reading the file if it is cached and has not changed since it was read
+    ConfigurationCache.FileStamp stamp = cache == null ? null : cache.stamp(path);
+    if (stamp != null) {
+      ConfigurationCache.ParsedConfiguration configuration = cache.get(stamp);
+      if (configuration != null) {
+        loadConfiguration(configuration);
+        return;
+      }
+    }
+
+    if (isLifePattern(path)) {
+      // import a Game of Life pattern in the standard run-length encoded format
+      parseLifePattern(path);
+    } else {
+      // stream file contents, decoding the initial states into a primitive array
+      ConfigurationScanner scanner = parseFile(path);
 
-    // parse simulation parameters
-    parseSimulation(doc);
+      // parse simulation parameters
+      parseSimulation(scanner);
+    }
 
     // validate simulation, handling any potential errors
     validateSimulation();
 
+    if (stamp != null) {
+      cache.put(stamp, saveConfiguration());
+    }
+
   }
 
   /**
-   * Parse file and convert file to Document object given file path
+   * Keep every value read from the configuration file, for a cache
+   *
+   * @return the values of the attributes of the XmlParser
+   */
+  private ConfigurationCache.ParsedConfiguration saveConfiguration() {
+    return new ConfigurationCache.ParsedConfiguration(type, title, author, fileDescription,
+        displayDescription, width, height, neighborhoodType, states, Map.copyOf(parameters),
+        language, cellShape, gridEdgeType, sliderInitial, stateEncoding,
+        Map.copyOf(randomConfigurationTotalStates), totalNumCells);
+  }
+
+  /**
+   * Initialize all attributes of the XmlParser from a configuration read before. Cells set by a
+   * random configuration are shuffled again, as they would be when reading the file.
+   *
+   * @param configuration, the values read from the configuration file
+   */
+  private void loadConfiguration(ConfigurationCache.ParsedConfiguration configuration) {
+    type = configuration.type();
+    title = configuration.title();
+    author = configuration.author();
+    fileDescription = configuration.fileDescription();
+    displayDescription = configuration.displayDescription();
+    width = configuration.width();
+    height = configuration.height();
+    neighborhoodType = configuration.neighborhoodType();
+    states = configuration.states();
+    parameters = new HashMap<>(configuration.parameters());
+    language = configuration.language();
+    cellShape = configuration.cellShape();
+    gridEdgeType = configuration.gridEdgeType();
+    sliderInitial = configuration.sliderInitial();
+    stateEncoding = configuration.stateEncoding();
+    randomConfigurationTotalStates.clear();
+    randomConfigurationTotalStates.putAll(configuration.randomConfigurationTotalStates());
+    totalNumCells = configuration.totalNumCells();
+    resourceBundle = ResourceBundle.getBundle(DEFAULT_RESOURCE_PACKAGE + "Errors" + language);
+    if (!randomConfigurationTotalStates.isEmpty()) {
+      setRandomlyConfiguredStates();
+    }
+  }
+
+  /**
+   * Parse file in a single streaming pass given file path
    *
    * @param path, path to the file being read
-   * @return Document object representing the file
+   * @return ConfigurationScanner holding the contents of the file
    * @throws InvalidFileFormatException when file is not found or file type is not xml
    */
-  private Document parseFile(String path) throws InvalidFileFormatException {
+  private ConfigurationScanner parseFile(String path) throws InvalidFileFormatException {
     try {
       // create a new File object for the XML file
       File file = new File(path);
@@ -427,7 +552,7 @@ public class XmlParser {
         throw new InvalidFileFormatException(
             String.format(resourceBundle.getString("InvalidFileType"), path));
       }
-      return createDocument(file, path);
+      return createScanner(path);
     } catch (NullPointerException e) {
       throw new InvalidFileFormatException(
           String.format(resourceBundle.getString("FileNotFound"), path), e);
@@ -435,48 +560,139 @@ public class XmlParser {
   }
 
   /**
-   * Create Document object given parsed File object and path to file in case errors occur
+   * Stream the contents of a file given its path, without building a document
    *
-   * @param file, file to be represented by Document object
    * @param path, path to file
-   * @return Document object representing the file
+   * @return ConfigurationScanner holding the contents of the file
    * @throws InvalidFileFormatException, when XML file is empty, badly formatted or not found
    */
-  private Document createDocument(File file, String path) throws InvalidFileFormatException {
+  private ConfigurationScanner createScanner(String path) throws InvalidFileFormatException {
     try {
-      // create a new instance of document builder factory that allows for a document builder
-      DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-
-      // checking for well-formatted XML
-      dbf.setValidating(false);
-      dbf.setNamespaceAware(true);
+      return new ConfigurationScanner(path, INITIAL_STATES_FIELD_NAME,
+          List.of(PARAMETERS_FIELD_NAME, RANDOM_CONFIG_FIELD_NAME), this::countExpectedCells);
+    } catch (NoSuchFileException e) {
+      throw new InvalidFileFormatException(
+          String.format(resourceBundle.getString("FileNotFound"), path), e);
+    } catch (IOException e) {
+      throw new InvalidFileFormatException(String.format(resourceBundle.getString("IOError"), path),
+          e);
+    } catch (XMLStreamException e) {
+      throw new InvalidFileFormatException(
+          String.format(resourceBundle.getString("ParserError"), path), e);
+    }
+  }
 
-      // create an instance of document builder to parse the XML file
-      DocumentBuilder db = dbf.newDocumentBuilder();
-      Document doc = db.parse(file);
-      doc.getDocumentElement().normalize();
+  /**
+   * Count the cells expected in the initial states field from the width and height fields, if they
+   * come before it in the XML file
+   *
+   * @param scanner, contents of the XML file read so far
+   * @return width * height, or 0 if either is missing or invalid
+   */
+  private int countExpectedCells(ConfigurationScanner scanner) {
+    try {
+      int expected = Math.multiplyExact(Integer.parseInt(getField(scanner, WIDTH_FIELD_NAME)),
+          Integer.parseInt(getField(scanner, HEIGHT_FIELD_NAME)));
+      return Math.max(expected, 0);
+    } catch (NumberFormatException | ArithmeticException e) {
+      return 0;
+    }
+  }
 
-      return doc;
+  /**
+   * Check whether a file is a Game of Life pattern file rather than an XML configuration file
+   *
+   * @param path, path to the file being read
+   * @return true if and only if the file has the .rle extension
+   */
+  private boolean isLifePattern(String path) {
+    return path != null
+        && getFileExtension(new File(path).getName()).equals(LifePatternReader.FILE_EXTENSION);
+  }
 
-    } catch (FileNotFoundException e) {
+  /**
+   * Import a Game of Life pattern file, configuring a Game of Life simulation with a grid of
+   * exactly the size of the pattern, following the pattern's rule. The pattern's name, author and
+   * comments are used as the title, author and description when given.
+   *
+   * @param path, path to the pattern file
+   * @throws InvalidFileFormatException when the file is not found or is not a valid pattern
+   * @throws InvalidValueException      when the pattern's rule cannot be expressed as parameters
+   */
+  private void parseLifePattern(String path) throws InvalidFileFormatException,
+      InvalidValueException {
+    LifePatternReader pattern;
+    try {
+      pattern = new LifePatternReader(Path.of(path));
+    } catch (NoSuchFileException e) {
       throw new InvalidFileFormatException(
           String.format(resourceBundle.getString("FileNotFound"), path), e);
-    } catch (ParserConfigurationException e) {
-      throw new InvalidFileFormatException(
-          String.format(resourceBundle.getString("ParserCreationError"), path), e);
     } catch (IOException e) {
       throw new InvalidFileFormatException(String.format(resourceBundle.getString("IOError"), path),
           e);
-    } catch (SAXException e) {
+    } catch (ParseException e) {
       throw new InvalidFileFormatException(
-          String.format(resourceBundle.getString("ParserError"), path), e);
+          String.format(resourceBundle.getString("InvalidLifePattern"), path, e.getMessage()), e);
+    }
+    String fileName = new File(path).getName();
+    type = GAMEOFLIFE_NAME;
+    title = isGiven(pattern.getName()) ? pattern.getName()
+        : fileName.substring(0, fileName.lastIndexOf('.'));
+    author = isGiven(pattern.getAuthor()) ? pattern.getAuthor() : LIFE_PATTERN_AUTHOR;
+    fileDescription = fileName;
+    displayDescription = pattern.getComments().isEmpty() ? fileName
+        : String.join("\n", pattern.getComments());
+    width = pattern.getWidth();
+    height = pattern.getHeight();
+    neighborhoodType = LIFE_PATTERN_NEIGHBORHOOD;
+    sliderInitial = LIFE_PATTERN_SLIDER;
+    stateEncoding = StatesDecoder.RUN_LENGTH_ENCODING;
+    states = pattern.getStates();
+    try {
+      parseLifeRule("deadToAlive", pattern.getBirthCounts(), pattern.getRule());
+      parseLifeRule("aliveToAlive", pattern.getSurvivalCounts(), pattern.getRule());
+    } catch (ParseException e) {
+      throw new InvalidValueException(
+          String.format(resourceBundle.getString("UnsupportedLifeRule"), pattern.getRule()), e);
+    }
+    totalNumCells = states.length;
+  }
+
+  private boolean isGiven(String value) {
+    return value != null && !value.isBlank();
+  }
+
+  /**
+   * Convert the neighbor counts of one half of a Game of Life rule to the minimum and maximum
+   * parameters of the Game of Life simulation. No counts at all, as in B/S23, become a minimum
+   * greater than the maximum, which no number of neighbors falls between.
+   *
+   * @param prefix, the name of the parameters without the Min or Max suffix
+   * @param counts, the numbers of alive neighbors, in increasing order
+   * @param rule,   the whole rule, for reporting errors
+   * @throws InvalidValueException when the counts are not a single range of numbers
+   */
+  private void parseLifeRule(String prefix, int[] counts, String rule)
+      throws InvalidValueException {
+    int[] distinctCounts = Arrays.stream(counts).distinct().toArray();
+    int length = distinctCounts.length;
+    if (length == 0) {
+      parameters.put(prefix + "Min", (double) EMPTY_LIFE_RULE_MIN);
+      parameters.put(prefix + "Max", (double) EMPTY_LIFE_RULE_MIN - 1);
+      return;
+    }
+    if (distinctCounts[length - 1] - distinctCounts[0] != length - 1) {
+      throw new InvalidValueException(
+          String.format(resourceBundle.getString("UnsupportedLifeRule"), rule));
     }
+    parameters.put(prefix + "Min", (double) distinctCounts[0]);
+    parameters.put(prefix + "Max", (double) distinctCounts[length - 1]);
   }
 
   /**
    * Parse all simulation parameters, assigning values to attributes of the XmlParser
    *
-   * @param doc Document object from which parameter values will be read
+   * @param scanner ConfigurationScanner from which parameter values will be read
    * @throws InputMissingParametersException when missing essential parameters or height and width
    *                                         in the configuration file
    * @throws InvalidValueException           when a value defining the simulation is negative or
@@ -484,23 +700,18 @@ public class XmlParser {
    * @throws InvalidGridBoundsException      when the user loads a configuration file that has cell
    *                                         locations specified outside the grid’s bounds
    */
-  private void parseSimulation(Document doc) throws InputMissingParametersException,
+  private void parseSimulation(ConfigurationScanner scanner) throws InputMissingParametersException,
       InvalidValueException,
       InvalidGridBoundsException {
 
-    // obtaining the simulation node containing all the configuration data
-    Node simulationNode = doc.getElementsByTagName("simulation").item(0);
-
-    Element element = (Element) simulationNode;
-
-    // check if simulation node is empty
-    if (element.getElementsByTagName("*").getLength() == 0) {
+    // check if simulation node is missing or empty
+    if (!scanner.hasFields()) {
       throw new InvalidFileFormatException(
           String.format(resourceBundle.getString("EmptyXMLFile")));
     }
 
     // parse all configuration data presented as single (not nested) fields
-    parseSingleFields(element);
+    parseSingleFields(scanner);
 
     // check if simulation type exists
     if (!SIMULATION_TYPES.contains(type)) {
@@ -508,17 +719,23 @@ public class XmlParser {
           String.format(resourceBundle.getString("NonExistentSimulationType"), type));
     }
 
+    // check if the initial states encoding exists
+    stateEncoding = scanner.getStatesEncoding();
+    if (stateEncoding != null && !stateEncoding.equals(StatesDecoder.RUN_LENGTH_ENCODING)) {
+      throw new InvalidValueException(
+          String.format(resourceBundle.getString("NonExistentStateEncoding"), stateEncoding));
+    }
+
     // parse initial states
-    parseStates(element.getElementsByTagName(INITIAL_STATES_FIELD_NAME).item(0));
+    parseStates(scanner.getStates());
 
     // parse parameters
-    parseParameters(element.getElementsByTagName(PARAMETERS_FIELD_NAME).item(0));
+    parseParameters(scanner.getGroup(PARAMETERS_FIELD_NAME));
 
     // parse random configuration states
-    parseRandomConfig(element.getElementsByTagName(RANDOM_CONFIG_FIELD_NAME)
-        .item(0));
+    parseRandomConfig(scanner.getGroup(RANDOM_CONFIG_FIELD_NAME));
 
-    totalNumCells = states.size();
+    totalNumCells = states.length;
 
   }
 
@@ -616,7 +833,7 @@ public class XmlParser {
     }
 
     // check if grid dimension is valid, throw exception otherwise
-    if (randomConfigurationTotalStates.isEmpty() && width * height != states.size()
+    if (randomConfigurationTotalStates.isEmpty() && width * height != states.length
         || !randomConfigurationTotalStates.isEmpty() && width * height != totalNumCells) {
       throw new InvalidGridBoundsException(
           String.format(resourceBundle.getString("InvalidGridBounds"), width, height,
@@ -653,55 +870,69 @@ public class XmlParser {
   /**
    * Parse all single data fields read from the XML file that set up the simulation
    *
-   * @param element, simulation element from the XML file
+   * @param scanner, contents of the XML file
    */
-  private void parseSingleFields(Element element) {
-    type = element.getElementsByTagName(TYPE_FIELD_NAME).item(0).getTextContent();
-    title = element.getElementsByTagName(TITLE_FIELD_NAME).item(0).getTextContent();
-    author = element.getElementsByTagName(AUTHOR_FIELD_NAME).item(0).getTextContent();
-    fileDescription = element.getElementsByTagName(FILE_DES_FIELD_NAME).item(0).getTextContent();
-    displayDescription = element.getElementsByTagName(DISPLAY_DES_FIELD_NAME).item(0)
-        .getTextContent();
-    neighborhoodType = element.getElementsByTagName(NEIGHBORHOOD_TYPE_FIELD_NAME).item(0)
-        .getTextContent();
-    String widthString = element.getElementsByTagName(WIDTH_FIELD_NAME).item(0).getTextContent();
-    String heightString = element.getElementsByTagName(HEIGHT_FIELD_NAME).item(0).getTextContent();
+  private void parseSingleFields(ConfigurationScanner scanner) {
+    type = getField(scanner, TYPE_FIELD_NAME);
+    title = getField(scanner, TITLE_FIELD_NAME);
+    author = getField(scanner, AUTHOR_FIELD_NAME);
+    fileDescription = getField(scanner, FILE_DES_FIELD_NAME);
+    displayDescription = getField(scanner, DISPLAY_DES_FIELD_NAME);
+    neighborhoodType = getField(scanner, NEIGHBORHOOD_TYPE_FIELD_NAME);
+    String widthString = getField(scanner, WIDTH_FIELD_NAME);
+    String heightString = getField(scanner, HEIGHT_FIELD_NAME);
     if (!widthString.isEmpty()) {
       width = Integer.parseInt(widthString);
     }
     if (!heightString.isEmpty()) {
       height = Integer.parseInt(heightString);
     }
-    gridEdgeType = element.getElementsByTagName(GRID_EDGE_TYPE_FIELD_NAME).item(0).getTextContent();
-    cellShape = element.getElementsByTagName(CELL_SHAPE_FIELD_NAME).item(0).getTextContent();
-    language = element.getElementsByTagName(LANGUAGE_FIELD_NAME).item(0).getTextContent();
+    gridEdgeType = getField(scanner, GRID_EDGE_TYPE_FIELD_NAME);
+    cellShape = getField(scanner, CELL_SHAPE_FIELD_NAME);
+    if (scanner.getField(LANGUAGE_FIELD_NAME) != null) {
+      language = scanner.getField(LANGUAGE_FIELD_NAME);
+    }
 
-    sliderInitial = element.getElementsByTagName(SLIDER_FIELD_NAME).item(0).getTextContent();
+    sliderInitial = getField(scanner, SLIDER_FIELD_NAME);
 
     // update resource bundle given language
     resourceBundle = ResourceBundle.getBundle(DEFAULT_RESOURCE_PACKAGE + "Errors" + language);
 
   }
 
+  /**
+   * Obtain the text of a single data field, treating a missing field as an empty one
+   *
+   * @param scanner, contents of the XML file
+   * @param name,    name of the field
+   * @return text of the field, or an empty String if the field is missing
+   */
+  private String getField(ConfigurationScanner scanner, String name) {
+    String value = scanner.getField(name);
+    return value == null ? "" : value;
+  }
+
   /**
    * Parse the parameters in the XML file, populating the parameters hashmap that maps parameter
    * names to values.
    *
-   * @param parametersNode, the node containing the list of parameters read from the XML file
+   * @param parameterList, the name and value of each parameter read from the XML file, or null if
+   *                       there is no parameters field
    * @throws InvalidValueException when a parameter value is negative
    */
-  private void parseParameters(Node parametersNode) throws InvalidValueException {
-    Element parameterElement = (Element) parametersNode;
-    NodeList parametersNodeList = parameterElement.getElementsByTagName("*");
+  private void parseParameters(List<Map.Entry<String, String>> parameterList)
+      throws InvalidValueException {
+    if (parameterList == null) {
+      return;
+    }
 
-    // iterate through the parameters node list to obtain the value for each parameter
+    // iterate through the parameters list to obtain the value for each parameter
     // and create new entries in the parameters hashmap
-    for (int i = 0; i < parametersNodeList.getLength(); i++) {
-      Node parameterNode = parametersNodeList.item(i);
-      String name = parameterNode.getNodeName();
+    for (Map.Entry<String, String> parameter : parameterList) {
+      String name = parameter.getKey();
       // check if parameter name is valid for given simulation
 
-      String valueString = parameterNode.getTextContent();
+      String valueString = parameter.getValue();
       // check if parameter value is not given (empty). If yes, assign default value.
       if (valueString.isEmpty()) {
         valueString = assignDefaultValueToParameter(name);
@@ -720,20 +951,18 @@ public class XmlParser {
    * Parse the random configuration states in the XML file, populating the
    * randomConfigurationTotalStates hashmap that maps states to their predefined number.
    *
-   * @param randomConfigNode, the node containing the list of random configuration states read from
-   *                          the XML file
+   * @param randomConfigList, the name and number of each random configuration state read from the
+   *                          XML file, or null if there is no random configuration field
    * @throws InvalidValueException when a random configuration value is negative
    */
-  private void parseRandomConfig(Node randomConfigNode) throws InvalidValueException {
-    Element randomConfigElement = (Element) randomConfigNode;
-    NodeList randomConfigNodeList = randomConfigElement.getElementsByTagName("*");
-    if (randomConfigNodeList.getLength() == 0) {
+  private void parseRandomConfig(List<Map.Entry<String, String>> randomConfigList)
+      throws InvalidValueException {
+    if (randomConfigList == null) {
       return;
     }
-    for (int i = 0; i < randomConfigNodeList.getLength(); i++) {
-      Node currRandConfigNode = randomConfigNodeList.item(i);
-      String name = currRandConfigNode.getNodeName();
-      int value = Integer.parseInt(currRandConfigNode.getTextContent());
+    for (Map.Entry<String, String> randomConfig : randomConfigList) {
+      String name = randomConfig.getKey();
+      int value = Integer.parseInt(randomConfig.getValue());
       if (value < 0) {
         throw new InvalidValueException(
             String.format(resourceBundle.getString("NegativeRandConfigValueError"), name));
@@ -749,24 +978,54 @@ public class XmlParser {
 
 
   /**
-   * Set the state for each cell in the simulation according to the random configuration parameters
+   * Set the state for each cell in the simulation according to the random configuration
+   * parameters, placing exactly the given number of cells of each state
    */
   private void setRandomlyConfiguredStates() {
-    List<Integer> resultList = new ArrayList<>();
+    states = generateRandomStates(randomLayout);
+  }
+
+  /**
+   * Checks whether the cells are placed by a random configuration rather than listed in the file
+   *
+   * @return true if and only if the configuration read has a random configuration
+   */
+  public boolean isRandomlyConfigured() {
+    return !randomConfigurationTotalStates.isEmpty();
+  }
+
+  /**
+   * Lays out the random configuration again, such as once for each replicate of a run, placing
+   * exactly the given number of cells of each state
+   *
+   * @param layout, the generator of the layout
+   * @return the state of each cell in row-major order
+   */
+  public int[] generateRandomStates(RandomLayout layout) {
     Pattern pattern = Pattern.compile("num(\\d+)");
+    int[] randomStates = new int[randomConfigurationTotalStates.size()];
+    int[] counts = new int[randomConfigurationTotalStates.size()];
+    int numRandomStates = 0;
     for (Map.Entry<String, Integer> entry : randomConfigurationTotalStates.entrySet()) {
-      String key = entry.getKey();
-      Integer repeat = entry.getValue();
-      Matcher matcher = pattern.matcher(key);
+      Matcher matcher = pattern.matcher(entry.getKey());
       if (matcher.find()) {
-        int num = Integer.parseInt(matcher.group(1));
-        for (int z = 0; z < repeat; z++) {
-          resultList.add(num);
-        }
+        randomStates[numRandomStates] = Integer.parseInt(matcher.group(1));
+        counts[numRandomStates] = entry.getValue();
+        numRandomStates++;
       }
     }
-    Collections.shuffle(resultList, new Random());
-    states = resultList;
+    return layout.generate(Arrays.copyOf(randomStates, numRandomStates),
+        Arrays.copyOf(counts, numRandomStates));
+  }
+
+  /**
+   * Reseeds the random layouts of random configurations read afterwards, so that they can be
+   * reproduced
+   *
+   * @param seed, the seed of the random layouts
+   */
+  public void setRandomSeed(long seed) {
+    randomLayout = new RandomLayout(seed);
   }
 
 
@@ -786,6 +1045,7 @@ public class XmlParser {
       case SCHELLING_NAME -> findDefaultParameter(SCHELLING_PARAMETERS, name);
       case WATOR_NAME -> findDefaultParameter(WATOR_PARAMETERS, name);
       case SUGAR_NAME -> findDefaultParameter(SUGAR_PARAMETERS, name);
+      case FALLING_NAME -> findDefaultParameter(FALLING_PARAMETERS, name);
       default -> throw new InvalidValueException(
           String.format(resourceBundle.getString("NonExistentSimulationType"), type));
     };
@@ -818,33 +1078,53 @@ public class XmlParser {
   }
 
   /**
-   * Convert the states data read in as a single String from the XML configuration file to an
-   * ArrayList of Integers.
+   * Take the states decoded from the XML configuration file, checking that each is a valid state
+   * for the simulation type.
    *
-   * @param statesNode, node containing the single String indicating states for each cell in the
-   *                    simulation
-   * @throws InvalidCellStateException, when a cell's state is invalid for given simulation
+   * @param decoder, decoder holding the state of each cell, or null if there is no states field
+   * @throws InvalidCellStateException,  when a cell's state is invalid for given simulation
+   * @throws InvalidGridBoundsException, when the field holds more than StatesDecoder.MAX_CELLS
+   *                                     states
    */
-  private void parseStates(Node statesNode) throws InvalidCellStateException {
-    String rawStates = statesNode.getTextContent();
-    if (rawStates.isEmpty()) {
+  private void parseStates(StatesDecoder decoder) throws InvalidCellStateException,
+      InvalidGridBoundsException {
+    if (decoder == null) {
       return;
     }
-    this.states.clear();
-    String[] states = rawStates.split(" ");
-    for (String state : states) {
+    int[] decodedStates = decoder.finish();
+    if (decoder.isTooLarge()) {
+      throw new InvalidGridBoundsException(
+          String.format(resourceBundle.getString("TooManyCells"), StatesDecoder.MAX_CELLS));
+    }
+    if (decodedStates.length == 0) {
+      return;
+    }
+    // look up valid states by value rather than converting every cell's state to a String
+    Set<String> validStates = SIMULATION_CELL_STATES.get(type);
+    int maxValid = validStates.stream().mapToInt(Integer::parseInt).max().orElse(-1);
+    boolean[] isValid = new boolean[maxValid + 1];
+    for (String state : validStates) {
+      isValid[Integer.parseInt(state)] = true;
+    }
+    for (int i = 0; i < decodedStates.length; i++) {
       // check for invalid cell state for given simulation type
-      if (!SIMULATION_CELL_STATES.get(type).contains(state)) {
+      if (i == decoder.getInvalidPosition()) {
+        throw new InvalidCellStateException(
+            String.format(resourceBundle.getString("InvalidCellState"), decoder.getInvalidToken(),
+                type));
+      }
+      int state = decodedStates[i];
+      if (state > maxValid || !isValid[state]) {
         throw new InvalidCellStateException(
             String.format(resourceBundle.getString("InvalidCellState"), state, type));
       }
-      this.states.add(Integer.parseInt(state));
     }
+    this.states = decodedStates;
   }
 
   /**
-   * Create a new XML file, saving all information and the current cell states of the simulation
-   * currently being run.
+   * Create a new XML file, saving all information and the cell states read from the configuration
+   * file of the simulation currently being run.
    *
    * @param filename,   name of the new XML file
    * @param folderName, folder in which the new XML file will be stored
@@ -853,176 +1133,72 @@ public class XmlParser {
    */
   public void createXml(String filename, String folderName) throws InvalidFileFormatException,
       SavingFileException {
-
-    // create new Document object
-    Document doc = createNewDoc();
-
-    // create root element simulation
-    Element rootElement = doc.createElement("simulation");
-    doc.appendChild(rootElement);
-
-    // add all data fields to root element
-    addElementsToXmlFile(doc, rootElement);
-
-    // write document to a new file
-    String path = "data/" + folderName + "/" + filename + ".xml";
-    writeXml(doc, path);
+    createXml(filename, folderName, states);
   }
 
   /**
-   * Create new Document object for writing new XML file
+   * Create a new XML file, saving all information and the given cell states of the simulation
+   * currently being run. The file is streamed to disk as it is written, with the cell states
+   * converted to text a chunk at a time, run-length encoded if the stateEncoding is "rle". Any
+   * random configuration read is left out, since the states written already place every cell and
+   * reading the file again must give back exactly those states rather than a new random layout.
    *
-   * @return Document object to be written.
+   * @param filename,     name of the new XML file
+   * @param folderName,   folder in which the new XML file will be stored
+   * @param currentStates, the state of each cell in row-major order
+   * @throws InvalidFileFormatException, when specified path to file is invalid
+   * @throws SavingFileException,        when errors occur during conversion to XML file
    */
-  private Document createNewDoc() {
-    try {
-      DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
-      DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
-      return docBuilder.newDocument();
-    } catch (ParserConfigurationException e) {
-      throw new SavingFileException(resourceBundle.getString("DocumentCreationError"));
+  public void createXml(String filename, String folderName, int[] currentStates)
+      throws InvalidFileFormatException, SavingFileException {
+    String path = "data/" + folderName + "/" + filename + ".xml";
+    try (ConfigurationWriter writer = new ConfigurationWriter(Path.of(path))) {
+      // add all data fields to root element
+      addSingleElements(writer);
+      writer.writeStates(INITIAL_STATES_FIELD_NAME, currentStates,
+          StatesDecoder.RUN_LENGTH_ENCODING.equals(stateEncoding));
+      addParameters(writer);
+    } catch (NoSuchFileException e) {
+      throw new InvalidFileFormatException(
+          String.format(resourceBundle.getString("PathNotFound"), path), e);
+    } catch (IOException | XMLStreamException e) {
+      throw new SavingFileException(resourceBundle.getString("DocumentCreationError"), e);
     }
   }
 
   /**
-   * Add all data fields to XML document
-   *
-   * @param doc,         XML document being written to
-   * @param rootElement, root simulation element
-   */
-  private void addElementsToXmlFile(Document doc, Element rootElement) {
-    // Add all single elements
-    addSingleElements(doc, rootElement);
-
-    // Add initial states field
-    addInitialStatesElement(doc, rootElement);
-
-    // Add parameters field
-    addElement(doc, rootElement, PARAMETERS_FIELD_NAME, null);
-
-    // Add random configuration states field
-    addElement(doc, rootElement, RANDOM_CONFIG_FIELD_NAME, null);
-  }
-
-  /**
-   * Add all single data fields to XML document
+   * Add all single data fields to XML file
    *
-   * @param doc,         XML document being written to
-   * @param rootElement, root simulation element
+   * @param writer, writer of the XML file
    */
-  private void addSingleElements(Document doc, Element rootElement) {
-    addElement(doc, rootElement, TYPE_FIELD_NAME, type);
-    addElement(doc, rootElement, TITLE_FIELD_NAME, title);
-    addElement(doc, rootElement, AUTHOR_FIELD_NAME, author);
-    addElement(doc, rootElement, FILE_DES_FIELD_NAME, fileDescription);
-    addElement(doc, rootElement, DISPLAY_DES_FIELD_NAME, displayDescription);
-    addElement(doc, rootElement, WIDTH_FIELD_NAME, String.valueOf(width));
-    addElement(doc, rootElement, HEIGHT_FIELD_NAME, String.valueOf(height));
-    addElement(doc, rootElement, NEIGHBORHOOD_TYPE_FIELD_NAME, neighborhoodType);
-    addElement(doc, rootElement, GRID_EDGE_TYPE_FIELD_NAME, gridEdgeType);
-    addElement(doc, rootElement, CELL_SHAPE_FIELD_NAME, cellShape);
-    addElement(doc, rootElement, LANGUAGE_FIELD_NAME, language);
-    addElement(doc, rootElement, SLIDER_FIELD_NAME, sliderInitial);
+  private void addSingleElements(ConfigurationWriter writer) throws XMLStreamException {
+    writer.writeField(TYPE_FIELD_NAME, type);
+    writer.writeField(TITLE_FIELD_NAME, title);
+    writer.writeField(AUTHOR_FIELD_NAME, author);
+    writer.writeField(FILE_DES_FIELD_NAME, fileDescription);
+    writer.writeField(DISPLAY_DES_FIELD_NAME, displayDescription);
+    writer.writeField(WIDTH_FIELD_NAME, String.valueOf(width));
+    writer.writeField(HEIGHT_FIELD_NAME, String.valueOf(height));
+    writer.writeField(NEIGHBORHOOD_TYPE_FIELD_NAME, neighborhoodType);
+    writer.writeField(GRID_EDGE_TYPE_FIELD_NAME, gridEdgeType);
+    writer.writeField(CELL_SHAPE_FIELD_NAME, cellShape);
+    writer.writeField(LANGUAGE_FIELD_NAME, language);
+    writer.writeField(SLIDER_FIELD_NAME, sliderInitial);
 
   }
 
-  /**
-   * Add the initial states field to XML document
-   *
-   * @param doc,         XML document being written to
-   * @param rootElement, root simulation element
-   */
-  private void addInitialStatesElement(Document doc, Element rootElement) {
-    // Convert Integer ArrayList recording the current states of cell to a single String
-    List<String> states = new ArrayList<>();
-    for (Integer cell : this.states) {
-      states.add(String.valueOf(cell));
-    }
-    String convertedStatesData = String.join(" ", states);
-    addElement(doc, rootElement, INITIAL_STATES_FIELD_NAME, convertedStatesData);
-  }
-
-  /**
-   * Add a single data field (element) under a root element when creating a new XML file
-   *
-   * @param doc,         XML document being written to
-   * @param rootElement, root simulation element
-   * @param name,        name of single data field
-   * @param content,     content of single data field
-   */
-  private void addElement(Document doc, Element rootElement, String name, String content) {
-    Element element = doc.createElement(name);
-    if (name.equals(PARAMETERS_FIELD_NAME) && !parameters.isEmpty()) {
-      createParameters(doc, element);
-    } else if (name.equals(RANDOM_CONFIG_FIELD_NAME)
-        && !randomConfigurationTotalStates.isEmpty()) {
-      createRandomConfigStates(doc, element);
-    } else {
-      element.setTextContent(content);
-    }
-    rootElement.appendChild(element);
-  }
-
   /**
    * Create the parameter element under the root simulation element in the XML file that contains a
    * list of individual parameters each with their specified name and value.
    *
-   * @param doc,              Document object being written to
-   * @param parameterElement, the element object representing the parameters field under which
-   *                          specific parameters will be written
+   * @param writer, writer of the XML file
    */
-  private void createParameters(Document doc, Element parameterElement) {
+  private void addParameters(ConfigurationWriter writer) throws XMLStreamException {
+    writer.startGroup(PARAMETERS_FIELD_NAME);
     for (String parameterName : parameters.keySet()) {
-      addElement(doc, parameterElement, parameterName,
-          String.valueOf(parameters.get(parameterName)));
-    }
-  }
-
-  /**
-   * Create the random configuration states element under the root simulation element in the XML
-   * file that contains a list of individual states each with their specified number.
-   *
-   * @param doc,                 Document object being written to
-   * @param randomConfigElement, the element object representing the random_configuration_states
-   *                             field under which each state and its total number of cells will be
-   *                             written
-   */
-  private void createRandomConfigStates(Document doc, Element randomConfigElement) {
-    for (String randomConfigName : randomConfigurationTotalStates.keySet()) {
-      addElement(doc, randomConfigElement, randomConfigName,
-          String.valueOf(randomConfigurationTotalStates.get(randomConfigName)));
-    }
-  }
-
-  /**
-   * Write XML document to output stream, saving as a file
-   *
-   * @param doc,  Document object being written to
-   * @param path, specified path to which the new file will be stored
-   * @throws InvalidFileFormatException, when errors occur from converting to XML file format
-   * @throws SavingFileException,        when errors occur during saving the XML file
-   */
-  private void writeXml(Document doc, String path) throws InvalidFileFormatException,
-      SavingFileException {
-    try {
-      FileOutputStream output = new FileOutputStream(path);
-      TransformerFactory transformerFactory = TransformerFactory.newInstance();
-      Transformer transformer = transformerFactory.newTransformer();
-
-      // formatting XML file
-      transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-
-      DOMSource source = new DOMSource(doc);
-      StreamResult result = new StreamResult(output);
-      transformer.transform(source, result);
-
-    } catch (FileNotFoundException e) {
-      throw new InvalidFileFormatException(
-          String.format(resourceBundle.getString("PathNotFound"), path), e);
-    } catch (TransformerException e) {
-      throw new SavingFileException(resourceBundle.getString("DocumentCreationError"), e);
+      writer.writeField(parameterName, String.valueOf(parameters.get(parameterName)));
     }
-
+    writer.endGroup();
   }
 
   /**
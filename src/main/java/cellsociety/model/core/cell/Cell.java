@@ -48,7 +48,7 @@ public abstract class Cell<T extends Cell<T>> {
    * @param grid     the row the cell is positioned at as represented on a 2D coordinate grid
    */
   public void initializeNeighbors(Neighborhood hoodType, Grid grid) {
-    myNeighbors = hoodType.getNeighbors(grid, this);
+    setNeighborhood(hoodType.getNeighbors(grid, this));
   }
 
   /**
@@ -1,10 +1,11 @@
 package cellsociety.model.core.cell;
 
+import cellsociety.Point;
 import cellsociety.model.core.shape.Shape;
 import cellsociety.model.simulation.FallingSandSimulation;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 /**
  * Represents an extension of the Cell, and serves as the atomic unit of the Falling Sand
@@ -15,6 +16,17 @@ import java.util.List;
  */
 public class FallingSandCell extends Cell<FallingSandCell> {
 
+  private static final FallingSandCell[] NO_CELLS = new FallingSandCell[0];
+  private final Random myRandom;
+  /**
+   * Neighbors in the direction of gravity, computed once from the cell geometry whenever the
+   * neighborhood is set. mySinkTarget is the neighbor sand falls into (the neighbor below this
+   * cell along the steepest line), or null if there is none. myFlowTargets are the neighbors water
+   * may flow into (those below or beside this cell).
+   */
+  private FallingSandCell mySinkTarget;
+  private FallingSandCell[] myFlowTargets = NO_CELLS;
+
   /**
    * Constructs a Percolation Cell object for the Percolation simulation
    *
@@ -23,29 +35,47 @@ public class FallingSandCell extends Cell<FallingSandCell> {
    * @param col          the column the cell is positioned at as represented on a 2D coordinate
    *                     grid
    * @param shapeType    the shape of a cell, as represented on a 2D coordinate grid
+   * @param random       random number generator shared by the cells of the simulation
    */
-  public FallingSandCell(int initialState, int row, int col, Shape shapeType) {
+  public FallingSandCell(int initialState, int row, int col, Shape shapeType, Random random) {
     super(initialState, row, col, shapeType);
+    myRandom = random;
   }
 
-
   /**
-   * Handles transition of sand cell in Falling Sand Cell percolation. These sand cells will move
-   * downward, replacing empty cells or water cells when possible, each timestep.
+   * Updates the neighborhood, and determines which neighbors lie in the direction of gravity.
+   * Works for any cell shape, since only the centroids of the cells are compared.
+   *
+   * @param neighborhood a list of generic Cells representing the new neighbors of this cell.
    */
-  private void handleSandCell() {
-    FallingSandCell bestOption = null;
+  @Override
+  public void setNeighborhood(List<FallingSandCell> neighborhood) {
+    super.setNeighborhood(neighborhood);
+    Point centroid = getCentroid();
+    mySinkTarget = null;
     double bestSlope = 0;
-    for (FallingSandCell cell : getNeighbors()) {
-      double newSlope = (cell.getCentroid().getRow() - getCentroid().getRow()) /
-          (cell.getCentroid().getCol() - getCentroid().getCol());
-      if (cell.getCentroid().getRow() > getCentroid().getRow()
-          && Math.abs(newSlope) > bestSlope) {
-        bestOption = cell;
+    List<FallingSandCell> flowTargets = new ArrayList<>();
+    for (FallingSandCell cell : neighborhood) {
+      Point other = cell.getCentroid();
+      double newSlope = (other.getRow() - centroid.getRow()) /
+          (other.getCol() - centroid.getCol());
+      if (other.getRow() > centroid.getRow() && Math.abs(newSlope) > bestSlope) {
+        mySinkTarget = cell;
         bestSlope = Math.abs(newSlope);
-
+      }
+      if (other.getRow() >= centroid.getRow()) {
+        flowTargets.add(cell);
       }
     }
+    myFlowTargets = flowTargets.toArray(NO_CELLS);
+  }
+
+  /**
+   * Handles transition of sand cell in Falling Sand Cell percolation. These sand cells will move
+   * downward, replacing empty cells or water cells when possible, each timestep.
+   */
+  private void handleSandCell() {
+    FallingSandCell bestOption = mySinkTarget;
     if (bestOption == null) {
       setNextState(getCurrentState());
       return;
@@ -65,35 +95,26 @@ public class FallingSandCell extends Cell<FallingSandCell> {
 
   /**
    * Handles transition of water cell, so it randomly moves horizontally or downward into an empty
-   * space
+   * space. The destination is chosen uniformly among the open flow targets by reservoir sampling.
    */
   private void handleWaterCell() {
-    List<FallingSandCell> options = new ArrayList<>();
-    for (FallingSandCell cell : getNeighbors()) {
-      if (cell.getCentroid().getRow() >= getCentroid().getRow()) {
-        if (cell.getCurrentState() == FallingSandSimulation.EMPTY
-            && cell.getNextState() == PLACEHOLDER) {
-          options.add(cell);
+    FallingSandCell nextCell = null;
+    int numOptions = 0;
+    for (FallingSandCell cell : myFlowTargets) {
+      if (cell.getCurrentState() == FallingSandSimulation.EMPTY
+          && cell.getNextState() == PLACEHOLDER) {
+        numOptions++;
+        if (myRandom.nextInt(numOptions) == 0) {
+          nextCell = cell;
         }
       }
     }
-    Collections.shuffle(options);
-    int index = 0;
-    while (index < options.size() && options.get(index).getNextState() != PLACEHOLDER) {
-      index++;
-    }
-    if (index == options.size()) {
+    if (nextCell == null) {
       setNextState(getCurrentState());
       return;
     }
-    FallingSandCell nextCell = options.get(index);
-    if (nextCell.getNextState() == PLACEHOLDER) {
-      if (nextCell.getCurrentState() == FallingSandSimulation.EMPTY) {
-        nextCell.setNextState(FallingSandSimulation.WATER);
-        setCurrentState(FallingSandSimulation.EMPTY);
-      }
-    }
-
+    nextCell.setNextState(FallingSandSimulation.WATER);
+    setCurrentState(FallingSandSimulation.EMPTY);
   }
 
 
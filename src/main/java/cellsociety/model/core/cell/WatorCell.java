@@ -2,10 +2,10 @@ package cellsociety.model.core.cell;
 
 import cellsociety.model.core.shape.Shape;
 import cellsociety.model.simulation.WatorSimulation;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.function.Predicate;
 
 /**
  * Represents an extension of the Cell, and serves as the atomic unit of the Wator Simulation.
@@ -16,6 +16,12 @@ import java.util.Map;
 
 public class WatorCell extends Cell<WatorCell> {
 
+  /**
+   * Claims a cell as long as no other creature has decided to move into it yet. This is the claim
+   * policy used when creatures are moved one at a time.
+   */
+  public static final Predicate<WatorCell> UNCLAIMED = cell -> cell.getNextState() == PLACEHOLDER;
+
   private int myCurrentAge;
   private int myCurrentEnergy;
   private int myNextAge;
@@ -40,6 +46,10 @@ public class WatorCell extends Cell<WatorCell> {
    * Number of chronons (timesteps) that must pass since birth of a fish until the fish is fertile
    */
   private int fishAgeOfReproduction;
+  /**
+   * Random number generator shared by the simulation, used to choose where creatures move
+   */
+  private final Random myRandom;
 
   /**
    * Constructs a Percolation Cell object for the Percolation simulation
@@ -51,10 +61,12 @@ public class WatorCell extends Cell<WatorCell> {
    * @param shapeType    the shape of a cell, as represented on a 2D coordinate grid
    * @param params       map of string parameter names to their values. Description of parameters
    *                     can be found at the declaration of the instance variables.
+   * @param random       random number generator shared by the simulation
    */
   public WatorCell(int initialState, int row, int col, Shape shapeType,
-      Map<String, Integer> params) {
+      Map<String, Integer> params, Random random) {
     super(initialState, row, col, shapeType);
+    myRandom = random;
     myCurrentAge = 0;
     myNextEnergy = -1;
     myNextAge = -1;
@@ -100,7 +112,7 @@ public class WatorCell extends Cell<WatorCell> {
    *
    * @return the current energy remaining for a shark, or -1
    */
-  private int getEnergy() {
+  public int getEnergy() {
     return myCurrentEnergy;
   }
 
@@ -109,10 +121,21 @@ public class WatorCell extends Cell<WatorCell> {
    *
    * @return the number of timesteps since birth of the shark/fish, or -1
    */
-  private int getAge() {
+  public int getAge() {
     return myCurrentAge;
   }
 
+  /**
+   * Restores the current age and energy of the cell, such as when loading a saved simulation
+   *
+   * @param age    the number of timesteps since birth of the shark/fish, or -1
+   * @param energy the energy remaining for a shark, or -1
+   */
+  public void setAgeAndEnergy(int age, int energy) {
+    myCurrentAge = age;
+    myCurrentEnergy = energy;
+  }
+
   /**
    * Updates myNextEnergy instance variable
    *
@@ -132,19 +155,27 @@ public class WatorCell extends Cell<WatorCell> {
   }
 
   /**
-   * Filters a list of WatorCell objects to retrieve all Cells of a certain state
+   * Chooses a neighbor of a certain state uniformly at random, using reservoir sampling so that no
+   * intermediate list of candidates has to be built
    *
-   * @param state target state in filtering operation
-   * @return a (copy) of a filtered list of all cells in cellList with a currentState equal to state
+   * @param state  target state of the neighbor
+   * @param random random number generator used to make the choice
+   * @return a random neighbor with a currentState equal to state, or null if there is none
    */
-  private List<WatorCell> getNeighborsOfState(int state) {
-    List<WatorCell> ret = new ArrayList<>();
-    for (WatorCell cell : getNeighbors()) {
+  private WatorCell randomNeighborOfState(int state, Random random) {
+    List<WatorCell> neighbors = getNeighbors();
+    WatorCell chosen = null;
+    int numSeen = 0;
+    for (int i = 0; i < neighbors.size(); i++) {
+      WatorCell cell = neighbors.get(i);
       if (cell.getCurrentState() == state) {
-        ret.add(cell);
+        numSeen++;
+        if (random.nextInt(numSeen) == 0) {
+          chosen = cell;
+        }
       }
     }
-    return ret;
+    return chosen;
   }
 
   /**
@@ -167,23 +198,26 @@ public class WatorCell extends Cell<WatorCell> {
    * attempting to move to is already determined. Shark will reproduce if necessary.
    *
    * @param nextCell the cell the shark is attempting to move to
+   * @param claimer  claims nextCell for this shark, failing if another creature already has
+   * @return nextCell if the shark moved there, or null if the shark stayed put
    */
-  private void handleSharkMoveToEmptySpace(WatorCell nextCell) {
-    if (nextCell.getNextState()
-        == WatorSimulation.SHARK) { //another shark is already moving to nextCell
+  private WatorCell handleSharkMoveToEmptySpace(WatorCell nextCell,
+      Predicate<WatorCell> claimer) {
+    if (!claimer.test(nextCell)) { //another shark is already moving to nextCell
       updateStateEnergyAge(WatorSimulation.SHARK, getEnergy() - 1,
           getAge() + 1);
-    } else {
+      return null;
+    }
+    nextCell.updateStateEnergyAge(WatorSimulation.SHARK, getEnergy() - 1,
+        getAge() + 1);
+    if (getAge() >= sharkAgeOfReproduction) {
+      updateStateEnergyAge(WatorSimulation.SHARK, initialEnergy, 0); //create shark
       nextCell.updateStateEnergyAge(WatorSimulation.SHARK, getEnergy() - 1,
-          getAge() + 1);
-      if (getAge() >= sharkAgeOfReproduction) {
-        updateStateEnergyAge(WatorSimulation.SHARK, initialEnergy, 0); //create shark
-        nextCell.updateStateEnergyAge(WatorSimulation.SHARK, getEnergy() - 1,
-            0); //reproducing Shark
-      } else {
-        fillEmptyCell();
-      }
+          0); //reproducing Shark
+    } else {
+      fillEmptyCell();
     }
+    return nextCell;
   }
 
   /**
@@ -192,26 +226,26 @@ public class WatorCell extends Cell<WatorCell> {
    * age too in the process.
    *
    * @param nextCell the cell where the prey (fish) is first located, and where the shark will move
+   * @param claimer  claims nextCell for this shark, failing if another creature already has
+   * @return nextCell if the shark moved there, or null if the shark stayed put
    */
-  private void handleSharkEatFish(WatorCell nextCell) {
-    if (nextCell.getNextState() == WatorSimulation.SHARK
-        || nextCell.getNextState() == WatorSimulation.FISH) {
+  private WatorCell handleSharkEatFish(WatorCell nextCell, Predicate<WatorCell> claimer) {
+    if (!claimer.test(nextCell)) {
       //another shark or fish is already moving to nextCell
       updateStateEnergyAge(WatorSimulation.SHARK, getEnergy() - 1,
           getAge() + 1);
+      return null;
+    }
+    if (getAge() >= sharkAgeOfReproduction) {
+      updateStateEnergyAge(WatorSimulation.SHARK, initialEnergy, 0);
+      nextCell.updateStateEnergyAge(WatorSimulation.SHARK, getEnergy() + energyBoost,
+          0);
     } else {
-      if (getAge() >= sharkAgeOfReproduction) {
-        updateStateEnergyAge(WatorSimulation.SHARK, initialEnergy, 0);
-        nextCell.updateStateEnergyAge(WatorSimulation.SHARK, getEnergy() + energyBoost,
-            0);
-
-      } else {
-        fillEmptyCell();
-        nextCell.updateStateEnergyAge(WatorSimulation.SHARK, getEnergy() + energyBoost,
-            getAge() + 1);
-
-      }
+      fillEmptyCell();
+      nextCell.updateStateEnergyAge(WatorSimulation.SHARK, getEnergy() + energyBoost,
+          getAge() + 1);
     }
+    return nextCell;
   }
 
   /**
@@ -229,51 +263,49 @@ public class WatorCell extends Cell<WatorCell> {
   /**
    * Specific transition function for a fish cell in Wator Simulation. Calls the proper helper
    * function for transitioning based on the current state of neighbors.
+   *
+   * @param random  random number generator used to choose where the fish moves
+   * @param claimer claims the chosen cell for this fish, failing if another creature already has
+   * @return the cell the fish moved or bred into, or null if the fish stayed put
    */
-  private void updateFish() {
-    List<WatorCell> emptyNeighbors = getNeighborsOfState(WatorSimulation.EMPTY);
-    Collections.shuffle(emptyNeighbors);
-    if (emptyNeighbors.isEmpty()) {
+  private WatorCell updateFish(Random random, Predicate<WatorCell> claimer) {
+    WatorCell nextCell = randomNeighborOfState(WatorSimulation.EMPTY, random);
+    if (nextCell == null || !claimer.test(nextCell)) {
       increaseFishAge();
+      return null;
+    }
+    if (getAge() < fishAgeOfReproduction) {
+      nextCell.updateStateEnergyAge(WatorSimulation.FISH, -1, getAge() + 1);
+      fillEmptyCell();
     } else {
-      WatorCell nextCell = emptyNeighbors.get(0);
-      if (nextCell.getNextState() == WatorSimulation.SHARK
-          || nextCell.getNextState() == WatorSimulation.FISH) {
-        increaseFishAge();
-      } else {
-        if (getAge() < fishAgeOfReproduction) {
-          nextCell.updateStateEnergyAge(WatorSimulation.FISH, -1, getAge() + 1);
-          fillEmptyCell();
-        } else {
-          updateStateEnergyAge(WatorSimulation.FISH, -1, 0);
-          nextCell.updateStateEnergyAge(WatorSimulation.FISH, -1, 0);
-        }
-      }
+      updateStateEnergyAge(WatorSimulation.FISH, -1, 0);
+      nextCell.updateStateEnergyAge(WatorSimulation.FISH, -1, 0);
     }
+    return nextCell;
   }
 
   /**
    * Specific transition function for a shark cell in Wator Simulation. Calls the proper helper
    * function for transitioning based on the current state of neighbors.
+   *
+   * @param random  random number generator used to choose where the shark moves
+   * @param claimer claims the chosen cell for this shark, failing if another creature already has
+   * @return the cell the shark moved or bred into, or null if the shark stayed put
    */
-  private void updateShark() {
-    List<WatorCell> emptyNeighbors = getNeighborsOfState(WatorSimulation.EMPTY);
-    List<WatorCell> fishNeighbors = getNeighborsOfState(WatorSimulation.FISH);
-
-    Collections.shuffle(emptyNeighbors);
-    Collections.shuffle(fishNeighbors);
-
-    if (fishNeighbors.isEmpty() && emptyNeighbors.isEmpty()) {
+  private WatorCell updateShark(Random random, Predicate<WatorCell> claimer) {
+    WatorCell fishNeighbor = randomNeighborOfState(WatorSimulation.FISH, random);
+    if (fishNeighbor != null) {
+      return handleSharkEatFish(fishNeighbor, claimer);
+    }
+    WatorCell emptyNeighbor = randomNeighborOfState(WatorSimulation.EMPTY, random);
+    if (emptyNeighbor == null) {
       handleSharkCantMove();
-    } else if (!fishNeighbors.isEmpty()) {
-      handleSharkEatFish(fishNeighbors.get(0));
+    } else if (getEnergy() <= 1) {
+      fillEmptyCell();
     } else {
-      if (getEnergy() <= 1) {
-        fillEmptyCell();
-      } else {
-        handleSharkMoveToEmptySpace(emptyNeighbors.get(0));
-      }
+      return handleSharkMoveToEmptySpace(emptyNeighbor, claimer);
     }
+    return null;
   }
 
   /**
@@ -282,21 +314,30 @@ public class WatorCell extends Cell<WatorCell> {
    */
   @Override
   public void transition() {
+    move(myRandom, UNCLAIMED);
+  }
+
+  /**
+   * Handles transition of Wator Cell, deciding where the creature in this cell moves. Before a
+   * creature moves into (or breeds into) a neighboring cell, it must claim that cell through the
+   * given claimer. Creatures that fail to claim their chosen cell stay put, which lets the
+   * simulation resolve conflicts between creatures that are moved concurrently.
+   *
+   * @param random  random number generator used to choose where the creature moves
+   * @param claimer claims a neighboring cell for this creature, returning false if another creature
+   *                has already claimed it
+   * @return the neighboring cell the creature moved or bred into, or null if only this cell's next
+   * state was set
+   */
+  public WatorCell move(Random random, Predicate<WatorCell> claimer) {
     switch (getCurrentState()) {
-      case WatorSimulation.EMPTY: {
-        setNextState(WatorSimulation.EMPTY);
-        break;
-      }
-      case WatorSimulation.FISH: {
-        updateFish();
-        break;
-      }
-      case WatorSimulation.SHARK: {
-        updateShark();
-        break;
-      }
+      case WatorSimulation.FISH:
+        return updateFish(random, claimer);
+      case WatorSimulation.SHARK:
+        return updateShark(random, claimer);
       default:
-        break; //TODO: check exception
+        setNextState(WatorSimulation.EMPTY);
+        return null;
     }
   }
 
@@ -53,6 +53,35 @@ public class Grid<T extends Cell> {
     return myGrid.iterator();
   }
 
+  /**
+   * Retrieves the number of cells in the grid
+   *
+   * @return the total number of cells, equal to rows * cols
+   */
+  public int getNumCells() {
+    return myGrid.size();
+  }
+
+  /**
+   * Retrieves a cell by its position in row-major order
+   *
+   * @param index the row-major index of the cell, equal to row * numCols + col
+   * @return the cell at the given index
+   */
+  public T getCell(int index) {
+    return myGrid.get(index);
+  }
+
+  /**
+   * Determines the row-major index of a cell in this grid, based on the cell's location
+   *
+   * @param cell a cell contained in this grid
+   * @return the row-major index of the cell, equal to row * numCols + col
+   */
+  public int indexOf(Cell cell) {
+    return (int) cell.getLocation().getRow() * myNumCols + (int) cell.getLocation().getCol();
+  }
+
   public boolean vertexEqual(Point vtx1, Point vtx2) {
     return vtx1.equals(vtx2);
   }
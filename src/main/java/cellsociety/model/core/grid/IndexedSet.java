@@ -0,0 +1,133 @@
+package cellsociety.model.core.grid;
+
+import java.util.Arrays;
+
+/**
+ * A set of cell indices (row-major positions in a grid), backed by primitive arrays. Adding,
+ * removing and testing membership all take constant time, and members can be visited by position,
+ * which lets simulations keep track of small subsets of a large grid without scanning it.
+ *
+ * @author Noah Loewy
+ */
+public class IndexedSet {
+
+  private static final int ABSENT = -1;
+  private final int[] myMembers;
+  private final int[] myPositions;
+  private int mySize;
+
+  /**
+   * Constructs an empty IndexedSet
+   *
+   * @param capacity the number of cells in the grid; every member must be less than capacity
+   */
+  public IndexedSet(int capacity) {
+    myMembers = new int[capacity];
+    myPositions = new int[capacity];
+    Arrays.fill(myPositions, ABSENT);
+  }
+
+  /**
+   * Adds a cell index to the set, if it is not already a member
+   *
+   * @param index the row-major index of a cell
+   */
+  public void add(int index) {
+    if (myPositions[index] == ABSENT) {
+      myPositions[index] = mySize;
+      myMembers[mySize++] = index;
+    }
+  }
+
+  /**
+   * Removes a cell index from the set, if it is a member. The last member takes its place.
+   *
+   * @param index the row-major index of a cell
+   */
+  public void remove(int index) {
+    int position = myPositions[index];
+    if (position != ABSENT) {
+      int last = myMembers[--mySize];
+      myMembers[position] = last;
+      myPositions[last] = position;
+      myPositions[index] = ABSENT;
+    }
+  }
+
+  /**
+   * @param index the row-major index of a cell
+   * @return true if and only if the cell index is a member of the set
+   */
+  public boolean contains(int index) {
+    return myPositions[index] != ABSENT;
+  }
+
+  /**
+   * @return the number of members of the set
+   */
+  public int size() {
+    return mySize;
+  }
+
+  /**
+   * Retrieves a member by its position in the set. Positions change as members are removed.
+   *
+   * @param position a position between 0 and size() - 1
+   * @return the member at the given position
+   */
+  public int get(int position) {
+    return myMembers[position];
+  }
+
+  /**
+   * Swaps the members at two positions, keeping the position of each member up to date, so that
+   * members can be shuffled in place
+   *
+   * @param i a position between 0 and size() - 1
+   * @param j a position between 0 and size() - 1
+   */
+  public void swap(int i, int j) {
+    int first = myMembers[i];
+    int second = myMembers[j];
+    myMembers[i] = second;
+    myMembers[j] = first;
+    myPositions[second] = i;
+    myPositions[first] = j;
+  }
+
+  /**
+   * Copies the position of every cell index in the set, which together give both the members and
+   * the order they are visited in
+   *
+   * @return the position of each cell index, or -1 for cells that are not members
+   */
+  public int[] getPositions() {
+    return myPositions.clone();
+  }
+
+  /**
+   * Replaces the members of the set and their order with those returned by getPositions
+   *
+   * @param positions the position of each cell index, or -1 for cells that are not members
+   */
+  public void setPositions(int[] positions) {
+    clear();
+    for (int index = 0; index < positions.length; index++) {
+      if (positions[index] != ABSENT) {
+        myPositions[index] = positions[index];
+        myMembers[positions[index]] = index;
+        mySize++;
+      }
+    }
+  }
+
+  /**
+   * Removes all members from the set
+   */
+  public void clear() {
+    for (int i = 0; i < mySize; i++) {
+      myPositions[myMembers[i]] = ABSENT;
+    }
+    mySize = 0;
+  }
+}
@@ -0,0 +1,49 @@
+package cellsociety.model.core.grid;
+
+/**
+ * Adjacency between cells of a grid, stored by row-major index in two primitive arrays. The cells
+ * related to cell i are the entries of the table from start(i) up to (but not including) end(i).
+ * Walking a table allocates nothing, unlike walking the neighbor lists of the cells themselves.
+ *
+ * @author Noah Loewy
+ */
+public class NeighborTable {
+
+  private final int[] myStart;
+  private final int[] myCells;
+
+  /**
+   * Constructs a NeighborTable
+   *
+   * @param start offsets into cells, one per cell plus a final entry equal to cells.length
+   * @param cells row-major indices of the related cells, grouped by cell
+   */
+  public NeighborTable(int[] start, int[] cells) {
+    myStart = start;
+    myCells = cells;
+  }
+
+  /**
+   * @param index the row-major index of a cell
+   * @return the position of the first entry related to the cell
+   */
+  public int start(int index) {
+    return myStart[index];
+  }
+
+  /**
+   * @param index the row-major index of a cell
+   * @return the position after the last entry related to the cell
+   */
+  public int end(int index) {
+    return myStart[index + 1];
+  }
+
+  /**
+   * @param position a position between start(i) and end(i) - 1 for some cell i
+   * @return the row-major index of the cell at the given position
+   */
+  public int get(int position) {
+    return myCells[position];
+  }
+}
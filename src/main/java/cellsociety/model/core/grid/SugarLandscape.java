@@ -0,0 +1,107 @@
+package cellsociety.model.core.grid;
+
+import java.util.Arrays;
+
+/**
+ * The sugar and agent occupancy of every cell of a Sugarscape grid, indexed by row-major position
+ * and stored in primitive arrays. Sugar grows back lazily: each cell remembers the step at which its
+ * sugar was last set, and its current sugar is worked out from the growback rate when it is read.
+ * Advancing the landscape by a step therefore costs nothing for cells that no agent touched.
+ *
+ * @author Noah Loewy
+ */
+public class SugarLandscape {
+
+  public static final int NO_AGENT = -1;
+  private final int[] mySugar;
+  private final int[] myCapacity;
+  private final int[] myUpdatedAt;
+  private final int[] myOccupant;
+  private int myGrowBackRate;
+  private int myStep;
+
+  /**
+   * Constructs a landscape in which every cell starts out full and unoccupied
+   *
+   * @param capacity     the maximum sugar of each cell, in row-major order
+   * @param growBackRate the sugar each cell regains per step, up to its capacity
+   */
+  public SugarLandscape(int[] capacity, int growBackRate) {
+    myCapacity = capacity.clone();
+    mySugar = capacity.clone();
+    myUpdatedAt = new int[capacity.length];
+    myOccupant = new int[capacity.length];
+    Arrays.fill(myOccupant, NO_AGENT);
+    myGrowBackRate = growBackRate;
+  }
+
+  /**
+   * @param index the row-major index of a cell
+   * @return the sugar currently available at the cell
+   */
+  public int getSugar(int index) {
+    long grown = mySugar[index] + (long) myGrowBackRate * (myStep - myUpdatedAt[index]);
+    return (int) Math.min(grown, myCapacity[index]);
+  }
+
+  /**
+   * Sets the sugar currently available at a cell, from which it will grow back
+   *
+   * @param index the row-major index of a cell
+   * @param sugar the new amount of sugar
+   */
+  public void setSugar(int index, int sugar) {
+    mySugar[index] = sugar;
+    myUpdatedAt[index] = myStep;
+  }
+
+  /**
+   * @param index the row-major index of a cell
+   * @return the maximum sugar of the cell
+   */
+  public int getCapacity(int index) {
+    return myCapacity[index];
+  }
+
+  /**
+   * @param index the row-major index of a cell
+   * @return the agent occupying the cell, or NO_AGENT
+   */
+  public int getOccupant(int index) {
+    return myOccupant[index];
+  }
+
+  /**
+   * @param index the row-major index of a cell
+   * @param agent the agent now occupying the cell, or NO_AGENT
+   */
+  public void setOccupant(int index, int agent) {
+    myOccupant[index] = agent;
+  }
+
+  /**
+   * @return the sugar each cell regains per step
+   */
+  public int getGrowBackRate() {
+    return myGrowBackRate;
+  }
+
+  /**
+   * Changes the growback rate. Sugar grown so far is settled at the old rate first.
+   *
+   * @param growBackRate the sugar each cell regains per step, up to its capacity
+   */
+  public void setGrowBackRate(int growBackRate) {
+    for (int i = 0; i < mySugar.length; i++) {
+      setSugar(i, getSugar(i));
+    }
+    myGrowBackRate = growBackRate;
+  }
+
+  /**
+   * Moves the landscape on by one step, so that every cell not set since grows back once more
+   */
+  public void advance() {
+    myStep++;
+  }
+}
@@ -2,7 +2,11 @@ package cellsociety.model.neighborhood;
 
 import cellsociety.model.core.cell.Cell;
 import cellsociety.model.core.grid.Grid;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.Predicate;
 
 /**
  * Represents a neighborhood where neighbors are characterized as points that share a common vertex
@@ -36,5 +40,37 @@ public class ExtendedMooreNeighborhood extends MooreNeighborhood {
     }
     return false;
   }
-}
 
+  /**
+   * Retrieves all neighbors of a cell, which are the Moore neighbors of each cell that has the
+   * given cell as a Moore neighbor. This gives the same cells as checking every cell in the grid
+   * with isValidNeighbor, in the same order, without the cost of doing so.
+   *
+   * @param grid the representation of the cells on the 2D plane
+   * @param cell the central cell whose neighbors we are aiming to get
+   * @return a list of cells, each cell representing a neighbor of the given cell, in row-major
+   * order
+   */
+  @Override
+  public List<Cell> getNeighbors(Grid grid, Cell cell) {
+    TreeMap<Integer, Cell> neighbors = new TreeMap<>();
+    Predicate<Cell> isLinkedToCell = linkCell -> super.isValidNeighbor(linkCell, cell, grid);
+    for (Object linkCell : getNearbyCells(grid, cell, isLinkedToCell)) {
+      Predicate<Cell> isLinkedToNeighbor = neighbor -> super.isValidNeighbor((Cell) linkCell,
+          neighbor, grid);
+      for (Object neighbor : getNearbyCells(grid, (Cell) linkCell, isLinkedToNeighbor)) {
+        neighbors.put(grid.indexOf((Cell) neighbor), (Cell) neighbor);
+      }
+    }
+    neighbors.remove(grid.indexOf(cell));
+    return new ArrayList<>(neighbors.values());
+  }
+
+  /**
+   * @return the maximum row or column distance between neighbors, two steps of a Moore neighbor
+   */
+  @Override
+  protected int getReach() {
+    return 2 * super.getReach();
+  }
+}
@@ -4,8 +4,9 @@ import cellsociety.Point;
 import cellsociety.model.core.cell.Cell;
 import cellsociety.model.core.grid.Grid;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
 
 
 /**
@@ -19,27 +20,119 @@ public abstract class Neighborhood<T extends Cell> {
 
 
   /**
-   * Retrieves all neighbors of a cell object using the 2D grid provided
+   * Cells more than this many rows or columns apart never share a vertex, whatever their shape
+   */
+  protected static final int VERTEX_REACH = 2;
+
+  /**
+   * Retrieves all neighbors of a cell object using the 2D grid provided. Only the cells within
+   * VERTEX_REACH rows and columns of the cell (wrapping around the edges of the grid) are checked.
    *
    * @param grid the representation of the cells on the 2D plane
    * @param cell the central cell whose neighbors we are aiming to get
-   * @return a list of cells, each cell representing a neighbor of the given cell
+   * @return a list of cells, each cell representing a neighbor of the given cell, in row-major
+   * order
    */
   public List<T> getNeighbors(Grid grid, T cell) {
-    List<T> neighbors = new ArrayList<>();
-    Iterator<T> iter = grid.iterator();
-    while (iter.hasNext()) {
-      T otherCell = iter.next();
-      if (cell.equals(otherCell)) {
-        continue;
+    return getNearbyCells(grid, cell,
+        otherCell -> !cell.equals(otherCell) && isValidNeighbor(cell, otherCell, grid));
+  }
+
+  /**
+   * Retrieves the neighbors of every cell of a grid. Whether two cells are neighbors depends only
+   * on the offset between their rows and columns and on the parity of their rows (hexagons in odd
+   * rows are shifted), so away from the edges of the grid, the neighbors of one cell in an even row
+   * and one in an odd row give the offsets of the neighbors of every other cell. Only the cells
+   * near the edges are checked vertex by vertex, so this takes time proportional to the number of
+   * cells.
+   *
+   * @param grid the representation of the cells on the 2D plane
+   * @return the neighbors of each cell, as getNeighbors returns them, in row-major order of cells
+   */
+  public List<List<T>> getAllNeighbors(Grid grid) {
+    int rows = grid.getNumRows();
+    int cols = grid.getNumCols();
+    int reach = getReach();
+    boolean hasInterior = rows >= 2 * reach + 2 && cols >= 2 * reach + 1;
+    int[][] offsetsByParity = new int[2][];
+    if (hasInterior) {
+      for (int row = reach; row <= reach + 1; row++) {
+        offsetsByParity[row % 2] = getNeighborOffsets(grid, row * cols + reach);
       }
-      if (isValidNeighbor(cell, otherCell, grid)) {
-        neighbors.add(otherCell);
+    }
+    List<List<T>> allNeighbors = new ArrayList<>(grid.getNumCells());
+    for (int index = 0; index < grid.getNumCells(); index++) {
+      int row = index / cols;
+      int col = index % cols;
+      if (hasInterior && row >= reach && row < rows - reach && col >= reach
+          && col < cols - reach) {
+        int[] offsets = offsetsByParity[row % 2];
+        List<T> neighbors = new ArrayList<>(offsets.length);
+        for (int offset : offsets) {
+          neighbors.add((T) grid.getCell(index + offset));
+        }
+        allNeighbors.add(neighbors);
+      } else {
+        allNeighbors.add(getNeighbors(grid, (T) grid.getCell(index)));
+      }
+    }
+    return allNeighbors;
+  }
+
+  /**
+   * Retrieves the cells within VERTEX_REACH rows and columns of a cell (wrapping around the edges
+   * of the grid) that pass a test, which must be false for every cell further away
+   *
+   * @param grid       the representation of the cells on the 2D plane
+   * @param cell       the central cell
+   * @param isNeighbor the test each nearby cell must pass, including the central cell itself
+   * @return the cells that pass the test, each at most once, in row-major order
+   */
+  protected List<T> getNearbyCells(Grid grid, Cell cell, Predicate<T> isNeighbor) {
+    int[] rows = getNearbyLines((int) cell.getLocation().getRow(), grid.getNumRows());
+    int[] cols = getNearbyLines((int) cell.getLocation().getCol(), grid.getNumCols());
+    List<T> neighbors = new ArrayList<>();
+    for (int row : rows) {
+      for (int col : cols) {
+        T otherCell = (T) grid.getCell(row * grid.getNumCols() + col);
+        if (isNeighbor.test(otherCell)) {
+          neighbors.add(otherCell);
+        }
       }
     }
     return neighbors;
   }
 
+  /**
+   * The furthest apart, in rows or columns, that two neighbors can be. Cells at least this far
+   * from every edge of the grid get their neighbors from offsets in getAllNeighbors.
+   *
+   * @return the maximum row or column distance between neighbors
+   */
+  protected int getReach() {
+    return VERTEX_REACH;
+  }
+
+  /**
+   * @return the offsets of the row-major indices of the neighbors of a cell from its own index
+   */
+  private int[] getNeighborOffsets(Grid grid, int index) {
+    return getNeighbors(grid, (T) grid.getCell(index)).stream()
+        .mapToInt(neighbor -> grid.indexOf(neighbor) - index).toArray();
+  }
+
+  /**
+   * @return the distinct rows (or columns) within VERTEX_REACH of a given one, wrapping around, in
+   * ascending order
+   */
+  private static int[] getNearbyLines(int line, int numLines) {
+    if (numLines <= 2 * VERTEX_REACH + 1) {
+      return IntStream.range(0, numLines).toArray();
+    }
+    return IntStream.rangeClosed(line - VERTEX_REACH, line + VERTEX_REACH)
+        .map(nearby -> Math.floorMod(nearby, numLines)).sorted().toArray();
+  }
+
   public List<Point[]> getPairwiseVertices(Cell cell1, Cell cell2) {
     List<Point[]> vtxPairs = new ArrayList<>();
     List<Point> vertices1 = cell1.getVertices();
@@ -0,0 +1,179 @@
+package cellsociety.model.simulation;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes periodic checkpoints of a long-running simulation as snapshot files, on a background
+ * thread, so that a run can be resumed exactly where it left off after a crash or restart.
+ * <p>
+ * The thread stepping the simulation only copies its complete state into a checkpoint every
+ * interval generations, which costs a pass over the grid, and hands the checkpoint to the writer
+ * thread. At most two checkpoints are held at a time: the one being written and the next one. If
+ * the disk cannot keep up, a checkpoint still waiting when a newer one is captured is dropped
+ * rather than stalling the simulation. Each file is written under a temporary name and moved into
+ * place, so a crash while writing never leaves a partial checkpoint behind. Only the most recent
+ * retention checkpoints are kept.
+ * <p>
+ * Checkpoints are named {@code <prefix>_checkpoint_<generation>.snap}, with the generation padded
+ * so that the names sort in order.
+ *
+ * @author Noah Loewy
+ */
+public class CheckpointWriter implements AutoCloseable {
+
+  public static final String CHECKPOINT_INFIX = "_checkpoint_";
+  private static final String GENERATION_FORMAT = "%010d";
+  private static final String TEMPORARY_SUFFIX = ".tmp";
+  private final Path myDirectory;
+  private final String myName;
+  private final SimulationHeader myHeader;
+  private final int myInterval;
+  private final int myRetention;
+  private final Thread myWriter;
+  private final AtomicReference<SimulationCheckpoint> myPending = new AtomicReference<>();
+  private final Deque<Path> myWritten = new ArrayDeque<>();
+  private volatile boolean isClosed;
+  private volatile IOException myFailure;
+  private int myLastGeneration;
+
+  /**
+   * Constructs a CheckpointWriter and starts its writer thread. Checkpoints already written with
+   * the same prefix, such as by the run being resumed, count towards the retention limit.
+   *
+   * @param prefix,     the path that the names of the checkpoint files start with
+   * @param header,     the type, size, neighborhood and record of the simulation
+   * @param interval,   the number of generations between checkpoints
+   * @param retention,  the number of most recent checkpoints to keep
+   * @param generation, the number of generations the simulation has already run
+   * @throws IOException if the existing checkpoints cannot be listed
+   */
+  public CheckpointWriter(Path prefix, SimulationHeader header, int interval, int retention,
+      int generation) throws IOException {
+    if (interval <= 0 || retention <= 0) {
+      throw new IllegalArgumentException("Checkpoint interval and retention must be positive");
+    }
+    Path absolute = prefix.toAbsolutePath();
+    myDirectory = absolute.getParent();
+    myName = absolute.getFileName() + CHECKPOINT_INFIX;
+    myHeader = header;
+    myInterval = interval;
+    myRetention = retention;
+    myLastGeneration = generation;
+    myWritten.addAll(list(prefix));
+    myWriter = new Thread(this::work, "checkpoint-writer");
+    myWriter.setDaemon(true);
+    myWriter.start();
+  }
+
+  /**
+   * Lists the checkpoints written with a prefix, oldest first
+   *
+   * @param prefix, the path that the names of the checkpoint files start with
+   * @return the checkpoint files, in increasing order of generation
+   * @throws IOException if the directory cannot be listed
+   */
+  public static List<Path> list(Path prefix) throws IOException {
+    Path absolute = prefix.toAbsolutePath();
+    String name = absolute.getFileName() + CHECKPOINT_INFIX;
+    List<Path> checkpoints = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(absolute.getParent(),
+        name + "*" + SnapshotFile.FILE_EXTENSION)) {
+      for (Path file : files) {
+        checkpoints.add(file);
+      }
+    }
+    checkpoints.sort(null);
+    return checkpoints;
+  }
+
+  /**
+   * Captures a checkpoint if the simulation has reached or passed the next multiple of the
+   * interval since the last one. Must be called by the thread stepping the simulation, between two
+   * steps.
+   *
+   * @param simulation, the simulation being run
+   * @param generation, the number of generations it has run
+   * @return true if and only if a checkpoint was captured
+   */
+  public boolean update(Simulation<?> simulation, int generation) {
+    if (generation / myInterval == myLastGeneration / myInterval) {
+      return false;
+    }
+    myLastGeneration = generation;
+    myPending.set(SimulationCheckpoint.capture(simulation, generation));
+    LockSupport.unpark(myWriter);
+    return true;
+  }
+
+  /**
+   * Waits for the checkpoint still to be written, if any, and stops the writer thread
+   *
+   * @throws IOException if any checkpoint could not be written
+   */
+  @Override
+  public void close() throws IOException {
+    isClosed = true;
+    LockSupport.unpark(myWriter);
+    try {
+      myWriter.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while writing checkpoints", e);
+    }
+    if (myFailure != null) {
+      throw myFailure;
+    }
+  }
+
+  private void work() {
+    while (true) {
+      SimulationCheckpoint checkpoint = myPending.getAndSet(null);
+      if (checkpoint != null) {
+        write(checkpoint);
+      } else if (isClosed && myPending.get() == null) {
+        return;
+      } else {
+        LockSupport.park(this);
+      }
+    }
+  }
+
+  /**
+   * Writes a checkpoint under a temporary name, moves it into place and deletes the oldest
+   * checkpoints beyond the retention limit. The first failure is kept to be reported by close.
+   */
+  private void write(SimulationCheckpoint checkpoint) {
+    Path file = myDirectory.resolve(myName + String.format(GENERATION_FORMAT,
+        checkpoint.generation()) + SnapshotFile.FILE_EXTENSION);
+    Path temporary = file.resolveSibling(file.getFileName() + TEMPORARY_SUFFIX);
+    try {
+      SnapshotFile.write(temporary, myHeader, checkpoint);
+      try {
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+      myWritten.remove(file);
+      myWritten.addLast(file);
+      while (myWritten.size() > myRetention) {
+        Files.deleteIfExists(myWritten.removeFirst());
+      }
+    } catch (IOException e) {
+      if (myFailure == null) {
+        myFailure = e;
+      }
+    }
+  }
+}
@@ -0,0 +1,143 @@
+package cellsociety.model.simulation;
+
+import cellsociety.model.core.grid.NeighborTable;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Runs many independent copies (replicates) of one simulation at once. All replicates share the
+ * same grid topology, given as a NeighborTable, but each has its own states and its own random
+ * number generator. States are kept in one byte array per generation, grouped by cell: the states
+ * of cell i in replicates 0 to K-1 are stored next to each other. A step visits every cell once,
+ * looks up its neighbors once, and then applies the rule to all K replicates in a tight loop, so
+ * the cost of the topology and of dispatch is shared between replicates instead of paid per cell
+ * object, as it is by Simulation.
+ * <p>
+ * Subclasses implement transitionFunction for the rules of one simulation.
+ *
+ * @author Noah Loewy
+ */
+public abstract class EnsembleSimulation {
+
+  private final NeighborTable myNeighbors;
+  private final int myNumCells;
+  private final int myReplicates;
+  private final Random[] myRandoms;
+  private byte[] myStates;
+  private byte[] myNextStates;
+
+  /**
+   * Constructs an ensemble in which every replicate starts out in the same state
+   *
+   * @param neighbors,     the neighbors of every cell, by row-major index
+   * @param initialStates, the initial state of each cell in row-major order
+   * @param replicates,    the number of replicates
+   * @param firstSeed,     the seed of the random number generator of replicate 0; replicate r is
+   *                       seeded with firstSeed + r
+   */
+  protected EnsembleSimulation(NeighborTable neighbors, int[] initialStates, int replicates,
+      long firstSeed) {
+    myNeighbors = neighbors;
+    myNumCells = initialStates.length;
+    myReplicates = replicates;
+    myStates = new byte[myNumCells * replicates];
+    myNextStates = new byte[myNumCells * replicates];
+    myRandoms = new Random[replicates];
+    for (int r = 0; r < replicates; r++) {
+      myRandoms[r] = new Random(firstSeed + r);
+      setStates(r, initialStates);
+    }
+  }
+
+  /**
+   * Computes the next state of every cell of every replicate
+   *
+   * @param current, the current states, grouped by cell
+   * @param next,    the array to write the next states to, grouped by cell
+   */
+  protected abstract void transitionFunction(byte[] current, byte[] next);
+
+  /**
+   * Runs several generations of every replicate
+   *
+   * @param generations, the number of generations to run
+   */
+  public void advance(int generations) {
+    for (int generation = 0; generation < generations; generation++) {
+      transitionFunction(myStates, myNextStates);
+      byte[] swap = myStates;
+      myStates = myNextStates;
+      myNextStates = swap;
+    }
+  }
+
+  /**
+   * Replaces the states of one replicate
+   *
+   * @param replicate, the replicate to change
+   * @param states,    the new state of each cell in row-major order
+   */
+  public void setStates(int replicate, int[] states) {
+    for (int i = 0; i < myNumCells; i++) {
+      myStates[i * myReplicates + replicate] = (byte) states[i];
+    }
+  }
+
+  /**
+   * Copies the states of one replicate
+   *
+   * @param replicate, the replicate to copy
+   * @return the current state of each cell of the replicate in row-major order
+   */
+  public int[] getStates(int replicate) {
+    int[] states = new int[myNumCells];
+    for (int i = 0; i < myNumCells; i++) {
+      states[i] = myStates[i * myReplicates + replicate];
+    }
+    return states;
+  }
+
+  /**
+   * Counts the cells in each state of one replicate
+   *
+   * @param replicate, the replicate to count
+   * @return map of each state present in the replicate to the number of cells in that state
+   */
+  public Map<Integer, Integer> countStates(int replicate) {
+    Map<Integer, Integer> counts = new TreeMap<>();
+    for (int i = 0; i < myNumCells; i++) {
+      counts.merge((int) myStates[i * myReplicates + replicate], 1, Integer::sum);
+    }
+    return counts;
+  }
+
+  /**
+   * @return the number of replicates
+   */
+  public int getReplicates() {
+    return myReplicates;
+  }
+
+  /**
+   * @return the number of cells in each replicate
+   */
+  public int getNumCells() {
+    return myNumCells;
+  }
+
+  /**
+   * @return the neighbors of every cell, shared by all replicates
+   */
+  protected NeighborTable getNeighbors() {
+    return myNeighbors;
+  }
+
+  /**
+   * @param replicate, a replicate
+   * @return the random number generator of the replicate
+   */
+  protected Random getRandom(int replicate) {
+    return myRandoms[replicate];
+  }
+}
@@ -7,6 +7,8 @@ import cellsociety.model.neighborhood.Neighborhood;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
 
 /**
  * This cellular automata simulation represents the Predator-Prey simulation developed by Alexander
@@ -22,6 +24,21 @@ public class FallingSandSimulation extends Simulation<FallingSandCell> {
   public static final int WATER = 2;
   public static final int METAL = 3;
   public static final int[] UPDATE_ORDER = {METAL, SAND, WATER, EMPTY};
+  public static final String STEP_EXTRA = "step";
+  /**
+   * State of the block engine (enabled by the "margolus" parameter on square grids). The grid is
+   * mirrored in a byte array and partitioned into disjoint 2x2 blocks, whose origin alternates
+   * between even and odd rows and columns every step. Each block is updated on its own, so block
+   * rows can be processed in parallel with no ordering between them.
+   */
+  private final int myNumRows;
+  private final int myNumCols;
+  private final boolean isSquare;
+  private boolean isWarped;
+  private boolean useBlocks;
+  private byte[] myStates;
+  private boolean isLoaded;
+  private int myStep;
 
   /**
    * Initializes a FallingSandSimulation object
@@ -36,7 +53,12 @@ public class FallingSandSimulation extends Simulation<FallingSandCell> {
 
   public FallingSandSimulation(int row, int col, Neighborhood hoodType, List<Integer> stateList,
       SimulationRecord r) {
-    super(hoodType, r.gridType());
+    super(hoodType, r);
+    myNumRows = row;
+    myNumCols = col;
+    isSquare = r.cellShape().equals("square");
+    isWarped = r.gridType().equals("Warped");
+    useBlocks = r.params().getOrDefault("margolus", 0.0) >= 1;
     createCellsAndGrid(row, col, stateList, getCellShape(r.cellShape()), hoodType);
   }
 
@@ -54,18 +76,83 @@ public class FallingSandSimulation extends Simulation<FallingSandCell> {
       Shape shape) {
     List<FallingSandCell> cellList = new ArrayList<>();
     for (int i = 0; i < stateList.size(); i++) {
-      cellList.add(new FallingSandCell(stateList.get(i), i / col, i % col, shape));
+      cellList.add(new FallingSandCell(stateList.get(i), i / col, i % col, shape, getRandom()));
     }
     return cellList;
   }
 
 
+  /**
+   * Allocates the byte mirror of the grid used by the block engine, whenever the grid is created
+   */
+  @Override
+  protected void initializeStructures() {
+    myStates = new byte[getNumCells()];
+    isLoaded = false;
+  }
+
+  /**
+   * Updates the method for calculating neighbors on edges. Under the block engine, warped edges
+   * wrap blocks horizontally, just as water can flow across a warped edge in the cell rules.
+   *
+   * @param newEdgeType, a string representing the new edge type.
+   */
+  @Override
+  public void setEdgeType(String newEdgeType) {
+    super.setEdgeType(newEdgeType);
+    isWarped = newEdgeType.equals("Warped");
+  }
+
+  /**
+   * Copies the state of the random number generator and the number of block steps taken, which
+   * decides where the next blocks start
+   *
+   * @return each value, by name
+   */
+  @Override
+  public Map<String, Long> getScalarExtras() {
+    Map<String, Long> extras = super.getScalarExtras();
+    extras.put(STEP_EXTRA, (long) myStep);
+    return extras;
+  }
+
+  /**
+   * Restores the values returned by getScalarExtras. Values that are missing are left as they are.
+   *
+   * @param extras, each value, by name
+   */
+  @Override
+  public void setScalarExtras(Map<String, Long> extras) {
+    super.setScalarExtras(extras);
+    Long step = extras.get(STEP_EXTRA);
+    if (step != null) {
+      myStep = step.intValue();
+    }
+  }
+
+  /**
+   * Switches between the cell rules and the block engine
+   *
+   * @param newParameters, the updated parameter values
+   */
+  @Override
+  public void setParams(Map<String, Double> newParameters) {
+    super.setParams(newParameters);
+    useBlocks = newParameters.getOrDefault("margolus", 0.0) >= 1;
+  }
+
   /**
    * Transition function for Falling Sand. Iterates through each cell, starting with sand then
-   * water, then other, and calls the cell's transition function.
+   * water, then other, and calls the cell's transition function. When the block engine is enabled
+   * on a square grid, a single block step is taken instead.
    */
   @Override
   public void transitionFunction() {
+    if (useBlocks && isSquare) {
+      blockStep();
+      return;
+    }
+    isLoaded = false;
     for (int cellToUpdate : UPDATE_ORDER) {
       List<FallingSandCell> cellsToUpdate = new ArrayList<>();
 
@@ -87,4 +174,155 @@ public class FallingSandSimulation extends Simulation<FallingSandCell> {
     }
   }
 
-}
\ No newline at end of file
+  /**
+   * Updates the current state of every cell. Under the block engine, only cells whose state in the
+   * byte array differs from their current state are written.
+   */
+  @Override
+  public void processUpdate() {
+    if (!isLoaded) {
+      super.processUpdate();
+      return;
+    }
+    IntStream.range(0, myStates.length).parallel().forEach(i -> {
+      FallingSandCell cell = getCell(i);
+      if (cell.getCurrentState() != myStates[i]) {
+        cell.setCurrentState(myStates[i]);
+      }
+    });
+  }
+
+  /**
+   * @return null, since sand and water cells empty themselves while moving, before processUpdate
+   * could see their state change
+   */
+  @Override
+  public int[] getChangedCells() {
+    return null;
+  }
+
+  /**
+   * Takes one step of the block engine. Every block row is independent of the others, so they are
+   * processed in parallel. Randomness comes from hashing a per-step salt (drawn from the
+   * simulation's random number generator) with the block's position, so results do not depend on
+   * how the rows are scheduled.
+   */
+  private void blockStep() {
+    if (!isLoaded) {
+      for (int i = 0; i < myStates.length; i++) {
+        myStates[i] = (byte) getCell(i).getCurrentState();
+      }
+      isLoaded = true;
+    }
+    int offset = myStep & 1;
+    myStep++;
+    long salt = getRandom().nextLong();
+    boolean wrapCols = isWarped && myNumCols % 2 == 0;
+    int numBlockRows = (myNumRows + offset + 1) / 2;
+    int numBlockCols = wrapCols ? myNumCols / 2 : (myNumCols + offset + 1) / 2;
+    IntStream.range(0, numBlockRows).parallel().forEach(blockRow -> {
+      int top = 2 * blockRow - offset;
+      for (int blockCol = 0; blockCol < numBlockCols; blockCol++) {
+        int left = 2 * blockCol - offset;
+        updateBlock(top, left, wrapCols,
+            mix(salt + (long) blockRow * numBlockCols + blockCol));
+      }
+    });
+  }
+
+  /**
+   * Applies the falling sand rules to the 2x2 block whose top left corner is at (top, left).
+   * Cells outside the grid act as metal walls. Sand falls straight down through empty cells and
+   * water, and water falls down, then diagonally down, then spreads sideways into empty cells.
+   * Metal never moves. Every rule swaps two cells, so particles are never created or destroyed.
+   *
+   * @param top      row of the top of the block, possibly -1
+   * @param left     column of the left of the block, possibly -1 or numCols - 1
+   * @param wrapCols whether columns wrap around the left and right edges
+   * @param bits     random bits for this block
+   */
+  private void updateBlock(int top, int left, boolean wrapCols, long bits) {
+    int right = left + 1;
+    if (wrapCols) {
+      left = Math.floorMod(left, myNumCols);
+      right = Math.floorMod(right, myNumCols);
+    }
+    int topLeft = indexInGrid(top, left);
+    int topRight = indexInGrid(top, right);
+    int bottomLeft = indexInGrid(top + 1, left);
+    int bottomRight = indexInGrid(top + 1, right);
+    int a = stateAt(topLeft);
+    int b = stateAt(topRight);
+    int c = stateAt(bottomLeft);
+    int d = stateAt(bottomRight);
+    if (a == EMPTY && b == EMPTY && c == EMPTY && d == EMPTY) {
+      return;
+    }
+    // straight down
+    if (canSink(a, c)) {
+      int temp = a;
+      a = c;
+      c = temp;
+    }
+    if (canSink(b, d)) {
+      int temp = b;
+      b = d;
+      d = temp;
+    }
+    // diagonally down, in a random order when both are possible
+    boolean leftFirst = (bits & 1) == 0;
+    for (int k = 0; k < 2; k++) {
+      if (leftFirst == (k == 0)) {
+        if (a == WATER && d == EMPTY) {
+          a = EMPTY;
+          d = WATER;
+        }
+      } else if (b == WATER && c == EMPTY) {
+        b = EMPTY;
+        c = WATER;
+      }
+    }
+    // sideways, half of the time
+    if ((bits & 2) == 0 && isSpread(c, d)) {
+      int temp = c;
+      c = d;
+      d = temp;
+    }
+    if ((bits & 4) == 0 && isSpread(a, b)) {
+      int temp = a;
+      a = b;
+      b = temp;
+    }
+    writeState(topLeft, a);
+    writeState(topRight, b);
+    writeState(bottomLeft, c);
+    writeState(bottomRight, d);
+  }
+
+  private boolean canSink(int upper, int lower) {
+    return (upper == SAND && (lower == EMPTY || lower == WATER))
+        || (upper == WATER && lower == EMPTY);
+  }
+
+  private boolean isSpread(int first, int second) {
+    return (first == WATER && second == EMPTY) || (first == EMPTY && second == WATER);
+  }
+
+  private int indexInGrid(int row, int col) {
+    if (row < 0 || row >= myNumRows || col < 0 || col >= myNumCols) {
+      return -1;
+    }
+    return row * myNumCols + col;
+  }
+
+  private int stateAt(int index) {
+    return index < 0 ? METAL : myStates[index];
+  }
+
+  private void writeState(int index, int state) {
+    if (index >= 0) {
+      myStates[index] = (byte) state;
+    }
+  }
+
+}
@@ -0,0 +1,78 @@
+package cellsociety.model.simulation;
+
+import cellsociety.model.core.grid.NeighborTable;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Runs many replicates of the spreading of a wildfire at once. Follows the same rules as
+ * FireSimulation, with each replicate drawing its random events from its own generator.
+ *
+ * @author Noah Loewy
+ */
+public class FireEnsemble extends EnsembleSimulation {
+
+  private final double probTreeIgnites;
+  private final double probTreeCreated;
+  private final int neighborsToIgnite;
+  private final int[] myBurningCounts;
+
+  /**
+   * Initializes a FireEnsemble object
+   *
+   * @param neighbors,     the neighbors of every cell, by row-major index
+   * @param initialStates, the initial state of each cell in row-major order
+   * @param replicates,    the number of replicates
+   * @param firstSeed,     the seed of replicate 0; replicate r is seeded with firstSeed + r
+   * @param params,        the parameters of the Fire simulation. Description of parameters can be
+   *                       found in the FireCell class
+   */
+  public FireEnsemble(NeighborTable neighbors, int[] initialStates, int replicates,
+      long firstSeed, Map<String, Double> params) {
+    super(neighbors, initialStates, replicates, firstSeed);
+    neighborsToIgnite = (int) Math.floor(params.get("neighborsToIgnite"));
+    probTreeIgnites = params.get("probTreeIgnites");
+    probTreeCreated = params.get("probTreeCreated");
+    myBurningCounts = new int[replicates];
+  }
+
+  /**
+   * Counts the burning neighbors of every cell in all replicates at once. Burning cells burn out,
+   * trees catch fire from at least neighborsToIgnite burning neighbors or on their own with
+   * probability probTreeIgnites, and trees grow on empty cells with probability probTreeCreated.
+   *
+   * @param current, the current states, grouped by cell
+   * @param next,    the array to write the next states to, grouped by cell
+   */
+  @Override
+  protected void transitionFunction(byte[] current, byte[] next) {
+    NeighborTable neighbors = getNeighbors();
+    int replicates = getReplicates();
+    for (int i = 0; i < getNumCells(); i++) {
+      Arrays.fill(myBurningCounts, 0);
+      for (int k = neighbors.start(i); k < neighbors.end(i); k++) {
+        int neighbor = neighbors.get(k) * replicates;
+        for (int r = 0; r < replicates; r++) {
+          if (current[neighbor + r] == FireSimulation.BURNING) {
+            myBurningCounts[r]++;
+          }
+        }
+      }
+      int cell = i * replicates;
+      for (int r = 0; r < replicates; r++) {
+        next[cell + r] = (byte) switch (current[cell + r]) {
+          case FireSimulation.BURNING -> FireSimulation.EMPTY;
+          case FireSimulation.TREE -> myBurningCounts[r] >= neighborsToIgnite
+              || happens(r, probTreeIgnites) ? FireSimulation.BURNING : FireSimulation.TREE;
+          case FireSimulation.EMPTY ->
+              happens(r, probTreeCreated) ? FireSimulation.TREE : FireSimulation.EMPTY;
+          default -> current[cell + r];
+        };
+      }
+    }
+  }
+
+  private boolean happens(int replicate, double probability) {
+    return probability > 0 && getRandom(replicate).nextDouble() < probability;
+  }
+}
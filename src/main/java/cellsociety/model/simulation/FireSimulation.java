@@ -1,9 +1,12 @@
 package cellsociety.model.simulation;
 
 import cellsociety.model.core.cell.FireCell;
+import cellsociety.model.core.grid.IndexedSet;
+import cellsociety.model.core.grid.NeighborTable;
 import cellsociety.model.core.shape.Shape;
 import cellsociety.model.neighborhood.Neighborhood;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -21,9 +24,20 @@ public class FireSimulation extends Simulation<FireCell> {
   public static final int BURNING = 2;
 
 
-  private final double probTreeIgnites;
-  private final double probTreeCreated;
-  private final int neighborsToIgnite;
+  private double probTreeIgnites;
+  private double probTreeCreated;
+  private int neighborsToIgnite;
+  /**
+   * Frontier state. myBurning holds every burning cell, and myBurningCounts the number of burning
+   * neighbors of every cell, so that the only trees checked for catching fire from their neighbors
+   * are those next to the fire. Cells that change during a step are collected in myChangedCells.
+   */
+  private NeighborTable myDependents;
+  private IndexedSet myBurning;
+  private int[] myBurningCounts;
+  private int[] myChangedCells;
+  private int myChangedCount;
+  private int myUpdatedCount;
 
 
   /**
@@ -38,7 +52,7 @@ public class FireSimulation extends Simulation<FireCell> {
    */
   public FireSimulation(int row, int col, Neighborhood hoodType, List<Integer> stateList,
       SimulationRecord r) {
-    super(hoodType, r.gridType());
+    super(hoodType, r);
     this.neighborsToIgnite = (int) Math.floor(r.params().get("neighborsToIgnite"));
     this.probTreeIgnites = r.params().get("probTreeIgnites");
     this.probTreeCreated = r.params().get("probTreeCreated");
@@ -65,4 +79,153 @@ public class FireSimulation extends Simulation<FireCell> {
     }
     return cellList;
   }
+
+  /**
+   * Builds the set of burning cells and the burning neighbor counts, whenever the grid is created
+   */
+  @Override
+  protected void initializeStructures() {
+    int numCells = getNumCells();
+    myDependents = buildDependentTable();
+    myBurning = new IndexedSet(numCells);
+    myBurningCounts = new int[numCells];
+    myChangedCells = new int[numCells];
+    myChangedCount = 0;
+    myUpdatedCount = 0;
+    for (int i = 0; i < numCells; i++) {
+      if (getCell(i).getCurrentState() == BURNING) {
+        addBurning(i);
+      }
+    }
+  }
+
+  /**
+   * Updates the probabilities and ignition threshold of the simulation
+   *
+   * @param newParameters, the updated parameter values
+   */
+  @Override
+  public void setParams(Map<String, Double> newParameters) {
+    super.setParams(newParameters);
+    neighborsToIgnite = (int) Math.floor(newParameters.get("neighborsToIgnite"));
+    probTreeIgnites = newParameters.get("probTreeIgnites");
+    probTreeCreated = newParameters.get("probTreeCreated");
+  }
+
+  /**
+   * Transition function for Fire. Burning cells burn out, and trees next to at least
+   * neighborsToIgnite burning cells catch fire; both are found from the burning frontier. Trees
+   * catching fire spontaneously and trees growing on empty cells are rare independent events, so
+   * instead of drawing a random number for every cell, the gaps between the cells they happen to
+   * are drawn directly (geometric skip sampling). A step therefore costs time proportional to the
+   * size of the fire plus the number of random events.
+   */
+  @Override
+  public void transitionFunction() {
+    myChangedCount = 0;
+    for (int i = 0; i < myBurning.size(); i++) {
+      changeTo(myBurning.get(i), EMPTY);
+    }
+    if (neighborsToIgnite <= 0) {
+      for (int i = 0; i < getNumCells(); i++) {
+        igniteTree(i);
+      }
+    } else {
+      for (int i = 0; i < myBurning.size(); i++) {
+        int burning = myBurning.get(i);
+        for (int k = myDependents.start(burning); k < myDependents.end(burning); k++) {
+          int dependent = myDependents.get(k);
+          if (myBurningCounts[dependent] >= neighborsToIgnite) {
+            igniteTree(dependent);
+          }
+        }
+      }
+    }
+    for (int i = nextEvent(-1, probTreeIgnites); i < getNumCells();
+        i = nextEvent(i, probTreeIgnites)) {
+      igniteTree(i);
+    }
+    for (int i = nextEvent(-1, probTreeCreated); i < getNumCells();
+        i = nextEvent(i, probTreeCreated)) {
+      FireCell cell = getCell(i);
+      if (cell.getCurrentState() == EMPTY && cell.getNextState() == FireCell.PLACEHOLDER) {
+        changeTo(i, TREE);
+      }
+    }
+  }
+
+  /**
+   * Updates the cells that changed during the step, and keeps the burning set and the burning
+   * neighbor counts up to date. Every other cell keeps its state.
+   */
+  @Override
+  public void processUpdate() {
+    for (int i = 0; i < myChangedCount; i++) {
+      int index = myChangedCells[i];
+      FireCell cell = getCell(index);
+      if (cell.getCurrentState() == BURNING) {
+        removeBurning(index);
+      }
+      cell.updateStates();
+      if (cell.getCurrentState() == BURNING) {
+        addBurning(index);
+      }
+    }
+    myUpdatedCount = myChangedCount;
+    myChangedCount = 0;
+  }
+
+  /**
+   * @return the cells updated by the last step
+   */
+  @Override
+  public int[] getChangedCells() {
+    return Arrays.copyOf(myChangedCells, myUpdatedCount);
+  }
+
+  /**
+   * Finds the next cell at which an event of the given probability happens, by drawing the
+   * number of cells skipped before it from a geometric distribution
+   *
+   * @param index       the row-major index of the previous event, or -1 to start
+   * @param probability the probability of the event at each cell
+   * @return the row-major index of the next event, or a value no less than the number of cells if
+   * there are no more events this step
+   */
+  private int nextEvent(int index, double probability) {
+    if (probability <= 0) {
+      return getNumCells();
+    }
+    if (probability >= 1) {
+      return index + 1;
+    }
+    double skip = Math.floor(Math.log(1 - getRandom().nextDouble()) / Math.log(1 - probability));
+    return (int) Math.min(index + 1 + skip, getNumCells());
+  }
+
+  private void igniteTree(int index) {
+    FireCell cell = getCell(index);
+    if (cell.getCurrentState() == TREE && cell.getNextState() == FireCell.PLACEHOLDER) {
+      changeTo(index, BURNING);
+    }
+  }
+
+  private void changeTo(int index, int state) {
+    getCell(index).setNextState(state);
+    myChangedCells[myChangedCount++] = index;
+  }
+
+  private void addBurning(int index) {
+    myBurning.add(index);
+    for (int k = myDependents.start(index); k < myDependents.end(index); k++) {
+      myBurningCounts[myDependents.get(k)]++;
+    }
+  }
+
+  private void removeBurning(int index) {
+    myBurning.remove(index);
+    for (int k = myDependents.start(index); k < myDependents.end(index); k++) {
+      myBurningCounts[myDependents.get(k)]--;
+    }
+  }
 }
@@ -0,0 +1,71 @@
+package cellsociety.model.simulation;
+
+import cellsociety.model.core.grid.NeighborTable;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Runs many replicates of Conway's Game of Life at once. Follows the same rules as LifeCell.
+ *
+ * @author Noah Loewy
+ */
+public class GameOfLifeEnsemble extends EnsembleSimulation {
+
+  private final int aliveToAliveMin;
+  private final int aliveToAliveMax;
+  private final int deadToAliveMin;
+  private final int deadToAliveMax;
+  private final int[] myAliveCounts;
+
+  /**
+   * Initializes a GameOfLifeEnsemble object
+   *
+   * @param neighbors,     the neighbors of every cell, by row-major index
+   * @param initialStates, the initial state of each cell in row-major order
+   * @param replicates,    the number of replicates
+   * @param firstSeed,     the seed of replicate 0; replicate r is seeded with firstSeed + r
+   * @param params,        the parameters of the Game of Life. Description of parameters can be
+   *                       found in the LifeCell class
+   */
+  public GameOfLifeEnsemble(NeighborTable neighbors, int[] initialStates, int replicates,
+      long firstSeed, Map<String, Double> params) {
+    super(neighbors, initialStates, replicates, firstSeed);
+    aliveToAliveMin = (int) Math.floor(params.get("aliveToAliveMin"));
+    aliveToAliveMax = (int) Math.floor(params.get("aliveToAliveMax"));
+    deadToAliveMin = (int) Math.floor(params.get("deadToAliveMin"));
+    deadToAliveMax = (int) Math.floor(params.get("deadToAliveMax"));
+    myAliveCounts = new int[replicates];
+  }
+
+  /**
+   * Counts the alive neighbors of every cell in all replicates at once, and then decides whether
+   * the cell is alive in the next generation of each replicate
+   *
+   * @param current, the current states, grouped by cell
+   * @param next,    the array to write the next states to, grouped by cell
+   */
+  @Override
+  protected void transitionFunction(byte[] current, byte[] next) {
+    NeighborTable neighbors = getNeighbors();
+    int replicates = getReplicates();
+    for (int i = 0; i < getNumCells(); i++) {
+      Arrays.fill(myAliveCounts, 0);
+      for (int k = neighbors.start(i); k < neighbors.end(i); k++) {
+        int neighbor = neighbors.get(k) * replicates;
+        for (int r = 0; r < replicates; r++) {
+          if (current[neighbor + r] == GameOfLifeSimulation.ALIVE) {
+            myAliveCounts[r]++;
+          }
+        }
+      }
+      int cell = i * replicates;
+      for (int r = 0; r < replicates; r++) {
+        int alive = myAliveCounts[r];
+        boolean survives = current[cell + r] == GameOfLifeSimulation.ALIVE
+            ? alive >= aliveToAliveMin && alive <= aliveToAliveMax
+            : alive >= deadToAliveMin && alive <= deadToAliveMax;
+        next[cell + r] = (byte) (survives ? GameOfLifeSimulation.ALIVE : GameOfLifeSimulation.DEAD);
+      }
+    }
+  }
+}
@@ -36,7 +36,7 @@ public class GameOfLifeSimulation extends Simulation<LifeCell> {
    */
   public GameOfLifeSimulation(int row, int col, Neighborhood hoodType, List<Integer> stateList,
       SimulationRecord r) {
-    super(hoodType, r.gridType());
+    super(hoodType, r);
     r.params().get("probTreeIgnites");
     this.aliveToAliveMin = (int) Math.floor(r.params().get("aliveToAliveMin"));
     this.aliveToAliveMax = (int) Math.floor(r.params().get("aliveToAliveMax"));
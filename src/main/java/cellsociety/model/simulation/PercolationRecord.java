@@ -0,0 +1,14 @@
+package cellsociety.model.simulation;
+
+/**
+ * Result of analyzing a percolation system without animating it
+ *
+ * @param finalStates  the state every cell settles in, in row major order
+ * @param clusterSizes the number of cells in each connected cluster of percolated cells in the
+ *                     final states, largest first
+ * @param spans        whether a single cluster of percolated cells connects the top row of the grid
+ *                     to the bottom row
+ */
+public record PercolationRecord(int[] finalStates, int[] clusterSizes, boolean spans) {
+
+}
@@ -1,9 +1,11 @@
 package cellsociety.model.simulation;
 
 import cellsociety.model.core.cell.PercolationCell;
+import cellsociety.model.core.grid.NeighborTable;
 import cellsociety.model.core.shape.Shape;
 import cellsociety.model.neighborhood.Neighborhood;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -18,7 +20,22 @@ public class PercolationSimulation extends Simulation<PercolationCell> {
 
   public static final int OPEN = 0;
   public static final int PERCOLATED = 1;
-  private final int percolatedNeighbors;
+  public static final int BLOCKED = 2;
+  private final int myNumCols;
+  private int percolatedNeighbors;
+  /**
+   * Frontier state. myCounts holds the number of percolated neighbors of every open cell, and
+   * myFrontier the open cells that percolate on the next step, so that a step only visits cells
+   * that percolate and their neighbors.
+   */
+  private NeighborTable myDependents;
+  private int[] myCounts;
+  private int[] myFrontier;
+  private int myFrontierSize;
+  private int[] myNextFrontier;
+  private int myUpdatedCount;
+  private boolean[] isQueued;
+  private boolean isAnalysis;
 
 
   /**
@@ -33,8 +50,10 @@ public class PercolationSimulation extends Simulation<PercolationCell> {
    */
   public PercolationSimulation(int row, int col, Neighborhood hoodType, List<Integer> stateList,
       SimulationRecord r) {
-    super(hoodType, r.gridType());
+    super(hoodType, r);
     this.percolatedNeighbors = (int) Math.floor(r.params().get("percolatedNeighbors"));
+    this.isAnalysis = r.params().getOrDefault("analysis", 0.0) >= 1;
+    myNumCols = col;
     createCellsAndGrid(row, col, stateList, getCellShape(r.cellShape()), hoodType);
   }
 
@@ -57,4 +76,254 @@ public class PercolationSimulation extends Simulation<PercolationCell> {
     }
     return cellList;
   }
+
+  /**
+   * Builds the table of dependents, counts the percolated neighbors of every open cell, and finds
+   * the cells that percolate on the first step, whenever the grid is created
+   */
+  @Override
+  protected void initializeStructures() {
+    int numCells = getNumCells();
+    myDependents = buildDependentTable();
+    myCounts = new int[numCells];
+    myFrontier = new int[numCells];
+    myNextFrontier = new int[numCells];
+    isQueued = new boolean[numCells];
+    findFrontier();
+  }
+
+  /**
+   * Updates the number of percolated neighbors needed to percolate, and finds the frontier again
+   *
+   * @param newParameters, the updated parameter values
+   */
+  @Override
+  public void setParams(Map<String, Double> newParameters) {
+    super.setParams(newParameters);
+    percolatedNeighbors = (int) Math.floor(newParameters.get("percolatedNeighbors"));
+    isAnalysis = newParameters.getOrDefault("analysis", 0.0) >= 1;
+    findFrontier();
+  }
+
+  private void findFrontier() {
+    Arrays.fill(myCounts, 0);
+    Arrays.fill(isQueued, false);
+    myFrontierSize = 0;
+    for (int i = 0; i < myCounts.length; i++) {
+      if (getCell(i).getCurrentState() == PERCOLATED) {
+        for (int k = myDependents.start(i); k < myDependents.end(i); k++) {
+          myCounts[myDependents.get(k)]++;
+        }
+      }
+    }
+    for (int i = 0; i < myCounts.length; i++) {
+      if (getCell(i).getCurrentState() == OPEN && myCounts[i] >= percolatedNeighbors) {
+        isQueued[i] = true;
+        myFrontier[myFrontierSize++] = i;
+      }
+    }
+  }
+
+  /**
+   * Transition function for Percolation. The open cells on the frontier percolate, and every other
+   * cell keeps its state. In analysis mode, every cell moves straight to its final state instead.
+   */
+  @Override
+  public void transitionFunction() {
+    if (isAnalysis) {
+      int[] finalStates = analyze().finalStates();
+      myFrontierSize = 0;
+      for (int i = 0; i < finalStates.length; i++) {
+        if (finalStates[i] != getCell(i).getCurrentState()) {
+          isQueued[i] = true;
+          myFrontier[myFrontierSize++] = i;
+        }
+      }
+    }
+    for (int i = 0; i < myFrontierSize; i++) {
+      getCell(myFrontier[i]).setNextState(PERCOLATED);
+    }
+  }
+
+  /**
+   * Percolates the cells on the frontier, and adds to the next frontier every open neighbor that
+   * now has enough percolated neighbors.
+   */
+  @Override
+  public void processUpdate() {
+    int nextSize = 0;
+    for (int i = 0; i < myFrontierSize; i++) {
+      int index = myFrontier[i];
+      getCell(index).updateStates();
+      for (int k = myDependents.start(index); k < myDependents.end(index); k++) {
+        int dependent = myDependents.get(k);
+        myCounts[dependent]++;
+        if (!isQueued[dependent] && getCell(dependent).getCurrentState() == OPEN
+            && myCounts[dependent] >= percolatedNeighbors) {
+          isQueued[dependent] = true;
+          myNextFrontier[nextSize++] = dependent;
+        }
+      }
+    }
+    int[] temp = myFrontier;
+    myFrontier = myNextFrontier;
+    myNextFrontier = temp;
+    myUpdatedCount = myFrontierSize;
+    myFrontierSize = nextSize;
+  }
+
+  /**
+   * @return the cells updated by the last step, which were the frontier before it
+   */
+  @Override
+  public int[] getChangedCells() {
+    return Arrays.copyOf(myNextFrontier, myUpdatedCount);
+  }
+
+  /**
+   * Works out the state every cell settles in, without changing the simulation. When a single
+   * percolated neighbor is enough, the open cells that percolate are exactly those connected to a
+   * percolated cell through open cells, which a union-find pass over the grid finds in one sweep.
+   * Otherwise, percolation is propagated to completion from a queue of newly percolated cells.
+   *
+   * @return the final states, the sizes of the percolated clusters, and whether they span the grid
+   */
+  public PercolationRecord analyze() {
+    int numCells = getNumCells();
+    int[] states = new int[numCells];
+    for (int i = 0; i < numCells; i++) {
+      states[i] = getCell(i).getCurrentState();
+    }
+    if (percolatedNeighbors <= 0) {
+      for (int i = 0; i < numCells; i++) {
+        if (states[i] == OPEN) {
+          states[i] = PERCOLATED;
+        }
+      }
+    } else if (percolatedNeighbors == 1) {
+      int[] parent = unionCells(states, OPEN, PERCOLATED);
+      boolean[] isFull = new boolean[numCells];
+      for (int i = 0; i < numCells; i++) {
+        if (states[i] == PERCOLATED) {
+          isFull[find(parent, i)] = true;
+        }
+      }
+      for (int i = 0; i < numCells; i++) {
+        if (states[i] == OPEN && isFull[find(parent, i)]) {
+          states[i] = PERCOLATED;
+        }
+      }
+    } else {
+      propagate(states);
+    }
+    return summarize(states);
+  }
+
+  /**
+   * Propagates percolation to completion, percolating each open cell once it has enough
+   * percolated neighbors
+   *
+   * @param states the states of all cells, updated in place
+   */
+  private void propagate(int[] states) {
+    int[] counts = new int[states.length];
+    int[] queue = new int[states.length];
+    int head = 0;
+    int tail = 0;
+    for (int i = 0; i < states.length; i++) {
+      if (states[i] == PERCOLATED) {
+        queue[tail++] = i;
+      }
+    }
+    while (head < tail) {
+      int index = queue[head++];
+      for (int k = myDependents.start(index); k < myDependents.end(index); k++) {
+        int dependent = myDependents.get(k);
+        counts[dependent]++;
+        if (states[dependent] == OPEN && counts[dependent] >= percolatedNeighbors) {
+          states[dependent] = PERCOLATED;
+          queue[tail++] = dependent;
+        }
+      }
+    }
+  }
+
+  /**
+   * Measures the clusters of percolated cells, and whether one of them touches both the top and
+   * the bottom row
+   *
+   * @param states final states of all cells
+   * @return the analysis of the final states
+   */
+  private PercolationRecord summarize(int[] states) {
+    int numCells = states.length;
+    int[] parent = unionCells(states, PERCOLATED, PERCOLATED);
+    int[] sizes = new int[numCells];
+    boolean[] touchesTop = new boolean[numCells];
+    boolean spans = false;
+    for (int i = 0; i < numCells; i++) {
+      if (states[i] == PERCOLATED) {
+        int root = find(parent, i);
+        sizes[root]++;
+        if (i < myNumCols) {
+          touchesTop[root] = true;
+        }
+      }
+    }
+    for (int i = Math.max(0, numCells - myNumCols); i < numCells; i++) {
+      if (states[i] == PERCOLATED && touchesTop[find(parent, i)]) {
+        spans = true;
+      }
+    }
+    int[] clusterSizes = Arrays.stream(sizes).filter(size -> size > 0).boxed()
+        .sorted((a, b) -> b - a).mapToInt(Integer::intValue).toArray();
+    return new PercolationRecord(states, clusterSizes, spans);
+  }
+
+  /**
+   * Joins every cell in one of two states with its neighbors in either state. Neighborhoods are
+   * assumed to be symmetric, as all of the neighborhoods in this project are.
+   *
+   * @param states  the states of all cells
+   * @param first   a state whose cells are joined
+   * @param second  another state whose cells are joined
+   * @return the union-find parent of every cell, whose roots identify the clusters
+   */
+  private int[] unionCells(int[] states, int first, int second) {
+    int[] parent = new int[states.length];
+    int[] rank = new int[states.length];
+    for (int i = 0; i < parent.length; i++) {
+      parent[i] = i;
+    }
+    for (int i = 0; i < states.length; i++) {
+      if (states[i] == first || states[i] == second) {
+        for (int k = myDependents.start(i); k < myDependents.end(i); k++) {
+          int j = myDependents.get(k);
+          if (states[j] == first || states[j] == second) {
+            int rootI = find(parent, i);
+            int rootJ = find(parent, j);
+            if (rootI != rootJ) {
+              if (rank[rootI] < rank[rootJ]) {
+                parent[rootI] = rootJ;
+              } else {
+                parent[rootJ] = rootI;
+                if (rank[rootI] == rank[rootJ]) {
+                  rank[rootI]++;
+                }
+              }
+            }
+          }
+        }
+      }
+    }
+    return parent;
+  }
+
+  private int find(int[] parent, int index) {
+    while (parent[index] != index) {
+      parent[index] = parent[parent[index]];
+      index = parent[index];
+    }
+    return index;
+  }
 }
@@ -0,0 +1,77 @@
+package cellsociety.model.simulation;
+
+import java.util.Random;
+
+/**
+ * A random number generator that produces exactly the same numbers as java.util.Random for the
+ * same seed, but whose internal state can be read and restored, so that a simulation saved in a
+ * checkpoint carries on with the same random numbers it would have drawn had it never stopped.
+ * <p>
+ * Only the linear congruential generator behind next is reimplemented; every other method of
+ * Random draws through it. The Gaussian value Random caches between calls to nextGaussian is not
+ * part of the state, which does not matter since no simulation uses nextGaussian.
+ *
+ * @author Noah Loewy
+ */
+public class RestorableRandom extends Random {
+
+  private static final long serialVersionUID = 1L;
+  private static final long MULTIPLIER = 0x5DEECE66DL;
+  private static final long ADDEND = 0xBL;
+  private static final long MASK = (1L << 48) - 1;
+  private static final int STATE_BITS = 48;
+
+  /**
+   * Set by setSeed, which the constructor of Random calls, so it must not have an initializer
+   */
+  private long myState;
+
+  /**
+   * Constructs a RestorableRandom with a seed that is very likely different from any other
+   */
+  public RestorableRandom() {
+    super();
+  }
+
+  /**
+   * Constructs a RestorableRandom that produces the same numbers as new Random(seed)
+   *
+   * @param seed, the initial seed
+   */
+  public RestorableRandom(long seed) {
+    super(seed);
+  }
+
+  /**
+   * Reseeds the generator exactly as Random.setSeed does
+   *
+   * @param seed, the new seed
+   */
+  @Override
+  public synchronized void setSeed(long seed) {
+    super.setSeed(seed);
+    myState = (seed ^ MULTIPLIER) & MASK;
+  }
+
+  /**
+   * @return the internal state of the generator, which decides every number it will produce
+   */
+  public synchronized long getState() {
+    return myState;
+  }
+
+  /**
+   * Restores an internal state returned by getState
+   *
+   * @param state, the internal state to restore
+   */
+  public synchronized void setState(long state) {
+    myState = state & MASK;
+  }
+
+  @Override
+  protected synchronized int next(int bits) {
+    myState = (myState * MULTIPLIER + ADDEND) & MASK;
+    return (int) (myState >>> (STATE_BITS - bits));
+  }
+}
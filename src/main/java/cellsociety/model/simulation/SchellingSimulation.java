@@ -1,12 +1,14 @@
 package cellsociety.model.simulation;
 
 import cellsociety.model.core.cell.SchellingCell;
+import cellsociety.model.core.grid.IndexedSet;
+import cellsociety.model.core.grid.NeighborTable;
 import cellsociety.model.core.shape.Shape;
 import cellsociety.model.neighborhood.Neighborhood;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -24,11 +26,34 @@ public class SchellingSimulation extends Simulation<SchellingCell> {
   public static final int TEMP_TO_MOVE = 3;
   public static final int TEMP_EMPTY_A = 4;
   public static final int TEMP_EMPTY_B = 5;
-  private final List<SchellingCell> myCellsToMoveA;
-  private final List<SchellingCell> myCellsToMoveB;
-  private final List<SchellingCell> myEmptyCellsA;
-  private final List<SchellingCell> myEmptyCellsB;
-  private final double proportionNeededToStay;
+  public static final String TO_MOVE_A_EXTRA = "toMoveA";
+  public static final String TO_MOVE_B_EXTRA = "toMoveB";
+  public static final String EMPTY_A_EXTRA = "emptyA";
+  public static final String EMPTY_B_EXTRA = "emptyB";
+  private double proportionNeededToStay;
+  /**
+   * Incremental state of the model. For every cell, myCountA and myCountB hold how many of its
+   * neighbors belong to each group. myDependents lists, for every cell, the cells that have it as a
+   * neighbor, so that a move only updates the
+   * counts around the two cells involved. Unsatisfied agents and vacancies that would satisfy an
+   * agent are kept in indexed sets, so each step only visits cells whose neighborhood changed.
+   */
+  private int[] myStates;
+  private int[] myCountA;
+  private int[] myCountB;
+  private NeighborTable myDependents;
+  private IndexedSet myCellsToMoveA;
+  private IndexedSet myCellsToMoveB;
+  private IndexedSet myEmptyCellsA;
+  private IndexedSet myEmptyCellsB;
+  private int[] myEmptyBuffer;
+  private int[] myToMoveBuffer;
+  private int[] myChangedCells;
+  private int myChangedCount;
+  private int myUpdatedCount;
+  private int[] myDirtyCells;
+  private int myDirtyCount;
+  private boolean[] isDirty;
 
   /**
    * Initializes a SchellingSimulation object
@@ -42,12 +67,8 @@ public class SchellingSimulation extends Simulation<SchellingCell> {
    */
   public SchellingSimulation(int row, int col, Neighborhood hoodType, List<Integer> stateList,
       SimulationRecord r) {
-    super(hoodType, r.gridType());
-    myCellsToMoveA = new ArrayList<>();
-    myCellsToMoveB = new ArrayList<>();
-    myEmptyCellsA = new ArrayList<>();
-    myEmptyCellsB = new ArrayList<>();
-    proportionNeededToStay = (int) Math.floor(r.params().get("proportionNeededToStay"));
+    super(hoodType, r);
+    proportionNeededToStay = r.params().get("proportionNeededToStay");
     createCellsAndGrid(row, col, stateList, getCellShape(r.cellShape()), hoodType);
   }
 
@@ -72,62 +93,238 @@ public class SchellingSimulation extends Simulation<SchellingCell> {
     return cellList;
   }
 
+  /**
+   * Builds the neighbor counts, the table of dependent cells, and the sets of movers and vacancies
+   * with a single scan of the grid, whenever the grid is created
+   */
+  @Override
+  protected void initializeStructures() {
+    int numCells = getNumCells();
+    myStates = new int[numCells];
+    myCountA = new int[numCells];
+    myCountB = new int[numCells];
+    for (int i = 0; i < numCells; i++) {
+      myStates[i] = getCell(i).getCurrentState();
+    }
+    myDependents = buildDependentTable();
+    for (int i = 0; i < numCells; i++) {
+      for (int k = myDependents.start(i); k < myDependents.end(i); k++) {
+        adjustCount(myDependents.get(k), myStates[i], 1);
+      }
+    }
+    myCellsToMoveA = new IndexedSet(numCells);
+    myCellsToMoveB = new IndexedSet(numCells);
+    myEmptyCellsA = new IndexedSet(numCells);
+    myEmptyCellsB = new IndexedSet(numCells);
+    myEmptyBuffer = new int[numCells];
+    myToMoveBuffer = new int[numCells];
+    myChangedCells = new int[numCells];
+    myChangedCount = 0;
+    myUpdatedCount = 0;
+    myDirtyCells = new int[numCells];
+    myDirtyCount = 0;
+    isDirty = new boolean[numCells];
+    for (int i = 0; i < numCells; i++) {
+      classify(i);
+    }
+  }
+
+  /**
+   * Copies the order of the sets of movers and vacancies, which decides which of them the random
+   * draws of the next step pick
+   *
+   * @return the position of every cell in each set, or -1 if it is not a member, by name
+   */
+  @Override
+  public Map<String, int[]> getCellExtras() {
+    Map<String, int[]> extras = new LinkedHashMap<>();
+    extras.put(TO_MOVE_A_EXTRA, myCellsToMoveA.getPositions());
+    extras.put(TO_MOVE_B_EXTRA, myCellsToMoveB.getPositions());
+    extras.put(EMPTY_A_EXTRA, myEmptyCellsA.getPositions());
+    extras.put(EMPTY_B_EXTRA, myEmptyCellsB.getPositions());
+    return extras;
+  }
+
+  /**
+   * Restores the order of the sets of movers and vacancies. The sets keep the order they were
+   * built in if any of them is missing.
+   *
+   * @param extras, the position of every cell in each set, or -1 if it is not a member, by name
+   */
+  @Override
+  public void setCellExtras(Map<String, int[]> extras) {
+    int[] toMoveA = extras.get(TO_MOVE_A_EXTRA);
+    int[] toMoveB = extras.get(TO_MOVE_B_EXTRA);
+    int[] emptyA = extras.get(EMPTY_A_EXTRA);
+    int[] emptyB = extras.get(EMPTY_B_EXTRA);
+    if (toMoveA == null || toMoveB == null || emptyA == null || emptyB == null) {
+      return;
+    }
+    myCellsToMoveA.setPositions(toMoveA);
+    myCellsToMoveB.setPositions(toMoveB);
+    myEmptyCellsA.setPositions(emptyA);
+    myEmptyCellsB.setPositions(emptyB);
+  }
+
+  /**
+   * Updates the proportion of like neighbors each agent needs, and re-evaluates every cell
+   *
+   * @param newParameters, the updated parameter values
+   */
+  @Override
+  public void setParams(Map<String, Double> newParameters) {
+    super.setParams(newParameters);
+    proportionNeededToStay = newParameters.get("proportionNeededToStay");
+    for (int i = 0; i < myStates.length; i++) {
+      classify(i);
+    }
+  }
+
   /**
    * Updates next state of cells so that in a random order, cells that are not satisfied can move to
-   * empty cells that will satisfy them.
+   * empty cells that will satisfy them. Only as many vacancies and movers as can be matched are
+   * drawn, by shuffling just that prefix of each set in place (a partial Fisher-Yates shuffle)
+   * with the simulation's random number generator.
    *
-   * @param emptyList,  a list of empty cells which would satisfy the agents in toMoveList.
-   * @param toMoveList, a list of cells that would be satisfied if they move to a cell in empty
-   *                    list
+   * @param emptySet,  a set of empty cells which would satisfy the agents in toMoveSet.
+   * @param toMoveSet, a set of cells that would be satisfied if they move to a cell in empty set
    */
-  private void moveCells(List<SchellingCell> emptyList, List<SchellingCell> toMoveList) {
-    Collections.shuffle(emptyList);
-    Collections.shuffle(toMoveList);
-    int shorterListLength = Math.min(toMoveList.size(), emptyList.size());
-    List<SchellingCell> remainingList =
-        (toMoveList.size() < emptyList.size()) ? emptyList : toMoveList;
-    for (int i = 0; i < shorterListLength; i++) {
-      emptyList.get(i).setNextState(toMoveList.get(i).getCurrentState());
-      toMoveList.get(i).setNextState(EMPTY);
+  private void moveCells(IndexedSet emptySet, IndexedSet toMoveSet) {
+    int numMatches = Math.min(toMoveSet.size(), emptySet.size());
+    if (numMatches == 0) {
+      return;
     }
-    for (int i = shorterListLength; i < remainingList.size(); i++) {
-      remainingList.get(i).setNextState(remainingList.get(i).getCurrentState());
+    drawPrefix(emptySet, myEmptyBuffer, numMatches);
+    drawPrefix(toMoveSet, myToMoveBuffer, numMatches);
+    for (int i = 0; i < numMatches; i++) {
+      int empty = myEmptyBuffer[i];
+      int toMove = myToMoveBuffer[i];
+      getCell(empty).setNextState(myStates[toMove]);
+      getCell(toMove).setNextState(EMPTY);
+      myChangedCells[myChangedCount++] = empty;
+      myChangedCells[myChangedCount++] = toMove;
     }
   }
 
   /**
-   * Transition function for Segregation Model. Iterates through each cell and calls the transition
-   * function, which will update the cell's next state to highlight if it would like to move to a
-   * vacant location. Then it calls private helper function moveCells which actually update the next
-   * states to their true values.
+   * Shuffles the first count positions of a set in place, so that they hold a uniformly random
+   * selection of count members in random order, and copies them into a buffer. Only the members
+   * drawn are touched, so the cost does not depend on the size of the set.
+   *
+   * @param set    the set to draw from
+   * @param buffer a buffer at least count long
+   * @param count  the number of members to draw
+   */
+  private void drawPrefix(IndexedSet set, int[] buffer, int count) {
+    int size = set.size();
+    for (int i = 0; i < count; i++) {
+      set.swap(i, i + getRandom().nextInt(size - i));
+      buffer[i] = set.get(i);
+    }
+  }
+
+  /**
+   * Transition function for Segregation Model. Unsatisfied agents of each group are matched, in a
+   * random order, with vacancies that would satisfy them. Which agents are unsatisfied and which
+   * vacancies are suitable is already known from the sets maintained by processUpdate, so no cell
+   * needs to be re-evaluated here.
    */
   @Override
   public void transitionFunction() {
-    Iterator<SchellingCell> gridIterator = getIterator();
-    myCellsToMoveA.clear();
-    myCellsToMoveB.clear();
-    myEmptyCellsA.clear();
-    myEmptyCellsB.clear();
-    while (gridIterator.hasNext()) {
-      SchellingCell currentCell = gridIterator.next();
-      currentCell.transition();
-      if (currentCell.getNextState() == TEMP_EMPTY_A) {
-        currentCell.setCurrentState(EMPTY);
-        myEmptyCellsA.add(currentCell);
-      } else if (currentCell.getNextState() == TEMP_EMPTY_B) {
-        myEmptyCellsB.add(currentCell);
-        currentCell.setCurrentState(EMPTY);
-      } else if (currentCell.getNextState() == TEMP_TO_MOVE
-          && currentCell.getCurrentState() == GROUP_A) {
-        myCellsToMoveA.add(currentCell);
-        currentCell.setCurrentState(GROUP_A);
-      } else if (currentCell.getNextState() != currentCell.getCurrentState()) {
-        myCellsToMoveB.add(currentCell);
-        currentCell.setNextState(TEMP_TO_MOVE);
+    myChangedCount = 0;
+    moveCells(myEmptyCellsA, myCellsToMoveA);
+    moveCells(myEmptyCellsB, myCellsToMoveB);
+  }
 
+  /**
+   * Updates the cells that moved, adjusts the neighbor counts of every cell around them, and
+   * re-evaluates only those cells.
+   */
+  @Override
+  public void processUpdate() {
+    for (int i = 0; i < myChangedCount; i++) {
+      int index = myChangedCells[i];
+      SchellingCell cell = getCell(index);
+      int oldState = myStates[index];
+      cell.updateStates();
+      int newState = cell.getCurrentState();
+      myStates[index] = newState;
+      markDirty(index);
+      for (int k = myDependents.start(index); k < myDependents.end(index); k++) {
+        int dependent = myDependents.get(k);
+        adjustCount(dependent, oldState, -1);
+        adjustCount(dependent, newState, 1);
+        markDirty(dependent);
       }
     }
-    moveCells(myEmptyCellsA, myCellsToMoveA);
-    moveCells(myEmptyCellsB, myCellsToMoveB);
+    myUpdatedCount = myChangedCount;
+    myChangedCount = 0;
+    for (int i = 0; i < myDirtyCount; i++) {
+      isDirty[myDirtyCells[i]] = false;
+      classify(myDirtyCells[i]);
+    }
+    myDirtyCount = 0;
+  }
+
+  /**
+   * @return the cells updated by the last step
+   */
+  @Override
+  public int[] getChangedCells() {
+    return Arrays.copyOf(myChangedCells, myUpdatedCount);
+  }
+
+  private void adjustCount(int index, int state, int delta) {
+    if (state == GROUP_A) {
+      myCountA[index] += delta;
+    } else if (state == GROUP_B) {
+      myCountB[index] += delta;
+    }
+  }
+
+  private void markDirty(int index) {
+    if (!isDirty[index]) {
+      isDirty[index] = true;
+      myDirtyCells[myDirtyCount++] = index;
+    }
+  }
+
+  /**
+   * Places a cell in the set it belongs to: unsatisfied agents are movers of their group, and
+   * vacancies are offered to group A if they would satisfy an agent of group A, or otherwise to
+   * group B if they would satisfy an agent of group B.
+   *
+   * @param index row-major index of the cell
+   */
+  private void classify(int index) {
+    myCellsToMoveA.remove(index);
+    myCellsToMoveB.remove(index);
+    myEmptyCellsA.remove(index);
+    myEmptyCellsB.remove(index);
+    int state = myStates[index];
+    if (state == EMPTY) {
+      if (isSatisfied(index, GROUP_A)) {
+        myEmptyCellsA.add(index);
+      } else if (isSatisfied(index, GROUP_B)) {
+        myEmptyCellsB.add(index);
+      }
+    } else if (!isSatisfied(index, state)) {
+      (state == GROUP_A ? myCellsToMoveA : myCellsToMoveB).add(index);
+    }
+  }
+
+  /**
+   * Indicates whether an agent of the given group would be satisfied at a cell. Agents are
+   * satisfied if and only if they are surrounded entirely by empty cells, or if the proportion of
+   * non-empty neighbors that are in the same group as them is no less than proportionNeededToStay.
+   *
+   * @param index row-major index of the cell
+   * @param group the group of the agent
+   * @return true if and only if an agent of the group would be satisfied at the cell
+   */
+  private boolean isSatisfied(int index, int group) {
+    int occupied = myCountA[index] + myCountB[index];
+    int same = group == GROUP_A ? myCountA[index] : myCountB[index];
+    return occupied == 0 || (double) same / occupied >= proportionNeededToStay;
   }
 }
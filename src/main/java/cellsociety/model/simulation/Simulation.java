@@ -3,15 +3,22 @@ package cellsociety.model.simulation;
 import cellsociety.exception.InvalidValueException;
 import cellsociety.model.core.cell.Cell;
 import cellsociety.model.core.grid.Grid;
+import cellsociety.model.core.grid.NeighborTable;
 import cellsociety.model.core.grid.WarpedGrid;
 import cellsociety.model.core.shape.HexagonShape;
 import cellsociety.model.core.shape.RectangleShape;
 import cellsociety.model.core.shape.Shape;
 import cellsociety.model.neighborhood.Neighborhood;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
 
 /**
  * Abstract Class that runs the simulation of a cellular automata. Subclasses will implement
@@ -22,11 +29,17 @@ import java.util.Map;
 
 public abstract class Simulation<T extends Cell> {
 
+  public static final String RANDOM_EXTRA = "random";
+  private final RestorableRandom myRandom = new RestorableRandom();
   private Neighborhood myNeighborhood;
   private Grid myGrid;
   private String myGridType;
   private int myRow;
   private int myCol;
+  private boolean isTrackingChanges;
+  private int[] myUpdatedCells;
+  private int myUpdatedCount = -1;
+  private Map<String, Double> myParams = Map.of();
 
   public Simulation() {
   }
@@ -43,6 +56,21 @@ public abstract class Simulation<T extends Cell> {
     myGridType = gridType;
   }
 
+  /**
+   * Constructs a basic Simulation object, seeding its random number generator first if the record
+   * has a seed, so that the random numbers drawn while creating the cells are reproducible too
+   *
+   * @param hoodType, the definition of neighbors
+   * @param record,   the parameters, edge type, cell shape and seed of the simulation
+   */
+  public Simulation(Neighborhood hoodType, SimulationRecord record) {
+    this(hoodType, record.gridType());
+    myParams = Collections.unmodifiableMap(new LinkedHashMap<>(record.params()));
+    if (record.seed() != null) {
+      myRandom.setSeed(record.seed());
+    }
+  }
+
   /**
    * Updates the method for calculating neighbors on edges
    *
@@ -57,6 +85,7 @@ public abstract class Simulation<T extends Cell> {
     }
     myGridType = newEdgeType;
     initializeMyGrid(myRow, myCol, lst);
+    initializeStructures();
   }
 
   /**
@@ -74,33 +103,65 @@ public abstract class Simulation<T extends Cell> {
       case "Warped" -> new WarpedGrid(row, col, cellList);
       default -> throw new InvalidValueException("Edge Type Does Not Exist");
     };
-    Iterator<Cell> iterator = myGrid.iterator();
-    while (iterator.hasNext()) {
-      Cell cell = iterator.next();
-      cell.setNeighborhood(myNeighborhood.getNeighbors(myGrid, cell));
+    List<List<T>> neighbors = myNeighborhood.getAllNeighbors(myGrid);
+    for (int i = 0; i < neighbors.size(); i++) {
+      getCell(i).setNeighborhood(neighbors.get(i));
     }
   }
 
 
   /**
    * Iterates through all available cells and updates the current state based on the results of the
-   * transition function
+   * transition function. When tracking changes, also collects the cells whose state changed.
    */
   public void processUpdate() {
     Iterator<T> iterator = myGrid.iterator();
-    while (iterator.hasNext()) {
+    if (!isTrackingChanges) {
+      while (iterator.hasNext()) {
+        T cell = iterator.next();
+        cell.updateStates();
+      }
+      return;
+    }
+    if (myUpdatedCells == null || myUpdatedCells.length != getNumCells()) {
+      myUpdatedCells = new int[getNumCells()];
+    }
+    myUpdatedCount = 0;
+    for (int i = 0; iterator.hasNext(); i++) {
       T cell = iterator.next();
+      int state = cell.getCurrentState();
       cell.updateStates();
+      if (cell.getCurrentState() != state) {
+        myUpdatedCells[myUpdatedCount++] = i;
+      }
     }
   }
 
+  /**
+   * Turns on or off collecting the cells changed by each step in processUpdate, which
+   * getChangedCells returns. Simulations that update only the cells they change already know
+   * them, and ignore this.
+   *
+   * @param isTracking, whether to collect the changed cells
+   */
+  public void setTrackingChanges(boolean isTracking) {
+    isTrackingChanges = isTracking;
+    myUpdatedCount = -1;
+  }
+
   public void createCellsAndGrid(int row, int col, List<Integer> stateList,
       Shape shape, Neighborhood hoodType) {
     List<T> cellList = cellMaker(col, stateList, shape);
     initializeMyGrid(row, col, cellList);
-    for (T cell : cellList) {
-      cell.initializeNeighbors(hoodType, myGrid);
-    }
+    myUpdatedCount = -1;
+    initializeStructures();
+  }
+
+  /**
+   * Hook for simulations that keep their own index structures over the grid (such as lists of
+   * occupied cells). Called whenever the cells of the grid or their neighborhoods are rebuilt.
+   */
+  protected void initializeStructures() {
   }
 
   public abstract List<T> cellMaker(int col, List<Integer> stateList, Shape cellShape);
@@ -114,6 +175,124 @@ public abstract class Simulation<T extends Cell> {
     };
   }
 
+  /**
+   * Runs several generations back to back, without publishing any intermediate state
+   *
+   * @param generations, the number of generations to run
+   */
+  public void advance(int generations) {
+    advance(generations, 0, null);
+  }
+
+  /**
+   * Runs several generations back to back, optionally sampling the number of cells in each state
+   * along the way. Sampling costs a pass over the grid, so it should be done sparingly on large
+   * grids.
+   *
+   * @param generations,    the number of generations to run
+   * @param sampleInterval, the number of generations between samples, or 0 for no samples
+   * @param sampler,        receives the number of generations run so far and the count of cells
+   *                        in each state, after every sampleInterval generations
+   */
+  public void advance(int generations, int sampleInterval,
+      BiConsumer<Integer, Map<Integer, Integer>> sampler) {
+    for (int generation = 1; generation <= generations; generation++) {
+      transitionFunction();
+      processUpdate();
+      if (sampler != null && sampleInterval > 0 && generation % sampleInterval == 0) {
+        sampler.accept(generation, countStates());
+      }
+    }
+  }
+
+  /**
+   * Counts the cells in each state
+   *
+   * @return map of each state present in the grid to the number of cells in that state
+   */
+  public Map<Integer, Integer> countStates() {
+    Map<Integer, Integer> counts = new TreeMap<>();
+    Iterator<T> iterator = getIterator();
+    while (iterator.hasNext()) {
+      counts.merge(iterator.next().getCurrentState(), 1, Integer::sum);
+    }
+    return counts;
+  }
+
+  /**
+   * Copies the current state of every cell
+   *
+   * @return the current state of each cell in row-major order
+   */
+  public int[] getStates() {
+    int[] states = new int[getNumCells()];
+    Iterator<T> iterator = getIterator();
+    for (int i = 0; iterator.hasNext(); i++) {
+      states[i] = iterator.next().getCurrentState();
+    }
+    return states;
+  }
+
+  /**
+   * Lists the cells whose state may have changed in the last step, so that recording a step in a
+   * SimulationHistory does not need another pass over the whole grid. Simulations that already
+   * keep track of the cells they change override this; the others know them only when tracking
+   * changes.
+   *
+   * @return the row-major index of every cell that may have changed in the last step, possibly
+   * more than once, or null if any cell may have changed
+   */
+  public int[] getChangedCells() {
+    return myUpdatedCount < 0 ? null : Arrays.copyOf(myUpdatedCells, myUpdatedCount);
+  }
+
+  /**
+   * Copies the values, beyond the state of each cell, that the simulation needs to carry on exactly
+   * where it left off, such as the age and energy of WaTor creatures. Simulations whose cells hold
+   * nothing but their state have none.
+   *
+   * @return one array per kind of value, by name, each holding one value per cell in row-major
+   * order
+   */
+  public Map<String, int[]> getCellExtras() {
+    return Map.of();
+  }
+
+  /**
+   * Restores the values returned by getCellExtras. Must be called right after the simulation has
+   * been created from the states that were current when the values were copied.
+   *
+   * @param extras, one array per kind of value, by name, each holding one value per cell in
+   *                row-major order
+   */
+  public void setCellExtras(Map<String, int[]> extras) {
+  }
+
+  /**
+   * Copies the single values, beyond the cells, that the simulation needs to carry on exactly where
+   * it left off. Every simulation has the state of its random number generator; subclasses add
+   * their own, such as a step counter.
+   *
+   * @return each value, by name
+   */
+  public Map<String, Long> getScalarExtras() {
+    Map<String, Long> extras = new LinkedHashMap<>();
+    extras.put(RANDOM_EXTRA, myRandom.getState());
+    return extras;
+  }
+
+  /**
+   * Restores the values returned by getScalarExtras. Values that are missing are left as they are.
+   *
+   * @param extras, each value, by name
+   */
+  public void setScalarExtras(Map<String, Long> extras) {
+    Long random = extras.get(RANDOM_EXTRA);
+    if (random != null) {
+      myRandom.setState(random);
+    }
+  }
+
   /**
    * Transition function for Percolation. All cells remain in their state, unless the cell is open,
    * in which the cell is passed into the helper function handleOpenCell for transitioning
@@ -138,6 +317,145 @@ public abstract class Simulation<T extends Cell> {
     return myGrid.iterator();
   }
 
+  /**
+   * Retrieves the number of cells in the simulation
+   *
+   * @return the total number of cells in the grid
+   */
+  public int getNumCells() {
+    return myGrid.getNumCells();
+  }
+
+  /**
+   * Retrieves the number of rows in the simulation
+   *
+   * @return the number of rows in the grid
+   */
+  public int getNumRows() {
+    return myRow;
+  }
+
+  /**
+   * Retrieves the number of columns in the simulation
+   *
+   * @return the number of columns in the grid
+   */
+  public int getNumCols() {
+    return myCol;
+  }
+
+  /**
+   * Retrieves a cell by its position in row-major order
+   *
+   * @param index the row-major index of the cell
+   * @return the cell at the given index
+   */
+  public T getCell(int index) {
+    return (T) myGrid.getCell(index);
+  }
+
+  /**
+   * Determines the row-major index of a cell in the simulation's grid
+   *
+   * @param cell a cell in the simulation
+   * @return the row-major index of the cell
+   */
+  public int indexOf(Cell cell) {
+    return myGrid.indexOf(cell);
+  }
+
+  /**
+   * Builds a table listing the neighbors of every cell, which fully describes the topology of the
+   * grid (shape, neighborhood and edge type) independently of the cells themselves
+   *
+   * @return the table of neighbors of every cell, by row-major index
+   */
+  public NeighborTable buildNeighborTable() {
+    int numCells = getNumCells();
+    int[] start = new int[numCells + 1];
+    for (int i = 0; i < numCells; i++) {
+      start[i + 1] = start[i] + getCell(i).getNeighbors().size();
+    }
+    int[] cells = new int[start[numCells]];
+    for (int i = 0; i < numCells; i++) {
+      int position = start[i];
+      for (Object neighbor : getCell(i).getNeighbors()) {
+        cells[position++] = indexOf((Cell) neighbor);
+      }
+    }
+    return new NeighborTable(start, cells);
+  }
+
+  /**
+   * Builds a table listing, for every cell, the cells that have it as a neighbor. These are the
+   * cells whose transition may change when the cell changes state.
+   *
+   * @return the table of dependents of every cell, by row-major index
+   */
+  protected NeighborTable buildDependentTable() {
+    int numCells = getNumCells();
+    int[] start = new int[numCells + 1];
+    for (int i = 0; i < numCells; i++) {
+      for (Object neighbor : getCell(i).getNeighbors()) {
+        start[indexOf((Cell) neighbor) + 1]++;
+      }
+    }
+    for (int i = 0; i < numCells; i++) {
+      start[i + 1] += start[i];
+    }
+    int[] cells = new int[start[numCells]];
+    int[] filled = new int[numCells];
+    for (int i = 0; i < numCells; i++) {
+      for (Object neighbor : getCell(i).getNeighbors()) {
+        int j = indexOf((Cell) neighbor);
+        cells[start[j] + filled[j]++] = i;
+      }
+    }
+    return new NeighborTable(start, cells);
+  }
+
+  /**
+   * Retrieves the random number generator shared by all cells of the simulation
+   *
+   * @return the simulation's random number generator
+   */
+  protected Random getRandom() {
+    return myRandom;
+  }
+
+  /**
+   * Scrambles the bits of a value (the SplitMix64 finalizer). Hashing a salt drawn from the
+   * simulation's random number generator with the position of a cell gives random bits for every
+   * cell that do not depend on the order in which cells are processed.
+   *
+   * @param value value to scramble
+   * @return scrambled value
+   */
+  protected static long mix(long value) {
+    long z = value * 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  /**
+   * Reseeds the random number generator shared by all cells of the simulation, so that runs can be
+   * reproduced
+   *
+   * @param seed the new seed of the random number generator
+   */
+  public void setSeed(long seed) {
+    myRandom.setSeed(seed);
+  }
+
+
+  /**
+   * @return the parameter values the simulation currently runs with, those it was created with
+   * until setParams is called
+   */
+  public Map<String, Double> getParams() {
+    return myParams;
+  }
 
   /**
    * Calls the update parameters method for each individual cell in the simulation
@@ -145,6 +463,7 @@ public abstract class Simulation<T extends Cell> {
    * @param newParameters, the updated parameter values
    */
   public void setParams(Map<String, Double> newParameters) {
+    myParams = Collections.unmodifiableMap(new LinkedHashMap<>(newParameters));
     Iterator<T> iterator = myGrid.iterator();
     while (iterator.hasNext()) {
       T cell = iterator.next();
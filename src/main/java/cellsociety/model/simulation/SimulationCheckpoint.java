@@ -0,0 +1,49 @@
+package cellsociety.model.simulation;
+
+import java.util.Map;
+
+/**
+ * Everything a simulation needs to carry on exactly where it left off at one generation: the
+ * state of every cell, the extra values kept for each cell, single values such as the state of
+ * its random number generator, and the parameters it was running with. Checkpoints are handed
+ * from the thread running a simulation to the thread writing them out, so none of the arrays may
+ * be modified once the checkpoint is captured.
+ *
+ * @param generation,   the number of generations run when the checkpoint was captured
+ * @param states,       the current state of each cell in row-major order
+ * @param cellExtras,   the extra values of each cell in row-major order, by name
+ * @param scalarExtras, the single values of the simulation, by name
+ * @param params,       the parameter values of the simulation, or an empty map to keep those it
+ *                      is created with
+ * @author Noah Loewy
+ */
+public record SimulationCheckpoint(int generation, int[] states, Map<String, int[]> cellExtras,
+                                   Map<String, Long> scalarExtras, Map<String, Double> params) {
+
+  /**
+   * Copies the complete state of a simulation. Must be called between two steps.
+   *
+   * @param simulation, the simulation to copy
+   * @param generation, the number of generations it has run
+   * @return the new checkpoint
+   */
+  public static SimulationCheckpoint capture(Simulation<?> simulation, int generation) {
+    return new SimulationCheckpoint(generation, simulation.getStates(),
+        simulation.getCellExtras(), simulation.getScalarExtras(), simulation.getParams());
+  }
+
+  /**
+   * Returns a simulation created from the same states to the moment the checkpoint was captured.
+   * The parameters are applied first, since cells are created with the parameters the simulation
+   * was constructed with, which may have been changed since.
+   *
+   * @param simulation, a simulation just created from the states of the checkpoint
+   */
+  public void restore(Simulation<?> simulation) {
+    if (!params.isEmpty()) {
+      simulation.setParams(params);
+    }
+    simulation.setCellExtras(cellExtras);
+    simulation.setScalarExtras(scalarExtras);
+  }
+}
@@ -0,0 +1,111 @@
+package cellsociety.model.simulation;
+
+import cellsociety.model.core.grid.NeighborTable;
+import cellsociety.model.neighborhood.ExtendedMooreNeighborhood;
+import cellsociety.model.neighborhood.MooreNeighborhood;
+import cellsociety.model.neighborhood.Neighborhood;
+import cellsociety.model.neighborhood.VonNeumannNeighborhood;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds simulation models from the values read out of a configuration file. Kept apart from the
+ * view so that simulations can also be created and run without a display.
+ *
+ * @author Noah Loewy
+ */
+public class SimulationFactory {
+
+  public static final String FIRE = "Fire";
+  public static final String GAME_OF_LIFE = "GameOfLife";
+  public static final String PERCOLATION = "Percolation";
+  public static final String SCHELLING = "Schelling";
+  public static final String WATOR = "Wator";
+  public static final String SUGAR = "Sugar";
+  public static final String FALLING = "Falling";
+
+  private SimulationFactory() {
+  }
+
+  /**
+   * Creates a simulation of the given type
+   *
+   * @param simulationType,   the type of simulation, as named in configuration files
+   * @param numRows,          the number of rows in the 2-dimensional grid
+   * @param numCols,          the number of columns in the 2-dimensional grid
+   * @param neighborhoodType, the name of the neighborhood type
+   * @param stateList,        the initial state of each cell in row-major order
+   * @param record,           the parameters, edge type and cell shape of the simulation
+   * @return the new simulation
+   * @throws IllegalStateException if the simulation or neighborhood type is unknown
+   */
+  public static Simulation<?> create(String simulationType, int numRows, int numCols,
+      String neighborhoodType, List<Integer> stateList, SimulationRecord record)
+      throws IllegalStateException {
+    Neighborhood hood = getNeighborhood(neighborhoodType);
+    return switch (simulationType) {
+      case GAME_OF_LIFE -> new GameOfLifeSimulation(numRows, numCols, hood, stateList, record);
+      case PERCOLATION -> new PercolationSimulation(numRows, numCols, hood, stateList, record);
+      case FIRE -> new FireSimulation(numRows, numCols, hood, stateList, record);
+      case SCHELLING -> new SchellingSimulation(numRows, numCols, hood, stateList, record);
+      case WATOR -> new WatorSimulation(numRows, numCols, hood, stateList, record);
+      case SUGAR -> new SugarSimulation(numRows, numCols, hood, stateList, record);
+      case FALLING -> new FallingSandSimulation(numRows, numCols, hood, stateList, record);
+      default -> throw new IllegalStateException("Unexpected value: " + simulationType);
+    };
+  }
+
+  /**
+   * Creates a simulation from a header
+   *
+   * @param header,    the type, size, neighborhood and record of the simulation
+   * @param stateList, the initial state of each cell in row-major order
+   * @return the new simulation
+   * @throws IllegalStateException if the simulation or neighborhood type is unknown
+   */
+  public static Simulation<?> create(SimulationHeader header, List<Integer> stateList)
+      throws IllegalStateException {
+    return create(header.type(), header.rows(), header.cols(), header.neighborhoodType(),
+        stateList, header.record());
+  }
+
+  /**
+   * Creates an ensemble of replicates of the given type of simulation
+   *
+   * @param simulationType, the type of simulation, as named in configuration files
+   * @param neighbors,      the neighbors of every cell, as built by Simulation.buildNeighborTable
+   * @param initialStates,  the initial state of each cell in row-major order
+   * @param replicates,     the number of replicates
+   * @param firstSeed,      the seed of replicate 0; replicate r is seeded with firstSeed + r
+   * @param params,         the parameters of the simulation
+   * @return the new ensemble
+   * @throws IllegalStateException if the simulation type cannot be run as an ensemble
+   */
+  public static EnsembleSimulation createEnsemble(String simulationType, NeighborTable neighbors,
+      int[] initialStates, int replicates, long firstSeed, Map<String, Double> params)
+      throws IllegalStateException {
+    return switch (simulationType) {
+      case GAME_OF_LIFE ->
+          new GameOfLifeEnsemble(neighbors, initialStates, replicates, firstSeed, params);
+      case FIRE -> new FireEnsemble(neighbors, initialStates, replicates, firstSeed, params);
+      default -> throw new IllegalStateException("No ensemble for " + simulationType);
+    };
+  }
+
+  /**
+   * Gets the neighborhood object based on the neighborhood type string
+   *
+   * @param neighborhoodType, the name of the neighborhood type
+   * @return the neighborhood object
+   * @throws IllegalStateException if the neighborhood type is unknown
+   */
+  public static Neighborhood getNeighborhood(String neighborhoodType)
+      throws IllegalStateException {
+    return switch (neighborhoodType) {
+      case "Moore" -> new MooreNeighborhood();
+      case "ExtendedMoore" -> new ExtendedMooreNeighborhood();
+      case "VonNeumann" -> new VonNeumannNeighborhood();
+      default -> throw new IllegalStateException("Unexpected value: " + neighborhoodType);
+    };
+  }
+}
@@ -0,0 +1,17 @@
+package cellsociety.model.simulation;
+
+/**
+ * Everything needed to create a simulation apart from the states of its cells: its type, the size
+ * of its grid, its neighborhood, and its parameters, edge type and cell shape
+ *
+ * @param type,             the type of simulation, as named in configuration files
+ * @param rows,             the number of rows in the 2-dimensional grid
+ * @param cols,             the number of columns in the 2-dimensional grid
+ * @param neighborhoodType, the name of the neighborhood type
+ * @param record,           the parameters, edge type and cell shape of the simulation
+ * @author Noah Loewy
+ */
+public record SimulationHeader(String type, int rows, int cols, String neighborhoodType,
+                               SimulationRecord record) {
+
+}
@@ -0,0 +1,377 @@
+package cellsociety.model.simulation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the recent generations of a simulation in memory, so that it can be stepped back or
+ * scrubbed through without reloading it from its configuration file.
+ * <p>
+ * Copying the whole grid every generation would quickly use up the memory budget, so most frames
+ * only hold the cells that changed since the previous frame, as the index of each changed cell and
+ * its old state XOR its new state. States are small, so both usually fit in a single int, with the
+ * XOR in the low 8 bits; frames with a wider XOR keep them as pairs of ints instead. Since XOR
+ * undoes itself, the same changes take the states of one frame to the next or back, so a
+ * generation can be rebuilt by replaying forward from a keyframe or, after the last keyframe,
+ * backward from the latest frame, whichever is closer. Every keyframe interval frames, a full
+ * checkpoint of the simulation is kept instead, including its extra values and the state of its
+ * random number generator, so that the simulation can be rewound to carry on exactly as it did
+ * the first time.
+ * <p>
+ * When the frames use more than the memory budget, the oldest keyframe and the frames that depend
+ * on it are dropped together. The most recent keyframe and its frames are always kept.
+ *
+ * @author Noah Loewy
+ */
+public class SimulationHistory {
+
+  private static final int FRAME_OVERHEAD_BYTES = 48;
+  private static final int SCALAR_BYTES = 64;
+  private static final int INITIAL_CHANGES = 1024;
+  private static final int PACKED_BITS = 8;
+  private static final int PACKED_MASK = (1 << PACKED_BITS) - 1;
+  private static final int MAX_PACKED_CELLS = 1 << (Integer.SIZE - PACKED_BITS);
+  private final long myMemoryBudget;
+  private final int myKeyframeInterval;
+  private final List<Frame> myFrames = new ArrayList<>();
+  private int[] myLatest;
+  private int[] myChanges = new int[INITIAL_CHANGES];
+  private int myLength;
+  private boolean isPacking;
+  private long myMemoryUsage;
+  private int myFramesSinceKeyframe;
+
+  /**
+   * One recorded generation. Exactly one of keyframe and changes is null.
+   *
+   * @param generation, the generation the frame holds
+   * @param keyframe,   the complete state of the simulation, for a keyframe
+   * @param changes,    the index of each changed cell and its old state XOR its new state, for
+   *                    any other frame
+   * @param isPacked,   whether each change is a single int rather than a pair
+   */
+  private record Frame(int generation, SimulationCheckpoint keyframe, int[] changes,
+                       boolean isPacked) {
+
+  }
+
+  /**
+   * Constructs an empty SimulationHistory
+   *
+   * @param memoryBudget,     the number of bytes the frames may use, beyond the most recent
+   *                          keyframe and its frames
+   * @param keyframeInterval, the number of frames from one keyframe to the next
+   */
+  public SimulationHistory(long memoryBudget, int keyframeInterval) {
+    if (memoryBudget <= 0 || keyframeInterval <= 0) {
+      throw new IllegalArgumentException("History budget and keyframe interval must be positive");
+    }
+    myMemoryBudget = memoryBudget;
+    myKeyframeInterval = keyframeInterval;
+  }
+
+  /**
+   * Records the current generation of a simulation, as a keyframe if keyframe interval frames
+   * have passed since the last one, and otherwise as the changes since the previous frame. Must be
+   * called between two steps, with the simulation unchanged since the previous frame except for
+   * the steps run in between. When the simulation ran a single step since the previous frame and
+   * keeps track of the cells it changed, only those cells are compared.
+   *
+   * @param simulation, the simulation to record
+   * @param generation, the number of generations it has run, after that of the previous frame
+   */
+  public void record(Simulation<?> simulation, int generation) {
+    if (myFrames.isEmpty() || myFramesSinceKeyframe >= myKeyframeInterval
+        || myLatest.length != simulation.getNumCells()) {
+      recordKeyframe(simulation, generation);
+      return;
+    }
+    checkGeneration(generation);
+    int[] changed = generation == getLatestGeneration() + 1 ? simulation.getChangedCells() : null;
+    myLength = 0;
+    isPacking = myLatest.length <= MAX_PACKED_CELLS;
+    if (changed == null) {
+      for (int index = 0; index < simulation.getNumCells(); index++) {
+        addChange(index, simulation.getCell(index).getCurrentState());
+      }
+    } else {
+      for (int index : changed) {
+        addChange(index, simulation.getCell(index).getCurrentState());
+      }
+    }
+    add(new Frame(generation, null, Arrays.copyOf(myChanges, myLength), isPacking));
+    myFramesSinceKeyframe++;
+  }
+
+  /**
+   * Records the current generation of a simulation as a keyframe. Must be called instead of
+   * record whenever the simulation changed other than by stepping, such as when its parameters
+   * are changed, so that rewinding to a later generation never replays steps from before the
+   * change. Replaces the latest frame if it holds the same generation.
+   *
+   * @param simulation, the simulation to record
+   * @param generation, the number of generations it has run, not before that of the latest frame
+   */
+  public void recordKeyframe(Simulation<?> simulation, int generation) {
+    if (!myFrames.isEmpty() && generation == getLatestGeneration()) {
+      truncateAfter(generation - 1);
+    }
+    checkGeneration(generation);
+    SimulationCheckpoint keyframe = SimulationCheckpoint.capture(simulation, generation);
+    myLatest = keyframe.states().clone();
+    add(new Frame(generation, keyframe, null, false));
+    myFramesSinceKeyframe = 1;
+  }
+
+  /**
+   * @return true if and only if no generation is recorded
+   */
+  public boolean isEmpty() {
+    return myFrames.isEmpty();
+  }
+
+  /**
+   * @return the oldest generation still recorded
+   * @throws IllegalStateException if no generation is recorded
+   */
+  public int getOldestGeneration() throws IllegalStateException {
+    checkNotEmpty();
+    return myFrames.get(0).generation();
+  }
+
+  /**
+   * @return the latest generation recorded
+   * @throws IllegalStateException if no generation is recorded
+   */
+  public int getLatestGeneration() throws IllegalStateException {
+    checkNotEmpty();
+    return myFrames.get(myFrames.size() - 1).generation();
+  }
+
+  /**
+   * Finds the latest generation recorded at or before a generation. Generations can be missing
+   * when the simulation was advanced several generations at once.
+   *
+   * @param generation, a generation of the simulation
+   * @return the latest generation recorded at or before it, or -1 if it is older than every
+   * generation recorded
+   */
+  public int findGeneration(int generation) {
+    int frame = findFrame(generation);
+    return frame < 0 ? -1 : myFrames.get(frame).generation();
+  }
+
+  /**
+   * Rebuilds the state of every cell at a recorded generation, for display
+   *
+   * @param generation, a recorded generation
+   * @return the state of each cell in row-major order, in a new array
+   * @throws IllegalArgumentException if the generation is not recorded
+   */
+  public int[] getStates(int generation) throws IllegalArgumentException {
+    int frame = findRecordedFrame(generation);
+    int last = myFrames.size() - 1;
+    int keyframe = findKeyframe(frame);
+    int[] states;
+    if (keyframe < findKeyframe(last) || frame - keyframe <= last - frame) {
+      states = myFrames.get(keyframe).keyframe().states().clone();
+      for (int i = keyframe + 1; i <= frame; i++) {
+        applyChanges(myFrames.get(i), states);
+      }
+    } else {
+      states = myLatest.clone();
+      for (int i = last; i > frame; i--) {
+        applyChanges(myFrames.get(i), states);
+      }
+    }
+    return states;
+  }
+
+  /**
+   * Finds the keyframe to rewind from to reach a recorded generation
+   *
+   * @param generation, a recorded generation
+   * @return the latest keyframe at or before the generation. Its arrays must not be modified.
+   * @throws IllegalArgumentException if the generation is not recorded
+   */
+  public SimulationCheckpoint getKeyframe(int generation) throws IllegalArgumentException {
+    return myFrames.get(findKeyframe(findRecordedFrame(generation))).keyframe();
+  }
+
+  /**
+   * Forgets every generation after a generation, such as when the simulation is rewound to it
+   * and will take a different course
+   *
+   * @param generation, the last generation to keep
+   */
+  public void truncateAfter(int generation) {
+    int frame = findFrame(generation);
+    if (frame == myFrames.size() - 1) {
+      return;
+    }
+    if (frame >= 0) {
+      myLatest = getStates(myFrames.get(frame).generation());
+    }
+    List<Frame> dropped = myFrames.subList(frame + 1, myFrames.size());
+    for (Frame removed : dropped) {
+      myMemoryUsage -= getMemoryUsage(removed);
+    }
+    dropped.clear();
+    myFramesSinceKeyframe = myFrames.isEmpty() ? 0 : myFrames.size() - findKeyframe(frame);
+  }
+
+  /**
+   * Forgets every recorded generation
+   */
+  public void clear() {
+    myFrames.clear();
+    myMemoryUsage = 0;
+    myFramesSinceKeyframe = 0;
+  }
+
+  /**
+   * @return the approximate number of bytes used by the recorded frames
+   */
+  public long getMemoryUsage() {
+    return myMemoryUsage;
+  }
+
+  /**
+   * Adds a cell to the changes of the frame being recorded if its state differs from the previous
+   * frame
+   */
+  private void addChange(int index, int state) {
+    int change = state ^ myLatest[index];
+    if (change == 0) {
+      return;
+    }
+    myLatest[index] = state;
+    if (isPacking && (change & ~PACKED_MASK) == 0) {
+      if (myLength == myChanges.length) {
+        myChanges = Arrays.copyOf(myChanges, 2 * myLength);
+      }
+      myChanges[myLength++] = index << PACKED_BITS | change;
+      return;
+    }
+    if (isPacking) {
+      unpackChanges();
+    }
+    if (myLength + 2 > myChanges.length) {
+      myChanges = Arrays.copyOf(myChanges, 2 * myChanges.length);
+    }
+    myChanges[myLength] = index;
+    myChanges[myLength + 1] = change;
+    myLength += 2;
+  }
+
+  /**
+   * Turns the changes recorded so far for the current frame into pairs, once a change is too wide
+   * to pack. Works backwards, so that no change is overwritten before it is moved.
+   */
+  private void unpackChanges() {
+    if (2 * myLength > myChanges.length) {
+      myChanges = Arrays.copyOf(myChanges, 2 * myLength);
+    }
+    for (int i = myLength - 1; i >= 0; i--) {
+      int packed = myChanges[i];
+      myChanges[2 * i] = packed >>> PACKED_BITS;
+      myChanges[2 * i + 1] = packed & PACKED_MASK;
+    }
+    myLength *= 2;
+    isPacking = false;
+  }
+
+  /**
+   * Adds a frame, then drops the oldest keyframe and its frames while over the memory budget
+   */
+  private void add(Frame frame) {
+    myFrames.add(frame);
+    myMemoryUsage += getMemoryUsage(frame);
+    while (myMemoryUsage > myMemoryBudget) {
+      int next = 1;
+      while (next < myFrames.size() && myFrames.get(next).keyframe() == null) {
+        next++;
+      }
+      if (next == myFrames.size()) {
+        return;
+      }
+      List<Frame> dropped = myFrames.subList(0, next);
+      for (Frame removed : dropped) {
+        myMemoryUsage -= getMemoryUsage(removed);
+      }
+      dropped.clear();
+    }
+  }
+
+  private static long getMemoryUsage(Frame frame) {
+    if (frame.keyframe() == null) {
+      return FRAME_OVERHEAD_BYTES + (long) frame.changes().length * Integer.BYTES;
+    }
+    SimulationCheckpoint keyframe = frame.keyframe();
+    long bytes = FRAME_OVERHEAD_BYTES + (long) keyframe.states().length * Integer.BYTES;
+    for (int[] values : keyframe.cellExtras().values()) {
+      bytes += FRAME_OVERHEAD_BYTES + (long) values.length * Integer.BYTES;
+    }
+    return bytes + (long) (keyframe.scalarExtras().size() + keyframe.params().size())
+        * SCALAR_BYTES;
+  }
+
+  private static void applyChanges(Frame frame, int[] states) {
+    int[] changes = frame.changes();
+    if (frame.isPacked()) {
+      for (int packed : changes) {
+        states[packed >>> PACKED_BITS] ^= packed & PACKED_MASK;
+      }
+    } else {
+      for (int i = 0; i < changes.length; i += 2) {
+        states[changes[i]] ^= changes[i + 1];
+      }
+    }
+  }
+
+  /**
+   * @return the position of the latest frame at or before the generation, or -1 if there is none
+   */
+  private int findFrame(int generation) {
+    int low = 0;
+    int high = myFrames.size() - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      if (myFrames.get(middle).generation() <= generation) {
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return high;
+  }
+
+  private int findRecordedFrame(int generation) {
+    int frame = findFrame(generation);
+    if (frame < 0 || myFrames.get(frame).generation() != generation) {
+      throw new IllegalArgumentException("Generation " + generation + " is not recorded");
+    }
+    return frame;
+  }
+
+  private int findKeyframe(int frame) {
+    while (myFrames.get(frame).keyframe() == null) {
+      frame--;
+    }
+    return frame;
+  }
+
+  private void checkGeneration(int generation) {
+    if (!myFrames.isEmpty() && generation <= getLatestGeneration()) {
+      throw new IllegalArgumentException("Generation " + generation + " is not after "
+          + getLatestGeneration());
+    }
+  }
+
+  private void checkNotEmpty() {
+    if (myFrames.isEmpty()) {
+      throw new IllegalStateException("No generation is recorded");
+    }
+  }
+}
@@ -3,6 +3,17 @@ package cellsociety.model.simulation;
 
 import java.util.Map;
 
-public record SimulationRecord(Map<String, Double> params, String gridType, String cellShape) {
+public record SimulationRecord(Map<String, Double> params, String gridType, String cellShape,
+                               Long seed) {
 
+  /**
+   * Creates a record for a simulation whose random number generator is not seeded
+   *
+   * @param params,    the parameters of the simulation
+   * @param gridType,  the edge type of the grid
+   * @param cellShape, the shape of the cells
+   */
+  public SimulationRecord(Map<String, Double> params, String gridType, String cellShape) {
+    this(params, gridType, cellShape, null);
+  }
 }
@@ -0,0 +1,398 @@
+package cellsociety.model.simulation;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Steps a simulation on a dedicated worker thread, so that the rate of the simulation does not
+ * depend on how fast it can be displayed. The worker never hands out the simulation itself.
+ * Instead, whenever the display asks for a frame, the worker copies the current states into an
+ * immutable snapshot after its next step. Generations run between two requests are never copied,
+ * so a display that cannot keep up simply drops them.
+ * <p>
+ * Only the worker touches the simulation. Any other thread that needs to read or change it
+ * (parameters, reset, jumps) queues a command through update, reset, advance, getStates, show or
+ * rewind. The worker runs queued commands in order, before its next step, and each method returns
+ * a future that completes once its command has run, so the calling thread never waits on a step.
+ * Pausing, resuming and reading the generation take effect or answer immediately. Nothing thrown
+ * on the worker stops it: a command that fails completes its future with the error, and a step
+ * that fails pauses the simulation and leaves the error for takeFailure.
+ * <p>
+ * When given a SimulationHistory, the runner records every generation it runs, so that earlier
+ * generations can be shown with show and the simulation can be rewound to them with rewind.
+ *
+ * @author Noah Loewy
+ */
+public class SimulationRunner {
+
+  private static final double NANOS_PER_SECOND = 1e9;
+  private final Simulation<?> mySimulation;
+  private final SimulationHistory myHistory;
+  private final Thread myWorker;
+  private final Queue<Runnable> myCommands = new ConcurrentLinkedQueue<>();
+  private final AtomicReference<SimulationSnapshot> myLatest = new AtomicReference<>();
+  private final AtomicReference<Throwable> myFailure = new AtomicReference<>();
+  private final AtomicBoolean isRequested = new AtomicBoolean(true);
+  private volatile long myStepPeriod;
+  private volatile boolean isRunning;
+  private volatile boolean isStopped;
+  private volatile int myGeneration;
+  private volatile int myOldestGeneration;
+
+  /**
+   * Constructs a paused SimulationRunner that keeps no history. The worker thread does not run
+   * until start is called.
+   *
+   * @param simulation,     the simulation to step. No other thread may use it directly from now on
+   * @param stepsPerSecond, the target number of generations per second, or 0 for as many as
+   *                        possible
+   */
+  public SimulationRunner(Simulation<?> simulation, double stepsPerSecond) {
+    this(simulation, stepsPerSecond, null);
+  }
+
+  /**
+   * Constructs a paused SimulationRunner. The worker thread does not run until start is called.
+   *
+   * @param simulation,     the simulation to step. No other thread may use it directly from now on
+   * @param stepsPerSecond, the target number of generations per second, or 0 for as many as
+   *                        possible
+   * @param history,        the history to record every generation in, or null to keep none. No
+   *                        other thread may use it directly from now on
+   */
+  public SimulationRunner(Simulation<?> simulation, double stepsPerSecond,
+      SimulationHistory history) {
+    mySimulation = simulation;
+    myHistory = history;
+    if (history != null) {
+      simulation.setTrackingChanges(true);
+    }
+    setStepsPerSecond(stepsPerSecond);
+    myWorker = new Thread(this::work, "simulation-runner");
+    myWorker.setDaemon(true);
+    recordKeyframe();
+    publish();
+  }
+
+  /**
+   * Starts the worker thread. The simulation stays paused until resume is called. Commands queued
+   * before now run first.
+   */
+  public void start() {
+    myWorker.start();
+  }
+
+  /**
+   * Stops the worker thread for good, after any step or command in progress. Commands still
+   * queued never run.
+   */
+  public void stop() {
+    isStopped = true;
+    LockSupport.unpark(myWorker);
+  }
+
+  /**
+   * Lets the worker start stepping the simulation, once every command queued before now has run
+   */
+  public void resume() {
+    isRunning = true;
+    LockSupport.unpark(myWorker);
+  }
+
+  /**
+   * Stops the worker from stepping the simulation, after any step in progress
+   */
+  public void pause() {
+    isRunning = false;
+  }
+
+  /**
+   * @return true if and only if the worker is stepping the simulation
+   */
+  public boolean isRunning() {
+    return isRunning;
+  }
+
+  /**
+   * Changes the rate at which the worker steps the simulation, taking effect immediately
+   *
+   * @param stepsPerSecond, the target number of generations per second, or 0 for as many as
+   *                        possible
+   */
+  public void setStepsPerSecond(double stepsPerSecond) {
+    myStepPeriod = stepsPerSecond > 0 ? (long) (NANOS_PER_SECOND / stepsPerSecond) : 0;
+    LockSupport.unpark(myWorker);
+  }
+
+  /**
+   * Takes the most recent snapshot not yet taken, and asks the worker for a new one
+   *
+   * @return the most recent snapshot, or null if the simulation has not changed since the last
+   * one was taken
+   */
+  public SimulationSnapshot takeLatest() {
+    SimulationSnapshot snapshot = myLatest.getAndSet(null);
+    isRequested.set(true);
+    return snapshot;
+  }
+
+  /**
+   * Takes the error the last failed step threw, if any. The worker pauses the simulation when a
+   * step fails, and keeps running commands.
+   *
+   * @return the error a step failed with since the last call, or null if none did
+   */
+  public Throwable takeFailure() {
+    return myFailure.getAndSet(null);
+  }
+
+  /**
+   * Reads the state of every cell between two steps of the worker, such as to save the simulation
+   *
+   * @return completes with the current state of each cell in row-major order
+   */
+  public CompletableFuture<int[]> getStates() {
+    return submit(mySimulation::getStates);
+  }
+
+  /**
+   * Changes the simulation between two steps of the worker, such as to apply new parameters, and
+   * publishes its new state
+   *
+   * @param change, the change to make to the simulation, run on the worker thread
+   * @return completes once the change has been made, or with the exception it threw
+   */
+  public CompletableFuture<Void> update(Runnable change) {
+    return submit(() -> {
+      change.run();
+      recordKeyframe();
+      publish();
+      return null;
+    });
+  }
+
+  /**
+   * Rebuilds the simulation between two steps of the worker, restarting the generation count, and
+   * publishes its new state
+   *
+   * @param rebuild, the change that returns the simulation to its initial state, run on the worker
+   *                 thread
+   * @return completes once the simulation has been rebuilt, or with the exception it threw
+   */
+  public CompletableFuture<Void> reset(Runnable rebuild) {
+    return submit(() -> {
+      rebuild.run();
+      myGeneration = 0;
+      if (myHistory != null) {
+        myHistory.clear();
+      }
+      recordKeyframe();
+      publish();
+      return null;
+    });
+  }
+
+  /**
+   * Runs several generations back to back on the worker, between two of its steps, and publishes
+   * the final state. While they run, the worker keeps publishing snapshots whenever the display
+   * asks for one, so the display can follow a long jump. See Simulation.advance.
+   *
+   * @param generations,    the number of generations to run
+   * @param sampleInterval, the number of generations between samples, or 0 for no samples
+   * @param sampler,        receives the generation reached and the count of cells in each state,
+   *                        after every sampleInterval generations, on the worker thread
+   * @return completes once every generation has run, or with the exception one threw
+   */
+  public CompletableFuture<Void> advance(int generations, int sampleInterval,
+      BiConsumer<Integer, Map<Integer, Integer>> sampler) {
+    return submit(() -> {
+      for (int generation = 1; generation <= generations && !isStopped; generation++) {
+        mySimulation.transitionFunction();
+        mySimulation.processUpdate();
+        myGeneration++;
+        if (sampler != null && sampleInterval > 0 && generation % sampleInterval == 0) {
+          sampler.accept(myGeneration, mySimulation.countStates());
+        }
+        if (isRequested.getAndSet(false)) {
+          publish();
+        }
+      }
+      record();
+      publish();
+      return null;
+    });
+  }
+
+  /**
+   * @return the number of generations the simulation has run
+   */
+  public int getGeneration() {
+    return myGeneration;
+  }
+
+  /**
+   * @return the oldest generation still in the history, or the current generation if there is no
+   * history
+   */
+  public int getOldestGeneration() {
+    return myOldestGeneration;
+  }
+
+  /**
+   * Publishes the states of an earlier generation from the history, without changing the
+   * simulation. The simulation should be paused first, or the next step will publish its current
+   * state over it.
+   *
+   * @param generation, the generation to show
+   * @return completes with the latest generation in the history at or before the one asked for,
+   * which is the one shown, or -1 if none is
+   */
+  public CompletableFuture<Integer> show(int generation) {
+    return submit(() -> {
+      if (myHistory == null) {
+        return -1;
+      }
+      int shown = myHistory.findGeneration(generation);
+      if (shown >= 0) {
+        myLatest.set(new SimulationSnapshot(shown, myHistory.getStates(shown)));
+      }
+      return shown;
+    });
+  }
+
+  /**
+   * Rewinds the simulation to an earlier generation from the history, between two steps of the
+   * worker, and publishes its state. The simulation is rebuilt from the nearest keyframe before
+   * the generation, including its random number generator and the parameters it ran with, and
+   * stepped up to the generation, so it carries on just as it did the first time. The generations
+   * after it are dropped from the history.
+   *
+   * @param generation, the generation to rewind to
+   * @param rebuild,    creates the cells of the simulation again from the state of each cell in
+   *                    row-major order, run on the worker thread
+   * @return completes with the latest generation in the history at or before the one asked for,
+   * which is the one rewound to, or -1 if none is
+   */
+  public CompletableFuture<Integer> rewind(int generation, Consumer<int[]> rebuild) {
+    return submit(() -> {
+      if (myHistory == null) {
+        return -1;
+      }
+      int target = myHistory.findGeneration(generation);
+      if (target < 0) {
+        return -1;
+      }
+      if (target != myGeneration) {
+        SimulationCheckpoint keyframe = myHistory.getKeyframe(target);
+        rebuild.accept(keyframe.states().clone());
+        keyframe.restore(mySimulation);
+        for (int i = keyframe.generation(); i < target; i++) {
+          mySimulation.transitionFunction();
+          mySimulation.processUpdate();
+        }
+        myHistory.truncateAfter(target);
+        myGeneration = target;
+      }
+      publish();
+      return target;
+    });
+  }
+
+  /**
+   * Queues a command for the worker and wakes it up
+   *
+   * @param command, the command to run on the worker thread
+   * @return completes with the result of the command, or with the exception it threw
+   */
+  private <T> CompletableFuture<T> submit(Supplier<T> command) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    myCommands.add(() -> {
+      try {
+        result.complete(command.get());
+      } catch (Throwable e) {
+        // errors too, such as running out of memory in a long jump, or the future never completes
+        result.completeExceptionally(e);
+      }
+    });
+    LockSupport.unpark(myWorker);
+    return result;
+  }
+
+  /**
+   * Runs queued commands and steps the simulation until stopped. Whether the simulation is running
+   * is read before the queue is checked, so a command queued before resume is called always runs
+   * before the next step.
+   */
+  private void work() {
+    long lastStep = System.nanoTime();
+    while (!isStopped) {
+      boolean running = isRunning;
+      Runnable command = myCommands.poll();
+      if (command != null) {
+        command.run();
+      } else if (!running) {
+        LockSupport.park(this);
+        lastStep = System.nanoTime() - myStepPeriod;
+      } else if (System.nanoTime() - lastStep < myStepPeriod) {
+        LockSupport.parkNanos(this, lastStep + myStepPeriod - System.nanoTime());
+      } else {
+        lastStep = System.nanoTime();
+        try {
+          mySimulation.transitionFunction();
+          mySimulation.processUpdate();
+          myGeneration++;
+          record();
+          if (isRequested.getAndSet(false)) {
+            publish();
+          }
+        } catch (Throwable e) {
+          // keep the worker alive for the commands still to come
+          isRunning = false;
+          myFailure.set(e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Records the current generation in the history, if any. Must be called on the worker thread,
+   * or before it starts.
+   */
+  private void record() {
+    if (myHistory != null) {
+      myHistory.record(mySimulation, myGeneration);
+      myOldestGeneration = myHistory.getOldestGeneration();
+    } else {
+      myOldestGeneration = myGeneration;
+    }
+  }
+
+  /**
+   * Records the current generation in the history as a keyframe, if there is a history. Must be
+   * called on the worker thread, or before it starts.
+   */
+  private void recordKeyframe() {
+    if (myHistory != null) {
+      myHistory.recordKeyframe(mySimulation, myGeneration);
+      myOldestGeneration = myHistory.getOldestGeneration();
+    } else {
+      myOldestGeneration = myGeneration;
+    }
+  }
+
+  /**
+   * Copies the current states into a new snapshot, replacing any snapshot not yet taken. Must be
+   * called on the worker thread, or before it starts.
+   */
+  private void publish() {
+    myLatest.set(new SimulationSnapshot(myGeneration, mySimulation.getStates()));
+  }
+}
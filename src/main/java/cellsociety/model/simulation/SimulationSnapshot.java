@@ -0,0 +1,14 @@
+package cellsociety.model.simulation;
+
+/**
+ * The state of every cell of a simulation at one generation, in row-major order. Snapshots are
+ * handed from the thread running a simulation to the thread displaying it, so the states array must
+ * never be modified once the snapshot has been created.
+ *
+ * @param generation, the number of generations run when the snapshot was taken
+ * @param states,     the current state of each cell in row-major order
+ * @author Noah Loewy
+ */
+public record SimulationSnapshot(int generation, int[] states) {
+
+}
@@ -0,0 +1,401 @@
+package cellsociety.model.simulation;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A binary snapshot of a whole simulation, compact and fast enough to checkpoint large grids.
+ * <p>
+ * A snapshot file starts with a magic number, a format version and the length of the header that
+ * follows. The header holds the simulation's type, grid size, generation, neighborhood, edge type,
+ * cell shape and parameters, the names of the extra values (such as WaTor ages) kept for each
+ * cell, and single values such as the state of the random number generator. The header is followed
+ * by the state of every cell and then by each kind of extra value, as raw little-endian ints in
+ * row-major order. Version 1 files, which have no generation or single values, can still be read.
+ * <p>
+ * Snapshots are written through a file channel from a small direct buffer. Opening a snapshot only
+ * reads its header; the arrays are memory-mapped and copied out when they are asked for, so
+ * opening is near-instant however large the file is.
+ *
+ * @author Noah Loewy
+ */
+public class SnapshotFile implements AutoCloseable {
+
+  public static final String FILE_EXTENSION = ".snap";
+  public static final int MAGIC = 0x50414E53;
+  public static final int VERSION = 2;
+  private static final int FIRST_VERSION_WITH_CHECKPOINTS = 2;
+  private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+  private static final int PREAMBLE_BYTES = 3 * Integer.BYTES;
+  private static final int ALIGNMENT = Long.BYTES;
+  private static final int BUFFER_BYTES = 1 << 20;
+  private static final long MAX_MAPPED_BYTES = 1 << 30;
+
+  private final Path myPath;
+  private final FileChannel myChannel;
+  private final int myVersion;
+  private final SimulationHeader myHeader;
+  private final int myGeneration;
+  private final List<String> myExtraNames;
+  private final Map<String, Long> myScalarExtras;
+  private final long myDataStart;
+
+  /**
+   * Writes a snapshot of a simulation, replacing any existing file
+   *
+   * @param path,       the file to write
+   * @param header,     the type, size, neighborhood and record of the simulation
+   * @param simulation, the simulation to take a snapshot of
+   * @param generation, the number of generations the simulation has run
+   * @throws IOException if the file cannot be written
+   */
+  public static void write(Path path, SimulationHeader header, Simulation<?> simulation,
+      int generation) throws IOException {
+    write(path, header, SimulationCheckpoint.capture(simulation, generation));
+  }
+
+  /**
+   * Writes a snapshot from a checkpoint of a simulation, replacing any existing file
+   *
+   * @param path,       the file to write
+   * @param header,     the type, size, neighborhood and record of the simulation
+   * @param checkpoint, the complete state of the simulation at one generation
+   * @throws IOException if the file cannot be written
+   */
+  public static void write(Path path, SimulationHeader header, SimulationCheckpoint checkpoint)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      writeFully(channel, encodeHeader(header, checkpoint));
+      ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ORDER);
+      writeInts(channel, buffer, checkpoint.states());
+      for (int[] values : checkpoint.cellExtras().values()) {
+        writeInts(channel, buffer, values);
+      }
+    }
+  }
+
+  /**
+   * Opens a snapshot, reading only its header
+   *
+   * @param path, the snapshot file
+   * @return the open snapshot, which must be closed once its arrays have been read
+   * @throws IOException if the file cannot be read or is not a snapshot of a supported version
+   */
+  public static SnapshotFile open(Path path) throws IOException {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      return new SnapshotFile(path, channel);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  private SnapshotFile(Path path, FileChannel channel) throws IOException {
+    myPath = path;
+    myChannel = channel;
+    ByteBuffer preamble = readFully(0, PREAMBLE_BYTES);
+    if (preamble.getInt() != MAGIC) {
+      throw new IOException("Not a simulation snapshot: " + path);
+    }
+    myVersion = preamble.getInt();
+    if (myVersion < 1 || myVersion > VERSION) {
+      throw new IOException("Unsupported snapshot version " + myVersion + ": " + path);
+    }
+    int headerBytes = preamble.getInt();
+    if (headerBytes < 0 || PREAMBLE_BYTES + (long) headerBytes > channel.size()) {
+      throw new IOException("Truncated snapshot: " + path);
+    }
+    ByteBuffer header = readFully(PREAMBLE_BYTES, headerBytes);
+    try {
+      String type = getString(header);
+      int rows = header.getInt();
+      int cols = header.getInt();
+      boolean isCheckpoint = myVersion >= FIRST_VERSION_WITH_CHECKPOINTS;
+      myGeneration = isCheckpoint ? header.getInt() : 0;
+      String neighborhoodType = getString(header);
+      String gridType = getString(header);
+      String cellShape = getString(header);
+      int numParams = header.getInt();
+      Map<String, Double> params = new LinkedHashMap<>();
+      for (int i = 0; i < numParams; i++) {
+        String name = getString(header);
+        params.put(name, header.getDouble());
+      }
+      int numExtras = header.getInt();
+      List<String> extraNames = new ArrayList<>();
+      for (int i = 0; i < numExtras; i++) {
+        extraNames.add(getString(header));
+      }
+      Map<String, Long> scalarExtras = new LinkedHashMap<>();
+      int numScalars = isCheckpoint ? header.getInt() : 0;
+      for (int i = 0; i < numScalars; i++) {
+        String name = getString(header);
+        scalarExtras.put(name, header.getLong());
+      }
+      myHeader = new SimulationHeader(type, rows, cols, neighborhoodType,
+          new SimulationRecord(params, gridType, cellShape));
+      myExtraNames = Collections.unmodifiableList(extraNames);
+      myScalarExtras = Collections.unmodifiableMap(scalarExtras);
+      myDataStart = PREAMBLE_BYTES + (long) headerBytes;
+      long arrayBytes = getNumCells() * Integer.BYTES;
+      if (rows < 0 || cols < 0 || getNumCells() > Integer.MAX_VALUE
+          || myDataStart + arrayBytes * (1 + numExtras) > channel.size()) {
+        throw new IOException("Truncated snapshot: " + path);
+      }
+    } catch (BufferUnderflowException e) {
+      // a count or number that runs past the end of the header, as getString checks for strings
+      throw new IOException("Corrupt snapshot header", e);
+    }
+  }
+
+  /**
+   * @return the version of the format the snapshot was written in
+   */
+  public int getVersion() {
+    return myVersion;
+  }
+
+  /**
+   * @return the type, size, neighborhood and record of the simulation
+   */
+  public SimulationHeader getHeader() {
+    return myHeader;
+  }
+
+  /**
+   * @return the number of generations the simulation had run, or 0 for version 1 files
+   */
+  public int getGeneration() {
+    return myGeneration;
+  }
+
+  /**
+   * @return the single values of the simulation, such as the state of its random number
+   * generator, by name
+   */
+  public Map<String, Long> getScalarExtras() {
+    return myScalarExtras;
+  }
+
+  /**
+   * @return the names of the extra values kept for each cell, in the order they are stored
+   */
+  public List<String> getExtraNames() {
+    return myExtraNames;
+  }
+
+  /**
+   * Reads the state of every cell from the mapped file
+   *
+   * @return the state of each cell in row-major order
+   * @throws IOException if the file cannot be read
+   */
+  public int[] readStates() throws IOException {
+    return readInts(0);
+  }
+
+  /**
+   * Reads one kind of extra value of every cell from the mapped file
+   *
+   * @param name, the name of the extra value
+   * @return the value of each cell in row-major order, or null if the snapshot does not have it
+   * @throws IOException if the file cannot be read
+   */
+  public int[] readExtra(String name) throws IOException {
+    int index = myExtraNames.indexOf(name);
+    return index < 0 ? null : readInts(index + 1);
+  }
+
+  /**
+   * Reads every kind of extra value of every cell from the mapped file
+   *
+   * @return the extra values of each cell in row-major order, by name
+   * @throws IOException if the file cannot be read
+   */
+  public Map<String, int[]> readExtras() throws IOException {
+    Map<String, int[]> extras = new LinkedHashMap<>();
+    for (String name : myExtraNames) {
+      extras.put(name, readExtra(name));
+    }
+    return extras;
+  }
+
+  /**
+   * Reads the complete state of the simulation from the mapped file
+   *
+   * @return the checkpoint the snapshot holds
+   * @throws IOException if the file cannot be read
+   */
+  public SimulationCheckpoint readCheckpoint() throws IOException {
+    return new SimulationCheckpoint(myGeneration, readStates(), readExtras(), myScalarExtras,
+        myHeader.record().params());
+  }
+
+  /**
+   * Creates a simulation in exactly the state the snapshot was taken in, down to its random number
+   * generator
+   *
+   * @return the restored simulation
+   * @throws IOException           if the file cannot be read
+   * @throws IllegalStateException if the simulation or neighborhood type is unknown
+   */
+  public Simulation<?> restore() throws IOException, IllegalStateException {
+    SimulationCheckpoint checkpoint = readCheckpoint();
+    int[] states = checkpoint.states();
+    Simulation<?> simulation = SimulationFactory.create(myHeader, new AbstractList<>() {
+      @Override
+      public Integer get(int index) {
+        return states[index];
+      }
+
+      @Override
+      public int size() {
+        return states.length;
+      }
+    });
+    checkpoint.restore(simulation);
+    return simulation;
+  }
+
+  /**
+   * Closes the file. Arrays already read stay valid.
+   *
+   * @throws IOException if the file cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    myChannel.close();
+  }
+
+  private long getNumCells() {
+    return (long) myHeader.rows() * myHeader.cols();
+  }
+
+  /**
+   * Copies the array at the given position in the file, mapping at most MAX_MAPPED_BYTES of the
+   * file at a time
+   */
+  private int[] readInts(int arrayIndex) throws IOException {
+    int[] values = new int[(int) getNumCells()];
+    long start = myDataStart + (long) arrayIndex * values.length * Integer.BYTES;
+    int chunk = (int) (MAX_MAPPED_BYTES / Integer.BYTES);
+    for (int offset = 0; offset < values.length; offset += chunk) {
+      int length = Math.min(chunk, values.length - offset);
+      IntBuffer mapped = myChannel.map(FileChannel.MapMode.READ_ONLY,
+              start + (long) offset * Integer.BYTES, (long) length * Integer.BYTES)
+          .order(ORDER).asIntBuffer();
+      mapped.get(values, offset, length);
+    }
+    return values;
+  }
+
+  private ByteBuffer readFully(long position, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length).order(ORDER);
+    while (buffer.hasRemaining()) {
+      if (myChannel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException("Truncated snapshot: " + myPath);
+      }
+    }
+    return buffer.flip();
+  }
+
+  private static ByteBuffer encodeHeader(SimulationHeader header,
+      SimulationCheckpoint checkpoint) {
+    List<byte[]> strings = new ArrayList<>();
+    SimulationRecord record = header.record();
+    Map<String, Long> scalarExtras = checkpoint.scalarExtras();
+    strings.add(encode(header.type()));
+    strings.add(encode(header.neighborhoodType()));
+    strings.add(encode(record.gridType()));
+    strings.add(encode(record.cellShape()));
+    for (String name : record.params().keySet()) {
+      strings.add(encode(name));
+    }
+    for (String name : checkpoint.cellExtras().keySet()) {
+      strings.add(encode(name));
+    }
+    for (String name : scalarExtras.keySet()) {
+      strings.add(encode(name));
+    }
+    int length = 6 * Integer.BYTES + record.params().size() * Double.BYTES
+        + scalarExtras.size() * Long.BYTES;
+    for (byte[] string : strings) {
+      length += Integer.BYTES + string.length;
+    }
+    int padded = (PREAMBLE_BYTES + length + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    ByteBuffer buffer = ByteBuffer.allocate(padded).order(ORDER);
+    buffer.putInt(MAGIC).putInt(VERSION).putInt(padded - PREAMBLE_BYTES);
+    int next = 0;
+    putString(buffer, strings.get(next++));
+    buffer.putInt(header.rows()).putInt(header.cols()).putInt(checkpoint.generation());
+    putString(buffer, strings.get(next++));
+    putString(buffer, strings.get(next++));
+    putString(buffer, strings.get(next++));
+    buffer.putInt(record.params().size());
+    for (double value : record.params().values()) {
+      putString(buffer, strings.get(next++));
+      buffer.putDouble(value);
+    }
+    buffer.putInt(checkpoint.cellExtras().size());
+    for (int i = 0; i < checkpoint.cellExtras().size(); i++) {
+      putString(buffer, strings.get(next++));
+    }
+    buffer.putInt(scalarExtras.size());
+    for (long value : scalarExtras.values()) {
+      putString(buffer, strings.get(next++));
+      buffer.putLong(value);
+    }
+    return buffer.position(0);
+  }
+
+  private static byte[] encode(String string) {
+    return string.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static void putString(ByteBuffer buffer, byte[] string) {
+    buffer.putInt(string.length).put(string);
+  }
+
+  private static String getString(ByteBuffer buffer) throws IOException {
+    int length = buffer.getInt();
+    if (length < 0 || length > buffer.remaining()) {
+      throw new IOException("Corrupt snapshot header");
+    }
+    byte[] string = new byte[length];
+    buffer.get(string);
+    return new String(string, StandardCharsets.UTF_8);
+  }
+
+  private static void writeInts(FileChannel channel, ByteBuffer buffer, int[] values)
+      throws IOException {
+    IntBuffer ints = buffer.clear().asIntBuffer();
+    for (int offset = 0; offset < values.length; offset += ints.capacity()) {
+      int length = Math.min(ints.capacity(), values.length - offset);
+      ints.clear();
+      ints.put(values, offset, length);
+      buffer.clear().limit(length * Integer.BYTES);
+      writeFully(channel, buffer);
+    }
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+}
@@ -1,13 +1,15 @@
 package cellsociety.model.simulation;
 
-import cellsociety.model.core.cell.Cell;
+import cellsociety.Point;
+import cellsociety.RandomLayout;
 import cellsociety.model.core.cell.SugarCell;
+import cellsociety.model.core.grid.SugarLandscape;
 import cellsociety.model.core.shape.Shape;
 import cellsociety.model.neighborhood.Neighborhood;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -21,6 +23,11 @@ import java.util.Random;
 
 public class SugarSimulation extends Simulation<SugarCell> {
 
+  public static final String CAPACITY_EXTRA = "capacity";
+  public static final String AGENT_EXTRA = "agent";
+  public static final String AGENT_SUGAR_EXTRA = "agentSugar";
+  public static final String VISION_EXTRA = "vision";
+  public static final String METABOLISM_EXTRA = "metabolism";
   private final int minVision;
   private final int maxVision;
   private final int minInitialSugar;
@@ -29,6 +36,41 @@ public class SugarSimulation extends Simulation<SugarCell> {
   private final int maxMetabolism;
   private final int numAgents;
   private final int growBackRate;
+  /**
+   * Vision table, built once per topology. The cells visible from cell i lie along rays in each of
+   * the legal directions (the directions of its neighbors). They are stored in myVisibleCells,
+   * ordered by how many steps along their ray they are, so that the cells an agent with vision v
+   * can see from cell i are exactly the entries from myVisionEnds[i * (maxVision + 1)] up to
+   * myVisionEnds[i * (maxVision + 1) + v]. myVisibleDistances holds the squared distance from cell
+   * i to each visible cell, used to break ties.
+   */
+  private int[] myVisionEnds;
+  private int[] myVisibleCells;
+  private double[] myVisibleDistances;
+  /**
+   * Agent-indexed state. Sugar and occupancy of every cell live in myLandscape, and the agents are
+   * kept in a compact list of primitive arrays (slot a holds the cell, sugar, vision and
+   * metabolism of agent a). myOrder is the order in which agents move, reshuffled every step.
+   * During a step, myNextCell and myNextSugar hold where each agent will be (or NO_AGENT if it
+   * dies), and the sugar of the cells agents leave or eat from is queued in myPendingCells and
+   * myPendingSugar. Every cell an agent moves to is claimed, even if the agent dies there, so no
+   * other agent can move to it in the same step; the claimed cells are listed in myClaimedCells.
+   */
+  private SugarLandscape myLandscape;
+  private int myAgentCount;
+  private int[] myAgentCell;
+  private int[] myAgentSugar;
+  private int[] myAgentVision;
+  private int[] myAgentMetabolism;
+  private int[] myOrder;
+  private int[] myNextCell;
+  private int[] myNextSugar;
+  private boolean[] isClaimed;
+  private int[] myClaimedCells;
+  private int myClaimedCount;
+  private int[] myPendingCells;
+  private int[] myPendingSugar;
+  private int myPendingCount;
 
   /**
    * Initializes a SugarSimulation object
@@ -44,7 +86,7 @@ public class SugarSimulation extends Simulation<SugarCell> {
 
   public SugarSimulation(int row, int col, Neighborhood hoodType, List<Integer> stateList,
       SimulationRecord r) {
-    super(hoodType, r.gridType());
+    super(hoodType, r);
     minVision = (int) Math.floor(r.params().get("minVision"));
     maxVision = (int) Math.floor(r.params().get("maxVision"));
     minInitialSugar = (int) Math.floor(r.params().get("minInitialSugar"));
@@ -71,20 +113,18 @@ public class SugarSimulation extends Simulation<SugarCell> {
       Shape shape) {
     List<SugarCell> cellList = new ArrayList<>();
 
-    List<Boolean> agentList = new ArrayList<>(Collections.nCopies(stateList.size(), false));
-    Collections.fill(agentList.subList(0, numAgents), true);
-    Collections.shuffle(agentList);
+    Random random = getRandom();
+    boolean[] isAgent = new RandomLayout(random).choose(stateList.size(), numAgents);
 
     for (int i = 0; i < stateList.size(); i++) {
       Map<String, Integer> params = new HashMap<>();
-      if (agentList.get(i)) {
-        params.put("vision", new Random().nextInt(maxVision + 1 - minVision) + minVision);
+      if (isAgent[i]) {
+        params.put("vision", random.nextInt(maxVision + 1 - minVision) + minVision);
         params.put("sugar",
-            new Random().nextInt(maxInitialSugar + 1 - minInitialSugar) + minInitialSugar);
+            random.nextInt(maxInitialSugar + 1 - minInitialSugar) + minInitialSugar);
         params.put("metabolism",
-            new Random().nextInt(maxMetabolism + 1 - minMetabolism) + minMetabolism);
+            random.nextInt(maxMetabolism + 1 - minMetabolism) + minMetabolism);
       }
-      params.put("growBackRate", growBackRate);
       cellList.add(new SugarCell(stateList.get(i), i / col, i % col, shape, params));
     }
     return cellList;
@@ -92,19 +132,344 @@ public class SugarSimulation extends Simulation<SugarCell> {
 
 
   /**
-   * Transition function for Sugar Scape. Iterates through each cell, starting with all the agents,
-   * then empty cells, and calls the cell's transition function.
+   * Builds the vision table by walking each ray from every cell, whenever the grid is created
+   */
+  @Override
+  protected void initializeStructures() {
+    int numCells = getNumCells();
+    Point[] centroids = new Point[numCells];
+    for (int i = 0; i < numCells; i++) {
+      centroids[i] = getCell(i).getCentroid();
+    }
+    int stride = maxVision + 1;
+    myVisionEnds = new int[numCells * stride];
+    List<Integer> visibleCells = new ArrayList<>();
+    List<Double> visibleDistances = new ArrayList<>();
+    int[] seenBy = new int[numCells];
+    for (int i = 0; i < numCells; i++) {
+      List<SugarCell> neighbors = getCell(i).getNeighbors();
+      int[][] rays = new int[neighbors.size()][];
+      for (int d = 0; d < rays.length; d++) {
+        rays[d] = walkRay(i, indexOf(neighbors.get(d)), centroids);
+      }
+      seenBy[i] = i + 1;
+      myVisionEnds[i * stride] = visibleCells.size();
+      for (int step = 1; step <= maxVision; step++) {
+        for (int[] ray : rays) {
+          if (step <= ray.length && seenBy[ray[step - 1]] != i + 1) {
+            int visible = ray[step - 1];
+            seenBy[visible] = i + 1;
+            visibleCells.add(visible);
+            visibleDistances.add(squaredDistance(centroids[i], centroids[visible]));
+          }
+        }
+        myVisionEnds[i * stride + step] = visibleCells.size();
+      }
+    }
+    myVisibleCells = visibleCells.stream().mapToInt(Integer::intValue).toArray();
+    myVisibleDistances = visibleDistances.stream().mapToDouble(Double::doubleValue).toArray();
+    if (myLandscape == null) {
+      initializeAgents();
+    }
+  }
+
+  /**
+   * Creates the cells and grid, starting over with a new landscape and agent list taken from the
+   * new cells
+   *
+   * @param row,       number of rows in simulation
+   * @param col,       number of columns in simulation
+   * @param stateList, a list of the integer representation of each cells state in row major order
+   * @param shape,     the shape of the cells
+   * @param hoodType,  the definition of neighbors
+   */
+  @Override
+  public void createCellsAndGrid(int row, int col, List<Integer> stateList, Shape shape,
+      Neighborhood hoodType) {
+    myLandscape = null;
+    super.createCellsAndGrid(row, col, stateList, shape, hoodType);
+  }
+
+  /**
+   * Moves the sugar and agents of every cell into the landscape and the agent list. This happens
+   * once, when the cells are created; rebuilding the grid for a new edge type keeps them.
+   */
+  private void initializeAgents() {
+    int numCells = getNumCells();
+    int[] capacity = new int[numCells];
+    myAgentCount = 0;
+    myAgentCell = new int[numCells];
+    myAgentSugar = new int[numCells];
+    myAgentVision = new int[numCells];
+    myAgentMetabolism = new int[numCells];
+    for (int i = 0; i < numCells; i++) {
+      SugarCell cell = getCell(i);
+      capacity[i] = cell.getCurrentState();
+      if (cell.agentHere()) {
+        myAgentCell[myAgentCount] = i;
+        myAgentSugar[myAgentCount] = cell.getInitialAgentSugar();
+        myAgentVision[myAgentCount] = cell.getInitialVision();
+        myAgentMetabolism[myAgentCount] = cell.getInitialMetabolism();
+        myAgentCount++;
+      }
+    }
+    myLandscape = new SugarLandscape(capacity, growBackRate);
+    for (int a = 0; a < myAgentCount; a++) {
+      myLandscape.setOccupant(myAgentCell[a], a);
+    }
+    for (int i = 0; i < numCells; i++) {
+      getCell(i).setLandscape(myLandscape, i);
+    }
+    myOrder = new int[numCells];
+    myNextCell = new int[numCells];
+    myNextSugar = new int[numCells];
+    isClaimed = new boolean[numCells];
+    myClaimedCells = new int[numCells];
+    myClaimedCount = 0;
+    myPendingCells = new int[2 * numCells];
+    myPendingSugar = new int[2 * numCells];
+  }
+
+  /**
+   * Copies the sugar capacity of every cell and the agent on it. Agents are identified by their
+   * position in the agent list, which decides the order they are shuffled in.
+   *
+   * @return the capacity of every cell, and the position, sugar, vision and metabolism of the agent
+   * on it (or NO_AGENT), in row-major order, by name
+   */
+  @Override
+  public Map<String, int[]> getCellExtras() {
+    int numCells = getNumCells();
+    int[] capacity = new int[numCells];
+    int[] agent = new int[numCells];
+    int[] agentSugar = new int[numCells];
+    int[] vision = new int[numCells];
+    int[] metabolism = new int[numCells];
+    Arrays.fill(agent, SugarLandscape.NO_AGENT);
+    Arrays.fill(agentSugar, SugarLandscape.NO_AGENT);
+    Arrays.fill(vision, SugarLandscape.NO_AGENT);
+    Arrays.fill(metabolism, SugarLandscape.NO_AGENT);
+    for (int i = 0; i < numCells; i++) {
+      capacity[i] = myLandscape.getCapacity(i);
+    }
+    for (int a = 0; a < myAgentCount; a++) {
+      int cell = myAgentCell[a];
+      agent[cell] = a;
+      agentSugar[cell] = myAgentSugar[a];
+      vision[cell] = myAgentVision[a];
+      metabolism[cell] = myAgentMetabolism[a];
+    }
+    Map<String, int[]> extras = new LinkedHashMap<>();
+    extras.put(CAPACITY_EXTRA, capacity);
+    extras.put(AGENT_EXTRA, agent);
+    extras.put(AGENT_SUGAR_EXTRA, agentSugar);
+    extras.put(VISION_EXTRA, vision);
+    extras.put(METABOLISM_EXTRA, metabolism);
+    return extras;
+  }
+
+  /**
+   * Restores the sugar capacity of every cell and the agents, replacing the randomly placed agents
+   * the simulation was created with. The states the simulation was created from are the sugar
+   * currently available at each cell. Nothing changes if any of the values is missing.
+   *
+   * @param extras, the capacity of every cell, and the position, sugar, vision and metabolism of
+   *                the agent on it (or NO_AGENT), in row-major order, by name
+   */
+  @Override
+  public void setCellExtras(Map<String, int[]> extras) {
+    int[] capacity = extras.get(CAPACITY_EXTRA);
+    int[] agent = extras.get(AGENT_EXTRA);
+    int[] agentSugar = extras.get(AGENT_SUGAR_EXTRA);
+    int[] vision = extras.get(VISION_EXTRA);
+    int[] metabolism = extras.get(METABOLISM_EXTRA);
+    if (capacity == null || agent == null || agentSugar == null || vision == null
+        || metabolism == null) {
+      return;
+    }
+    int numCells = getNumCells();
+    int[] sugar = new int[numCells];
+    for (int i = 0; i < numCells; i++) {
+      sugar[i] = myLandscape.getSugar(i);
+    }
+    myLandscape = new SugarLandscape(capacity, myLandscape.getGrowBackRate());
+    myAgentCount = 0;
+    for (int i = 0; i < numCells; i++) {
+      myLandscape.setSugar(i, sugar[i]);
+      int a = agent[i];
+      if (a != SugarLandscape.NO_AGENT) {
+        myAgentCell[a] = i;
+        myAgentSugar[a] = agentSugar[i];
+        myAgentVision[a] = vision[i];
+        myAgentMetabolism[a] = metabolism[i];
+        myLandscape.setOccupant(i, a);
+        myAgentCount++;
+      }
+    }
+    for (int i = 0; i < numCells; i++) {
+      getCell(i).setLandscape(myLandscape, i);
+    }
+  }
+
+  /**
+   * Updates the growback rate of the landscape
+   *
+   * @param newParameters, the updated parameter values
+   */
+  @Override
+  public void setParams(Map<String, Double> newParameters) {
+    super.setParams(newParameters);
+    myLandscape.setGrowBackRate((int) Math.floor(newParameters.get("growBackRate")));
+  }
+
+  /**
+   * Follows a ray that leaves a cell through one of its neighbors, continuing in the same direction
+   * for as long as a neighbor lies in that direction, up to maxVision steps
+   *
+   * @param origin    row-major index of the cell the ray starts from
+   * @param first     row-major index of the neighbor the ray passes through first
+   * @param centroids centroids of all cells
+   * @return the row-major indices of the cells on the ray, in order
+   */
+  private int[] walkRay(int origin, int first, Point[] centroids) {
+    double dx = centroids[first].getCol() - centroids[origin].getCol();
+    double dy = centroids[first].getRow() - centroids[origin].getRow();
+    int[] ray = new int[maxVision];
+    int length = 0;
+    int current = first;
+    while (current >= 0 && length < maxVision) {
+      ray[length++] = current;
+      int next = -1;
+      for (SugarCell neighbor : getCell(current).getNeighbors()) {
+        int candidate = indexOf(neighbor);
+        if (candidate != origin
+            && centroids[candidate].getCol() - centroids[current].getCol() == dx
+            && centroids[candidate].getRow() - centroids[current].getRow() == dy) {
+          next = candidate;
+          break;
+        }
+      }
+      current = next;
+    }
+    return Arrays.copyOf(ray, length);
+  }
+
+  private double squaredDistance(Point from, Point to) {
+    return Math.pow(from.getCol() - to.getCol(), 2) + Math.pow(from.getRow() - to.getRow(), 2);
+  }
+
+  /**
+   * Finds the cell that an agent is going to move to. This is the visible cell with the most open
+   * sugar available (with ties broken by distance, and then at random). A cell is available if no
+   * agent occupies it and no agent has already claimed it this step.
+   *
+   * @param index  row-major index of the agent's cell
+   * @param vision the agent's vision
+   * @return the row-major index of the cell the agent moves to, or NO_AGENT if no visible cell is
+   * available
+   */
+  private int getFutureCell(int index, int vision) {
+    int stride = maxVision + 1;
+    int end = myVisionEnds[index * stride + Math.min(vision, maxVision)];
+    int bestOption = SugarLandscape.NO_AGENT;
+    int bestVal = -1;
+    double bestDistance = 0;
+    for (int k = myVisionEnds[index * stride]; k < end; k++) {
+      int neighbor = myVisibleCells[k];
+      if (myLandscape.getOccupant(neighbor) == SugarLandscape.NO_AGENT && !isClaimed[neighbor]) {
+        int value = myLandscape.getSugar(neighbor);
+        double distance = myVisibleDistances[k];
+        if (value > bestVal || (value == bestVal && (distance < bestDistance
+            || (distance == bestDistance && getRandom().nextInt(2) == 1)))) {
+          bestOption = neighbor;
+          bestVal = value;
+          bestDistance = distance;
+        }
+      }
+    }
+    return bestOption;
+  }
+
+  /**
+   * Transition function for Sugar Scape. Every agent, in a random order, moves to the best cell it
+   * can see and eats its sugar, or stays put if it sees nothing available. Agents whose sugar runs
+   * out die. Cells agents leave or eat from are queued to be reset; every other cell grows back on
+   * its own when the landscape advances, so a step costs time proportional to the number of agents.
    */
   @Override
   public void transitionFunction() {
-    for (int i = 0; i < 2; i++) {
-      Iterator<SugarCell> gridIterator = getIterator();
-      while (gridIterator.hasNext()) {
-        SugarCell currentCell = gridIterator.next();
-        if (i == 0 == currentCell.agentHere() && currentCell.getNextState() == Cell.PLACEHOLDER) {
-          currentCell.transition();
+    for (int a = 0; a < myAgentCount; a++) {
+      myOrder[a] = a;
+    }
+    for (int a = myAgentCount - 1; a > 0; a--) {
+      int b = getRandom().nextInt(a + 1);
+      int temp = myOrder[a];
+      myOrder[a] = myOrder[b];
+      myOrder[b] = temp;
+    }
+    myPendingCount = 0;
+    int growBack = myLandscape.getGrowBackRate();
+    for (int k = 0; k < myAgentCount; k++) {
+      int a = myOrder[k];
+      int cell = myAgentCell[a];
+      int nextCell = getFutureCell(cell, myAgentVision[a]);
+      if (nextCell != SugarLandscape.NO_AGENT) {
+        int newAgentSugar = myAgentSugar[a] + myLandscape.getSugar(nextCell) - myAgentMetabolism[a];
+        queueSugar(cell, Math.min(growBack, myLandscape.getCapacity(cell)));
+        isClaimed[nextCell] = true;
+        myClaimedCells[myClaimedCount++] = nextCell;
+        if (newAgentSugar > 0) {
+          queueSugar(nextCell, 0);
+          myNextCell[a] = nextCell;
+        } else {
+          //we assume that if an agent goes to a new cell and dies, that new cell is unavailable
+          // for the timestep, and keeps growing back as if the agent had never come
+          myNextCell[a] = SugarLandscape.NO_AGENT;
         }
+        myNextSugar[a] = newAgentSugar;
+      } else {
+        int newAgentSugar = myAgentSugar[a] + growBack - myAgentMetabolism[a];
+        queueSugar(cell, 0);
+        myNextCell[a] = newAgentSugar > 0 ? cell : SugarLandscape.NO_AGENT;
+        myNextSugar[a] = newAgentSugar;
+      }
+    }
+  }
+
+  /**
+   * Advances the landscape, applies the queued sugar of the cells agents touched, and moves the
+   * surviving agents to their new cells, compacting the agent list.
+   */
+  @Override
+  public void processUpdate() {
+    myLandscape.advance();
+    for (int i = 0; i < myPendingCount; i++) {
+      myLandscape.setSugar(myPendingCells[i], myPendingSugar[i]);
+    }
+    for (int a = 0; a < myAgentCount; a++) {
+      myLandscape.setOccupant(myAgentCell[a], SugarLandscape.NO_AGENT);
+    }
+    for (int i = 0; i < myClaimedCount; i++) {
+      isClaimed[myClaimedCells[i]] = false;
+    }
+    myClaimedCount = 0;
+    int survivors = 0;
+    for (int a = 0; a < myAgentCount; a++) {
+      if (myNextCell[a] != SugarLandscape.NO_AGENT) {
+        myAgentCell[survivors] = myNextCell[a];
+        myAgentSugar[survivors] = myNextSugar[a];
+        myAgentVision[survivors] = myAgentVision[a];
+        myAgentMetabolism[survivors] = myAgentMetabolism[a];
+        myLandscape.setOccupant(myAgentCell[survivors], survivors);
+        survivors++;
       }
     }
+    myAgentCount = survivors;
+  }
+
+  private void queueSugar(int cell, int sugar) {
+    myPendingCells[myPendingCount] = cell;
+    myPendingSugar[myPendingCount] = sugar;
+    myPendingCount++;
   }
 }
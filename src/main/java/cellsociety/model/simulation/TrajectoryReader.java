@@ -0,0 +1,334 @@
+package cellsociety.model.simulation;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads a trajectory file written by a TrajectoryRecorder, giving the state of every cell at any
+ * recorded generation. Opening the file reads only the header of each frame, to index where every
+ * frame starts. Seeking to a generation decodes the nearest keyframe at or before it and replays
+ * the changes of the frames that follow, so it costs at most one keyframe interval of frames.
+ * Seeking forward from the last generation read replays from there instead when that is closer,
+ * so reading every generation in order costs a single pass over the file.
+ *
+ * @author Noah Loewy
+ */
+public class TrajectoryReader implements AutoCloseable {
+
+  private static final int INITIAL_FRAMES = 1024;
+  private static final int BUFFER_BYTES = 1 << 16;
+  private final Path myPath;
+  private final FileChannel myChannel;
+  private final boolean isCompressed;
+  private final int myKeyframeInterval;
+  private final int myRows;
+  private final int myCols;
+  private final Inflater myInflater;
+  private int myNumFrames;
+  private int[] myGenerations = new int[INITIAL_FRAMES];
+  private long[] myOffsets = new long[INITIAL_FRAMES];
+  private int[] myLengths = new int[INITIAL_FRAMES];
+  private int[] myStoredLengths = new int[INITIAL_FRAMES];
+  private boolean[] isKeyframe = new boolean[INITIAL_FRAMES];
+  private int[] myStates;
+  private int myCurrentFrame = -1;
+  private byte[] myStored = new byte[BUFFER_BYTES];
+  private byte[] myContent = new byte[BUFFER_BYTES];
+  private int myPosition;
+
+  /**
+   * Opens a trajectory file and indexes its frames
+   *
+   * @param path, the trajectory file
+   * @throws IOException if the file cannot be read or is not a trajectory of a supported version
+   */
+  public TrajectoryReader(Path path) throws IOException {
+    myPath = path;
+    myChannel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      ByteBuffer header = ByteBuffer.allocate(TrajectoryRecorder.HEADER_BYTES)
+          .order(TrajectoryRecorder.ORDER);
+      while (header.hasRemaining()) {
+        if (myChannel.read(header, header.position()) < 0) {
+          throw new IOException("Truncated trajectory: " + path);
+        }
+      }
+      header.flip();
+      if (header.getInt() != TrajectoryRecorder.MAGIC) {
+        throw new IOException("Not a trajectory: " + path);
+      }
+      int version = header.getInt();
+      if (version != TrajectoryRecorder.VERSION) {
+        throw new IOException("Unsupported trajectory version " + version + ": " + path);
+      }
+      isCompressed = (header.getInt() & TrajectoryRecorder.COMPRESSED) != 0;
+      myKeyframeInterval = header.getInt();
+      myRows = header.getInt();
+      myCols = header.getInt();
+      myInflater = isCompressed ? new Inflater() : null;
+      indexFrames();
+    } catch (IOException | RuntimeException e) {
+      close();
+      throw e;
+    }
+  }
+
+  /**
+   * @return the number of rows in the grid
+   */
+  public int getRows() {
+    return myRows;
+  }
+
+  /**
+   * @return the number of columns in the grid
+   */
+  public int getCols() {
+    return myCols;
+  }
+
+  /**
+   * @return the number of frames from one keyframe to the next
+   */
+  public int getKeyframeInterval() {
+    return myKeyframeInterval;
+  }
+
+  /**
+   * @return the number of complete frames in the file
+   */
+  public int getNumFrames() {
+    return myNumFrames;
+  }
+
+  /**
+   * @param frame, the position of a frame in the file, between 0 and getNumFrames() - 1
+   * @return the generation the frame holds
+   */
+  public int getGeneration(int frame) {
+    return myGenerations[frame];
+  }
+
+  /**
+   * @param generation, a generation of the simulation
+   * @return true if and only if the file holds a frame for the generation
+   */
+  public boolean hasGeneration(int generation) {
+    return Arrays.binarySearch(myGenerations, 0, myNumFrames, generation) >= 0;
+  }
+
+  /**
+   * Finds the state of every cell at a generation
+   *
+   * @param generation, a generation held by one of the frames of the file
+   * @return the state of each cell in row-major order, in a new array
+   * @throws IOException              if the file cannot be read or a frame is corrupt
+   * @throws IllegalArgumentException if the file has no frame for the generation
+   */
+  public int[] seek(int generation) throws IOException, IllegalArgumentException {
+    int frame = Arrays.binarySearch(myGenerations, 0, myNumFrames, generation);
+    if (frame < 0) {
+      throw new IllegalArgumentException("No frame for generation " + generation);
+    }
+    int keyframe = frame;
+    while (!isKeyframe[keyframe]) {
+      keyframe--;
+    }
+    if (myCurrentFrame < keyframe || myCurrentFrame > frame) {
+      readFrame(keyframe);
+    }
+    while (myCurrentFrame < frame) {
+      readFrame(myCurrentFrame + 1);
+    }
+    return myStates.clone();
+  }
+
+  /**
+   * Closes the file
+   *
+   * @throws IOException if the file cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    if (myInflater != null) {
+      myInflater.end();
+    }
+    myChannel.close();
+  }
+
+  /**
+   * Reads the header of every frame, skipping their content, up to the end of the file or the
+   * first frame cut short
+   */
+  private void indexFrames() throws IOException {
+    InputStream in = new BufferedInputStream(
+        Channels.newInputStream(myChannel.position(TrajectoryRecorder.HEADER_BYTES)),
+        BUFFER_BYTES);
+    long offset = TrajectoryRecorder.HEADER_BYTES;
+    long size = myChannel.size();
+    while (true) {
+      int kind = in.read();
+      if (kind < 0) {
+        return;
+      }
+      myPosition = 1;
+      int generation;
+      int length;
+      int storedLength;
+      try {
+        generation = readVarint(in);
+        length = readVarint(in);
+        storedLength = readVarint(in);
+      } catch (EOFException e) {
+        return;
+      }
+      long start = offset + myPosition;
+      if (start + storedLength > size || kind != TrajectoryRecorder.KEYFRAME
+          && (kind != TrajectoryRecorder.DELTA || myNumFrames == 0)) {
+        return;
+      }
+      addFrame(generation, start, length, storedLength, kind == TrajectoryRecorder.KEYFRAME);
+      in.skipNBytes(storedLength);
+      offset = start + storedLength;
+    }
+  }
+
+  private void addFrame(int generation, long offset, int length, int storedLength,
+      boolean keyframe) {
+    if (myNumFrames == myGenerations.length) {
+      int capacity = 2 * myNumFrames;
+      myGenerations = Arrays.copyOf(myGenerations, capacity);
+      myOffsets = Arrays.copyOf(myOffsets, capacity);
+      myLengths = Arrays.copyOf(myLengths, capacity);
+      myStoredLengths = Arrays.copyOf(myStoredLengths, capacity);
+      isKeyframe = Arrays.copyOf(isKeyframe, capacity);
+    }
+    myGenerations[myNumFrames] = generation;
+    myOffsets[myNumFrames] = offset;
+    myLengths[myNumFrames] = length;
+    myStoredLengths[myNumFrames] = storedLength;
+    isKeyframe[myNumFrames] = keyframe;
+    myNumFrames++;
+  }
+
+  /**
+   * Reads a frame and applies it to the current states, which must hold the frame before it
+   * unless it is a keyframe
+   */
+  private void readFrame(int frame) throws IOException {
+    int length = myLengths[frame];
+    byte[] content = readContent(frame);
+    myPosition = 0;
+    if (isKeyframe[frame]) {
+      myStates = new int[Math.multiplyExact(myRows, myCols)];
+      for (int i = 0; i < myStates.length; i++) {
+        myStates[i] = getVarint(content, length);
+      }
+    } else {
+      int count = getVarint(content, length);
+      int index = 0;
+      for (int i = 0; i < count; i++) {
+        index += getVarint(content, length);
+        if (index < 0 || index >= myStates.length) {
+          throw corrupt(frame);
+        }
+        myStates[index] = getVarint(content, length);
+      }
+    }
+    myCurrentFrame = frame;
+  }
+
+  /**
+   * Reads the stored content of a frame, and inflates it if the file is compressed
+   *
+   * @return a buffer starting with the content of the frame
+   */
+  private byte[] readContent(int frame) throws IOException {
+    int storedLength = myStoredLengths[frame];
+    if (myStored.length < storedLength) {
+      myStored = new byte[storedLength];
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(myStored, 0, storedLength);
+    while (buffer.hasRemaining()) {
+      if (myChannel.read(buffer, myOffsets[frame] + buffer.position()) < 0) {
+        throw corrupt(frame);
+      }
+    }
+    if (!isCompressed) {
+      return myStored;
+    }
+    int length = myLengths[frame];
+    if (myContent.length < length) {
+      myContent = new byte[length];
+    }
+    myInflater.reset();
+    myInflater.setInput(myStored, 0, storedLength);
+    try {
+      int inflated = 0;
+      while (inflated < length && !myInflater.finished()) {
+        int count = myInflater.inflate(myContent, inflated, length - inflated);
+        if (count == 0 && (myInflater.needsInput() || myInflater.needsDictionary())) {
+          break;
+        }
+        inflated += count;
+      }
+      if (inflated != length) {
+        throw corrupt(frame);
+      }
+    } catch (DataFormatException e) {
+      throw new IOException("Corrupt frame " + frame + " in trajectory " + myPath, e);
+    }
+    return myContent;
+  }
+
+  private IOException corrupt(int frame) {
+    return new IOException("Corrupt frame " + frame + " in trajectory " + myPath);
+  }
+
+  /**
+   * Reads a varint from a buffer at myPosition, advancing it
+   */
+  private int getVarint(byte[] bytes, int length) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+      if (myPosition >= length) {
+        throw new IOException("Truncated frame in trajectory " + myPath);
+      }
+      byte b = bytes[myPosition++];
+      value |= (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new IOException("Varint too long in trajectory " + myPath);
+  }
+
+  /**
+   * Reads a varint from a stream, adding the number of bytes read to myPosition
+   */
+  private int readVarint(InputStream in) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+      int b = in.read();
+      if (b < 0) {
+        throw new EOFException();
+      }
+      myPosition++;
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Varint too long in trajectory " + myPath);
+  }
+}
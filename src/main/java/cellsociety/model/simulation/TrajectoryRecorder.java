@@ -0,0 +1,228 @@
+package cellsociety.model.simulation;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Records every generation of a simulation to an append-only trajectory file, for analysis after
+ * the run. Saving the whole grid every step would take far too much space, so most frames only
+ * hold the cells whose state changed since the previous frame, as pairs of (index, new state).
+ * Every keyframe interval frames, the whole grid is written instead, so that a TrajectoryReader can
+ * seek to any generation by replaying at most that many frames.
+ * <p>
+ * A trajectory file starts with a magic number, a format version, flags, the keyframe interval
+ * and the grid size, as little-endian ints. Each frame follows as a kind (KEYFRAME or DELTA), the
+ * generation, the length of its content and the length actually stored, all as varints (7 bits per
+ * byte, low bits first), then the stored content. A keyframe holds the state of every cell; a
+ * delta holds the number of changes, then for each change the gap from the previous changed index
+ * and the new state. All of these are varints. When the file is compressed, the content of each
+ * frame is compressed with Deflate on its own, so frames can still be read independently. Frames
+ * cut short by a crash are ignored by the reader.
+ *
+ * @author Noah Loewy
+ */
+public class TrajectoryRecorder implements AutoCloseable {
+
+  public static final String FILE_EXTENSION = ".traj";
+  public static final int MAGIC = 0x4A415254;
+  public static final int VERSION = 1;
+  public static final int COMPRESSED = 1;
+  public static final byte KEYFRAME = 1;
+  public static final byte DELTA = 0;
+  public static final int HEADER_BYTES = 6 * Integer.BYTES;
+  static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+  private static final int BUFFER_BYTES = 1 << 16;
+  private static final int MAX_VARINT_BYTES = 5;
+  private static final int MAX_FRAME_HEADER_BYTES = 1 + 3 * MAX_VARINT_BYTES;
+  private final OutputStream myOutput;
+  private final int myNumCells;
+  private final int myKeyframeInterval;
+  private final Deflater myDeflater;
+  private int[] myPrevious;
+  private int myNumFrames;
+  private int myLastGeneration;
+  private byte[] myContent = new byte[BUFFER_BYTES];
+  private byte[] myCompressed = new byte[BUFFER_BYTES];
+  private final byte[] myFrameHeader = new byte[MAX_FRAME_HEADER_BYTES];
+
+  /**
+   * Creates a trajectory file, replacing any existing file
+   *
+   * @param path,             the file to write
+   * @param rows,             the number of rows in the grid
+   * @param cols,             the number of columns in the grid
+   * @param keyframeInterval, the number of frames from one keyframe to the next
+   * @param isCompressed,     whether to compress each frame with Deflate
+   * @throws IOException if the file cannot be created
+   */
+  public TrajectoryRecorder(Path path, int rows, int cols, int keyframeInterval,
+      boolean isCompressed) throws IOException {
+    if (keyframeInterval <= 0) {
+      throw new IllegalArgumentException("Keyframe interval must be positive");
+    }
+    myNumCells = Math.multiplyExact(rows, cols);
+    myKeyframeInterval = keyframeInterval;
+    myDeflater = isCompressed ? new Deflater(Deflater.BEST_SPEED) : null;
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    myOutput = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_BYTES);
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ORDER);
+    header.putInt(MAGIC).putInt(VERSION).putInt(isCompressed ? COMPRESSED : 0)
+        .putInt(keyframeInterval).putInt(rows).putInt(cols);
+    try {
+      myOutput.write(header.array());
+    } catch (IOException e) {
+      close();
+      throw e;
+    }
+  }
+
+  /**
+   * Appends the next generation. The first frame and every keyframe interval frames after it are
+   * keyframes; every other frame only holds the cells that changed since the previous one.
+   *
+   * @param generation, the generation of the states, greater than that of the previous frame
+   * @param states,     the state of each cell in row-major order. The recorder keeps the array to
+   *                    compare with the next frame, so it must not be modified afterwards.
+   * @throws IOException if the frame cannot be written
+   */
+  public void record(int generation, int[] states) throws IOException {
+    if (states.length != myNumCells) {
+      throw new IllegalArgumentException(
+          "Expected " + myNumCells + " states but found " + states.length);
+    }
+    if (myNumFrames > 0 && generation <= myLastGeneration) {
+      throw new IllegalArgumentException("Generation " + generation + " is not after "
+          + myLastGeneration);
+    }
+    boolean isKeyframe = myNumFrames % myKeyframeInterval == 0;
+    int length = isKeyframe ? encodeKeyframe(states) : encodeDelta(states);
+    writeFrame(isKeyframe ? KEYFRAME : DELTA, generation, length);
+    myPrevious = states;
+    myLastGeneration = generation;
+    myNumFrames++;
+  }
+
+  /**
+   * @return the number of frames recorded so far
+   */
+  public int getNumFrames() {
+    return myNumFrames;
+  }
+
+  /**
+   * Flushes the frames still buffered and closes the file
+   *
+   * @throws IOException if the file cannot be written
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      myOutput.close();
+    } finally {
+      if (myDeflater != null) {
+        myDeflater.end();
+      }
+    }
+  }
+
+  private int encodeKeyframe(int[] states) {
+    int length = 0;
+    for (int state : states) {
+      length = putVarint(ensureContent(length), length, state);
+    }
+    return length;
+  }
+
+  /**
+   * Encodes the cells whose state differs from the previous frame. The number of changes comes
+   * first, so it is written once the changes are known, in the space left for it at the start.
+   */
+  private int encodeDelta(int[] states) {
+    int length = MAX_VARINT_BYTES;
+    int count = 0;
+    int previous = 0;
+    for (int i = 0; i < states.length; i++) {
+      if (states[i] != myPrevious[i]) {
+        length = putVarint(ensureContent(length), length, i - previous);
+        length = putVarint(myContent, length, states[i]);
+        previous = i;
+        count++;
+      }
+    }
+    int start = MAX_VARINT_BYTES - varintLength(count);
+    putVarint(myContent, start, count);
+    System.arraycopy(myContent, start, myContent, 0, length - start);
+    return length - start;
+  }
+
+  private void writeFrame(byte kind, int generation, int length) throws IOException {
+    byte[] stored = myContent;
+    int storedLength = length;
+    if (myDeflater != null) {
+      myDeflater.reset();
+      myDeflater.setInput(myContent, 0, length);
+      myDeflater.finish();
+      storedLength = 0;
+      while (!myDeflater.finished()) {
+        if (storedLength == myCompressed.length) {
+          myCompressed = Arrays.copyOf(myCompressed, 2 * myCompressed.length);
+        }
+        storedLength += myDeflater.deflate(myCompressed, storedLength,
+            myCompressed.length - storedLength);
+      }
+      stored = myCompressed;
+    }
+    myFrameHeader[0] = kind;
+    int headerLength = putVarint(myFrameHeader, 1, generation);
+    headerLength = putVarint(myFrameHeader, headerLength, length);
+    headerLength = putVarint(myFrameHeader, headerLength, storedLength);
+    myOutput.write(myFrameHeader, 0, headerLength);
+    myOutput.write(stored, 0, storedLength);
+  }
+
+  /**
+   * Grows the content buffer if fewer than two varints fit after the given length
+   *
+   * @return the content buffer
+   */
+  private byte[] ensureContent(int length) {
+    if (length + 2 * MAX_VARINT_BYTES > myContent.length) {
+      myContent = Arrays.copyOf(myContent, 2 * myContent.length);
+    }
+    return myContent;
+  }
+
+  /**
+   * Writes a non-negative int in as few bytes as it needs, 7 bits at a time, lowest bits first,
+   * with the high bit of every byte but the last set
+   *
+   * @return the position after the varint
+   */
+  static int putVarint(byte[] bytes, int position, int value) {
+    while ((value & ~0x7F) != 0) {
+      bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    bytes[position++] = (byte) value;
+    return position;
+  }
+
+  private static int varintLength(int value) {
+    int length = 1;
+    while ((value & ~0x7F) != 0) {
+      value >>>= 7;
+      length++;
+    }
+    return length;
+  }
+}
@@ -5,10 +5,14 @@ import cellsociety.model.core.cell.WatorCell;
 import cellsociety.model.core.shape.Shape;
 import cellsociety.model.neighborhood.Neighborhood;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
 
 /**
  * This cellular automata simulation represents the Predator-Prey simulation developed by Alexander
@@ -22,11 +26,40 @@ public class WatorSimulation extends Simulation<WatorCell> {
   public static final int EMPTY = 0;
   public static final int FISH = 1;
   public static final int SHARK = 2;
-  public static final int[] UPDATE_ORDER = {SHARK, FISH, EMPTY};
+  public static final String AGE_EXTRA = "age";
+  public static final String ENERGY_EXTRA = "energy";
   private final int fishAgeOfReproduction;
   private final int sharkAgeOfReproduction;
   private final int energyBoost;
   private final int initialEnergy;
+  /**
+   * Row-major indices of all cells currently occupied by sharks (and fish), kept in ascending
+   * order so that creatures are updated in the same order as a full scan of the grid would
+   */
+  private int[] mySharks;
+  private int mySharkCount;
+  private int[] myFish;
+  private int myFishCount;
+  /**
+   * Indices of cells whose next state was set during the current step. Only these cells need to be
+   * updated, as every other cell is empty and stays empty.
+   */
+  private int[] myTouchedCells;
+  private int myTouchedCount;
+  private int myUpdatedCount;
+  private boolean[] isTouched;
+  /**
+   * Parallel mode state. Creatures of the same species are moved concurrently, and a creature may
+   * only move (or breed) into a cell after winning that cell. myClaims holds, for each cell, one
+   * more than the index of the creature that has claimed it, or UNCLAIMED. myTargets records, for
+   * each creature's cell, the cell it moved into so that the touched cells can be gathered after
+   * the step.
+   */
+  private static final int NO_TARGET = -1;
+  private static final int UNCLAIMED = 0;
+  private boolean isParallel;
+  private AtomicIntegerArray myClaims;
+  private int[] myTargets;
 
   /**
    * Initializes a WatorSimulation object
@@ -41,11 +74,12 @@ public class WatorSimulation extends Simulation<WatorCell> {
 
   public WatorSimulation(int row, int col, Neighborhood hoodType, List<Integer> stateList,
       SimulationRecord r) {
-    super(hoodType, r.gridType());
+    super(hoodType, r);
     this.fishAgeOfReproduction = (int) Math.floor(r.params().get("fishAgeOfReproduction"));
     this.sharkAgeOfReproduction = (int) Math.floor(r.params().get("sharkAgeOfReproduction"));
     this.initialEnergy = (int) Math.floor(r.params().get("initialEnergy"));
     this.energyBoost = (int) Math.floor(r.params().get("energyBoost"));
+    this.isParallel = r.params().getOrDefault("parallel", 0.0) >= 1;
     createCellsAndGrid(row, col, stateList, getCellShape(r.cellShape()), hoodType);
   }
 
@@ -69,27 +103,251 @@ public class WatorSimulation extends Simulation<WatorCell> {
     params.put("initialEnergy", initialEnergy);
     params.put("energyBoost", energyBoost);
     for (int i = 0; i < stateList.size(); i++) {
-      cellList.add(new WatorCell(stateList.get(i), i / col, i % col, shape, params));
+      cellList.add(
+          new WatorCell(stateList.get(i), i / col, i % col, shape, params, getRandom()));
     }
     return cellList;
   }
 
 
   /**
-   * Transition function for Wator World. Iterates through each cell, starting with all the sharks,
-   * then fish, then empty, and calls the cell's transition function.
+   * Builds the lists of occupied cells by scanning the grid once, whenever the grid is created
+   */
+  @Override
+  protected void initializeStructures() {
+    int numCells = getNumCells();
+    mySharks = new int[numCells];
+    myFish = new int[numCells];
+    myTouchedCells = new int[numCells];
+    isTouched = new boolean[numCells];
+    mySharkCount = 0;
+    myFishCount = 0;
+    myTouchedCount = 0;
+    myUpdatedCount = 0;
+    myClaims = null;
+    myTargets = null;
+    for (int i = 0; i < numCells; i++) {
+      addToOccupancyLists(i);
+    }
+  }
+
+  /**
+   * Copies the age and energy of the creature in every cell
+   *
+   * @return the ages and energies of every cell in row-major order, by name
+   */
+  @Override
+  public Map<String, int[]> getCellExtras() {
+    int numCells = getNumCells();
+    int[] ages = new int[numCells];
+    int[] energies = new int[numCells];
+    for (int i = 0; i < numCells; i++) {
+      ages[i] = getCell(i).getAge();
+      energies[i] = getCell(i).getEnergy();
+    }
+    Map<String, int[]> extras = new LinkedHashMap<>();
+    extras.put(AGE_EXTRA, ages);
+    extras.put(ENERGY_EXTRA, energies);
+    return extras;
+  }
+
+  /**
+   * Restores the age and energy of the creature in every cell. Cells keep the age and energy they
+   * were created with if either is missing.
+   *
+   * @param extras, the ages and energies of every cell in row-major order, by name
+   */
+  @Override
+  public void setCellExtras(Map<String, int[]> extras) {
+    int[] ages = extras.get(AGE_EXTRA);
+    int[] energies = extras.get(ENERGY_EXTRA);
+    if (ages == null || energies == null) {
+      return;
+    }
+    for (int i = 0; i < getNumCells(); i++) {
+      getCell(i).setAgeAndEnergy(ages[i], energies[i]);
+    }
+  }
+
+  /**
+   * Updates the parameters of every cell, and switches between sequential and parallel stepping
+   *
+   * @param newParameters, the updated parameter values
+   */
+  @Override
+  public void setParams(Map<String, Double> newParameters) {
+    super.setParams(newParameters);
+    isParallel = newParameters.getOrDefault("parallel", 0.0) >= 1;
+  }
+
+  /**
+   * Transition function for Wator World. Calls the transition function of every shark, and then of
+   * every fish that has not been eaten. Empty cells are never visited, so the cost of a step is
+   * proportional to the number of creatures rather than to the size of the ocean. In parallel mode,
+   * all sharks move concurrently, and then all fish, so sharks still get first pick of every cell.
    */
   @Override
   public void transitionFunction() {
-    for (int cellToUpdate : UPDATE_ORDER) {
-      Iterator<WatorCell> gridIterator = getIterator();
-      while (gridIterator.hasNext()) {
-        Cell currentCell = gridIterator.next();
-        if (currentCell.getNextState() == Cell.PLACEHOLDER &&
-            currentCell.getCurrentState() == cellToUpdate) {
-          currentCell.transition();
+    if (isParallel) {
+      moveInParallel(mySharks, mySharkCount);
+      moveInParallel(myFish, myFishCount);
+    } else {
+      transitionCreatures(mySharks, mySharkCount);
+      transitionCreatures(myFish, myFishCount);
+    }
+  }
+
+  /**
+   * Updates the current state of every cell touched during the transition function, and rebuilds
+   * the lists of occupied cells from them.
+   */
+  @Override
+  public void processUpdate() {
+    if (isParallel) {
+      gatherParallelMoves();
+      IntStream.range(0, myTouchedCount).parallel()
+          .forEach(i -> getCell(myTouchedCells[i]).updateStates());
+    } else {
+      for (int i = 0; i < myTouchedCount; i++) {
+        getCell(myTouchedCells[i]).updateStates();
+      }
+    }
+    mySharkCount = 0;
+    myFishCount = 0;
+    for (int i = 0; i < myTouchedCount; i++) {
+      int index = myTouchedCells[i];
+      isTouched[index] = false;
+      addToOccupancyLists(index);
+    }
+    myUpdatedCount = myTouchedCount;
+    myTouchedCount = 0;
+    if (isParallel) {
+      Arrays.parallelSort(mySharks, 0, mySharkCount);
+      Arrays.parallelSort(myFish, 0, myFishCount);
+    } else {
+      Arrays.sort(mySharks, 0, mySharkCount);
+      Arrays.sort(myFish, 0, myFishCount);
+    }
+  }
+
+  /**
+   * Calls the transition function of each creature in a list, skipping those whose next state has
+   * already been decided (such as fish that were eaten), and records every cell affected by it.
+   *
+   * @param creatures row-major indices of the creatures to update
+   * @param count     number of valid entries in creatures
+   */
+  private void transitionCreatures(int[] creatures, int count) {
+    for (int i = 0; i < count; i++) {
+      WatorCell cell = getCell(creatures[i]);
+      if (cell.getNextState() == Cell.PLACEHOLDER) {
+        WatorCell target = cell.move(getRandom(), WatorCell.UNCLAIMED);
+        markTouched(creatures[i]);
+        if (target != null) {
+          markTouched(indexOf(target));
         }
       }
     }
   }
-}
\ No newline at end of file
+
+  /**
+   * Moves every creature in a list concurrently. Creatures whose own cell was claimed by an earlier
+   * phase (fish eaten by sharks) are skipped. Every creature first bids for the cell it wants, and
+   * then moves again, the same way, into that cell if it won it or stays put if it did not, so
+   * which creature gets a cell does not depend on which thread moves it. Each creature draws its
+   * random numbers from a seed hashed from its cell and a salt drawn from the simulation's random
+   * number generator, so a step depends only on the simulation's seed, like a step in order does.
+   *
+   * @param creatures row-major indices of the creatures to update
+   * @param count     number of valid entries in creatures
+   */
+  private void moveInParallel(int[] creatures, int count) {
+    if (myClaims == null) {
+      myClaims = new AtomicIntegerArray(getNumCells());
+      myTargets = new int[getNumCells()];
+      Arrays.fill(myTargets, NO_TARGET);
+    }
+    long salt = getRandom().nextLong();
+    IntStream.range(0, count).parallel().forEach(i -> {
+      int index = creatures[i];
+      if (myClaims.get(index) == UNCLAIMED) {
+        getCell(index).move(new Random(mix(salt + index)), cell -> {
+          bid(indexOf(cell), index);
+          return false;
+        });
+      }
+    });
+    IntStream.range(0, count).parallel().forEach(i -> {
+      int index = creatures[i];
+      if (myClaims.get(index) == UNCLAIMED) {
+        WatorCell target = getCell(index).move(new Random(mix(salt + index)),
+            cell -> myClaims.get(indexOf(cell)) == index + 1);
+        if (target != null) {
+          myTargets[index] = indexOf(target);
+        }
+      }
+    });
+  }
+
+  /**
+   * Bids for a cell on behalf of a creature. Of all the creatures of one species that bid for a
+   * cell, the one in the lowest-numbered cell wins it, whatever order their bids arrive in. A cell
+   * won by the other species in an earlier phase is kept by it.
+   *
+   * @param target the row-major index of the cell bid for
+   * @param bidder the row-major index of the creature bidding
+   */
+  private void bid(int target, int bidder) {
+    myClaims.accumulateAndGet(target, bidder + 1, (claim, bid) -> claim == UNCLAIMED
+        || claim > bid && getCell(claim - 1).getCurrentState() == getCell(bid - 1)
+        .getCurrentState() ? bid : claim);
+  }
+
+  /**
+   * @return the cells touched by the last step
+   */
+  @Override
+  public int[] getChangedCells() {
+    return Arrays.copyOf(myTouchedCells, myUpdatedCount);
+  }
+
+  /**
+   * Collects the cells touched by a parallel step (every creature that moved or stayed, and every
+   * cell claimed by one) and resets the claims for the next step
+   */
+  private void gatherParallelMoves() {
+    gatherParallelMoves(mySharks, mySharkCount);
+    gatherParallelMoves(myFish, myFishCount);
+    for (int i = 0; i < myTouchedCount; i++) {
+      myClaims.set(myTouchedCells[i], UNCLAIMED);
+    }
+  }
+
+  private void gatherParallelMoves(int[] creatures, int count) {
+    for (int i = 0; i < count; i++) {
+      int index = creatures[i];
+      markTouched(index);
+      int target = myTargets[index];
+      if (target != NO_TARGET) {
+        markTouched(target);
+        myTargets[index] = NO_TARGET;
+      }
+    }
+  }
+
+  private void markTouched(int index) {
+    if (!isTouched[index]) {
+      isTouched[index] = true;
+      myTouchedCells[myTouchedCount++] = index;
+    }
+  }
+
+  private void addToOccupancyLists(int index) {
+    int state = getCell(index).getCurrentState();
+    if (state == SHARK) {
+      mySharks[mySharkCount++] = index;
+    } else if (state == FISH) {
+      myFish[myFishCount++] = index;
+    }
+  }
+}
@@ -1,6 +1,8 @@
 package cellsociety.view;
 
 import cellsociety.Point;
+import cellsociety.configuration.ConfigurationCache;
+import cellsociety.configuration.ConfigurationValidator;
 import cellsociety.configuration.XmlParser;
 import cellsociety.exception.InputMissingParametersException;
 import cellsociety.exception.InvalidCellStateException;
@@ -8,28 +10,26 @@ import cellsociety.exception.InvalidFileFormatException;
 import cellsociety.exception.InvalidGridBoundsException;
 import cellsociety.exception.InvalidValueException;
 import cellsociety.model.core.cell.Cell;
-import cellsociety.model.neighborhood.ExtendedMooreNeighborhood;
-import cellsociety.model.neighborhood.MooreNeighborhood;
-import cellsociety.model.neighborhood.Neighborhood;
-import cellsociety.model.neighborhood.VonNeumannNeighborhood;
-import cellsociety.model.simulation.FallingSandSimulation;
-import cellsociety.model.simulation.FireSimulation;
-import cellsociety.model.simulation.GameOfLifeSimulation;
-import cellsociety.model.simulation.PercolationSimulation;
-import cellsociety.model.simulation.SchellingSimulation;
 import cellsociety.model.simulation.Simulation;
+import cellsociety.model.simulation.SimulationFactory;
+import cellsociety.model.simulation.SimulationHistory;
 import cellsociety.model.simulation.SimulationRecord;
-import cellsociety.model.simulation.SugarSimulation;
-import cellsociety.model.simulation.WatorSimulation;
+import cellsociety.model.simulation.SimulationRunner;
+import cellsociety.model.simulation.SimulationSnapshot;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.scene.control.Alert;
@@ -38,7 +38,6 @@ import javafx.scene.control.TextArea;
 import javafx.stage.FileChooser;
 import javafx.stage.FileChooser.ExtensionFilter;
 import javafx.stage.Stage;
-import javafx.util.Duration;
 
 /**
  * This class is the main driver of the simulation.
@@ -58,29 +57,62 @@ public class Controller {
 
   public static final String DATA_FILE_FOLDER = System.getProperty("user.dir") + "/data";
   public static final String DATA_FILE_EXTENSION = "*.xml";
-  public static final String FIRE = "Fire";
-  public static final String GAME_OF_LIFE = "GameOfLife";
-  public static final String PERCOLATION = "Percolation";
-  public static final String SCHELLING = "Schelling";
-  public static final String WATOR = "Wator";
-  public static final String SUGAR = "Sugar";
-  public static final String FALLING = "Falling";
+  public static final String LIFE_PATTERN_FILE_EXTENSION = "*.rle";
+  public static final String FIRE = SimulationFactory.FIRE;
+  public static final String GAME_OF_LIFE = SimulationFactory.GAME_OF_LIFE;
+  public static final String PERCOLATION = SimulationFactory.PERCOLATION;
+  public static final String SCHELLING = SimulationFactory.SCHELLING;
+  public static final String WATOR = SimulationFactory.WATOR;
+  public static final String SUGAR = SimulationFactory.SUGAR;
+  public static final String FALLING = SimulationFactory.FALLING;
   public static final String UPLOAD_FILE_TEXT_KEY = "uploadFile";
   public static final String SECOND_DELAY_KEY = "SECOND_DELAY";
   public static final String UPLOAD_FILE_WINDOW_TITLE_KEY = "uploadFileWindowTitle";
   public static final String ABOUT_MIN_HEIGHT_KEY = "ABOUT_MIN_HEIGHT";
+  public static final String JUMP_GRAPH_SAMPLES_KEY = "JUMP_GRAPH_SAMPLES";
+  public static final String HISTORY_MEMORY_MB_KEY = "HISTORY_MEMORY_MB";
+  public static final String HISTORY_KEYFRAME_INTERVAL_KEY = "HISTORY_KEYFRAME_INTERVAL";
+  public static final String CONFIGURATION_CACHE_MB_KEY = "CONFIGURATION_CACHE_MB";
+  private static final int BYTES_PER_MB = 1 << 20;
+  // configurations already read, shared by every window so reopening a file skips parsing it
+  private static final ConfigurationCache CONFIGURATION_CACHE = new ConfigurationCache(
+      Long.parseLong(ResourceBundle.getBundle(SimulationPage.DEFAULT_RESOURCE_PACKAGE
+          + SimulationPage.CONFIG_RESOURCE_FILE).getString(CONFIGURATION_CACHE_MB_KEY))
+          * BYTES_PER_MB);
+
   private Stage stage;
   private SimulationPage simulationPage;
   private XmlParser xmlParser;
   private Simulation simulationModel;
-  private Timeline animation;
+  private SimulationRunner simulationRunner;
+  private int historyGeneration = -1;
+  private AnimationTimer animation;
   private int speed;
-  private boolean simulationRunning = false;
   private ResourceBundle textConfig;
   private FileChooser fileChooser;
   private Settings settingsPanel;
   private Save savePanel;
 
+  /**
+   * reads every configuration in the data folder on a background thread, so that opening one of
+   * them from the file chooser finds it already in the cache. Called once, when the program starts.
+   */
+  public static void preloadConfigurations() {
+    Thread preloader = new Thread(() -> {
+      try {
+        new ConfigurationValidator(CONFIGURATION_CACHE,
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 1))
+            .validate(Path.of(DATA_FILE_FOLDER));
+      } catch (IOException e) {
+        // files that could not be preloaded are read when they are opened
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }, "configuration-preloader");
+    preloader.setDaemon(true);
+    preloader.start();
+  }
+
   /**
    * Constructs the controller class
    */
@@ -88,7 +120,7 @@ public class Controller {
     try {
       stage = new Stage();
       textConfig = ResourceBundle.getBundle(TEXT_CONFIGURATION);
-      fileChooser = makeChooser(DATA_FILE_EXTENSION);
+      fileChooser = makeChooser(DATA_FILE_EXTENSION, LIFE_PATTERN_FILE_EXTENSION);
       showMessage(AlertType.INFORMATION, String.format(textConfig.getString(UPLOAD_FILE_TEXT_KEY)));
       File dataFile = chooseFile();
       if (dataFile == null) {
@@ -104,23 +136,40 @@ public class Controller {
     }
   }
 
+  /**
+   * redraws the simulation once per frame, from the latest snapshot published by the thread
+   * running it. Frames in which the simulation has not changed are skipped.
+   */
   private void setAnimation() {
-    animation = new Timeline();
-    animation.setCycleCount(Timeline.INDEFINITE);
-    double frameDuration = 1.0 / (simulationPage.configDouble(
-        SECOND_DELAY_KEY)); // Calculate the duration for the KeyFrame
-    animation.getKeyFrames()
-        .add(new KeyFrame(Duration.seconds(frameDuration), e -> step()));
-    animation.play();
+    animation = new AnimationTimer() {
+      @Override
+      public void handle(long now) {
+        Throwable failure = simulationRunner.takeFailure();
+        if (failure != null) {
+          // dialogs cannot be shown while an animation frame is being handled
+          Platform.runLater(() -> showMessage(AlertType.ERROR, describe(failure)));
+        }
+        SimulationSnapshot snapshot = simulationRunner.takeLatest();
+        if (snapshot != null) {
+          simulationPage.updateView(snapshot);
+          if (historyGeneration < 0) {
+            simulationPage.updateHistorySlider(simulationRunner.getOldestGeneration(),
+                snapshot.generation());
+          }
+        }
+      }
+    };
+    animation.start();
   }
 
-  private void step() {
-    if (simulationRunning) {
-      simulationModel.transitionFunction();
-      simulationModel.processUpdate();
-
-      simulationPage.updateView(simulationModel.getIterator());
-    }
+  /**
+   * gets the number of generations per second to run at the given speed slider value
+   *
+   * @param sliderValue the value of the speed slider
+   * @return the number of generations per second
+   */
+  private double getStepsPerSecond(double sliderValue) {
+    return sliderValue * simulationPage.configDouble(SECOND_DELAY_KEY);
   }
 
 
@@ -129,12 +178,12 @@ public class Controller {
       InvalidGridBoundsException,
       InputMissingParametersException,
       InvalidCellStateException {
-    xmlParser = new XmlParser();
+    xmlParser = new XmlParser(CONFIGURATION_CACHE);
     xmlParser.readXml(filePath);
   }
 
   private void pauseSimulation() {
-    simulationRunning = false;
+    simulationRunner.pause();
   }
 
   /**
@@ -150,6 +199,7 @@ public class Controller {
   private void setSimulation() {
     loadSimulationModel();
     loadSimulationScene();
+    loadSimulationRunner();
 
     settingsPanel = new Settings(xmlParser.getLanguage(), xmlParser.getGridEdgeType(),
         xmlParser.getParameters(), xmlParser.getType(), event -> onApplyClicked());
@@ -158,6 +208,7 @@ public class Controller {
   }
 
   private void onApplySaveClicked() {
+    commitHistory();
     savePanel.updateValues();
     savePanel.hideSavePanel();
     String title = savePanel.getTitle();
@@ -167,64 +218,52 @@ public class Controller {
     xmlParser.setTitle(title);
     xmlParser.setAuthor(author);
     xmlParser.setDescription(description);
-    xmlParser.createXml(file + xmlParser.getType(),
-        xmlParser.getType().toLowerCase());
+    XmlParser parser = xmlParser;
+    whenDone(simulationRunner.getStates(), states -> parser.createXml(file + parser.getType(),
+        parser.getType().toLowerCase(), states));
   }
 
   private void onApplyClicked() {
     settingsPanel.saveChanges();
     settingsPanel.closeSettingsPanel();
-    simulationModel.setParams(settingsPanel.getNewParameters());
-    simulationModel.setEdgeType(settingsPanel.getNewEdgeType());
+    commitHistory();
+    Simulation<?> model = simulationModel;
+    Map<String, Double> parameters = settingsPanel.getNewParameters();
+    String edgeType = settingsPanel.getNewEdgeType();
+    whenDone(simulationRunner.update(() -> {
+      model.setParams(parameters);
+      model.setEdgeType(edgeType);
+    }));
     simulationPage.toggleOnOffCellOutlines(settingsPanel.getOutlineType());
     switchLanguage(settingsPanel.getNewLanguage());
   }
 
 
   /**
-   * gets the neighborhood object based on the neighborhood type string
-   *
-   * @param neighborhoodTypeString a string that specifies which type of neighborhood the current
-   *                               simulation is using
-   * @return returns the neighborhood object
+   * Sets up the simulation model component
    */
-  private Neighborhood getNeighborhoodObject(String neighborhoodTypeString)
-      throws IllegalStateException {
-    return switch (neighborhoodTypeString) {
-      case "Moore" -> new MooreNeighborhood();
-      case "ExtendedMoore" -> new ExtendedMooreNeighborhood();
-      case "VonNeumann" -> new VonNeumannNeighborhood();
-      default -> throw new IllegalStateException("Unexpected value: " + neighborhoodTypeString);
-    };
+  private void loadSimulationModel() {
+    SimulationRecord record = new SimulationRecord(xmlParser.getParameters(),
+        xmlParser.getGridEdgeType(), xmlParser.getCellShape());
+    simulationModel = SimulationFactory.create(xmlParser.getType(), xmlParser.getHeight(),
+        xmlParser.getWidth(), xmlParser.getNeighborhoodType(), xmlParser.getStates(), record);
   }
 
   /**
-   * Sets up the simulation model component
+   * starts a new thread to run the simulation model, recording its recent generations for step
+   * back and scrubbing, and stops the thread that ran the previous model, if any
    */
-  private void loadSimulationModel() {
-    int numRows = xmlParser.getHeight();
-    int numCols = xmlParser.getWidth();
-    Neighborhood neighborhoodType = getNeighborhoodObject(xmlParser.getNeighborhoodType());
-    List<Integer> stateList = xmlParser.getStates();
-    String simulationType = xmlParser.getType();
-    String gridType = xmlParser.getGridEdgeType();
-    String cellShape = xmlParser.getCellShape();
-    SimulationRecord record = new SimulationRecord(xmlParser.getParameters(), gridType, cellShape);
-    simulationRunning = false;
-    simulationModel = switch (simulationType) {
-      case GAME_OF_LIFE ->
-          new GameOfLifeSimulation(numRows, numCols, neighborhoodType, stateList, record);
-      case PERCOLATION ->
-          new PercolationSimulation(numRows, numCols, neighborhoodType, stateList, record);
-      case FIRE -> new FireSimulation(numRows, numCols, neighborhoodType, stateList, record);
-      case SCHELLING ->
-          new SchellingSimulation(numRows, numCols, neighborhoodType, stateList, record);
-      case WATOR -> new WatorSimulation(numRows, numCols, neighborhoodType, stateList, record);
-      case SUGAR -> new SugarSimulation(numRows, numCols, neighborhoodType, stateList, record);
-      case FALLING ->
-          new FallingSandSimulation(numRows, numCols, neighborhoodType, stateList, record);
-      default -> null;
-    };
+  private void loadSimulationRunner() {
+    if (simulationRunner != null) {
+      simulationRunner.stop();
+    }
+    historyGeneration = -1;
+    SimulationHistory history = new SimulationHistory(
+        (long) simulationPage.configInt(HISTORY_MEMORY_MB_KEY) * BYTES_PER_MB,
+        simulationPage.configInt(HISTORY_KEYFRAME_INTERVAL_KEY));
+    simulationRunner = new SimulationRunner(simulationModel,
+        getStepsPerSecond(simulationPage.getSliderValue()), history);
+    simulationRunner.start();
   }
 
 
@@ -248,11 +287,13 @@ public class Controller {
 
     simulationPage.setSpeedSliderHandler((observable, oldValue, newValue) -> {
       speed = newValue.intValue();
-      double frameDuration = 1.0 / (speed * simulationPage.configDouble(SECOND_DELAY_KEY));
-      animation.setRate(speed);
-      animation.setDelay(Duration.seconds(frameDuration));
+      simulationRunner.setStepsPerSecond(getStepsPerSecond(speed));
       simulationPage.updateSpeedLabel(speed);
     });
+    simulationPage.setHistorySliderHandler((observable, oldValue, newValue) -> {
+      pauseSimulation();
+      showHistory(newValue.intValue());
+    });
   }
 
   private Map<String, String> getParamsForSimulationPage() {
@@ -282,6 +323,8 @@ public class Controller {
     map.put("resetSimulationHandler", event -> onResetSimulation());
     map.put("settingsHandler", event -> onSettingsClicked());
     map.put("multiSimulationHandler", event -> createParallelWindow());
+    map.put("jumpHandler", event -> onJumpClicked());
+    map.put("stepBackHandler", event -> onStepBackClicked());
     return map;
   }
 
@@ -307,9 +350,28 @@ public class Controller {
   }
 
 
+  /**
+   * runs the number of generations typed in the jump field without rendering them, sampling the
+   * graph along the way, and then displays the final state
+   */
+  private void onJumpClicked() {
+    pauseSimulation();
+    commitHistory();
+    int generations = simulationPage.getJumpGenerations();
+    if (generations == 0) {
+      return;
+    }
+    int sampleInterval = Math.max(1,
+        generations / simulationPage.configInt(JUMP_GRAPH_SAMPLES_KEY));
+    whenDone(simulationRunner.advance(generations, sampleInterval,
+        (generation, counts) -> Platform.runLater(
+            () -> simulationPage.addGraphSample(generation, counts))));
+  }
+
   private void onStartSimulation() {
-    simulationRunning = true;
-    animation.setRate(simulationPage.getSliderValue());
+    commitHistory();
+    simulationRunner.setStepsPerSecond(getStepsPerSecond(simulationPage.getSliderValue()));
+    simulationRunner.resume();
   }
 
   private void onInfoButtonClicked() {
@@ -338,7 +400,7 @@ public class Controller {
 
   private void onNewSimulationClicked() {
     try {
-      simulationRunning = false;
+      pauseSimulation();
       File dataFile = chooseFile();
       if (dataFile == null) {
         return;
@@ -353,14 +415,110 @@ public class Controller {
 
   private void onResetSimulation() {
     pauseSimulation();
-    simulationModel.createCellsAndGrid(xmlParser.getHeight(), xmlParser.getWidth(),
-        xmlParser.getStates(), simulationModel.getCellShape(xmlParser.getCellShape()),
-        getNeighborhoodObject(
-            xmlParser.getNeighborhoodType()));
-    simulationPage.updateView(simulationModel.getIterator());
+    historyGeneration = -1;
+    List<Integer> states = xmlParser.getStates();
+    Consumer<List<Integer>> rebuilder = makeRebuilder();
+    whenDone(simulationRunner.reset(() -> rebuilder.accept(states)));
     simulationPage.resetGraph();
   }
 
+  /**
+   * shows the generation before the one on screen, from the history of recent generations
+   */
+  private void onStepBackClicked() {
+    pauseSimulation();
+    int generation = historyGeneration >= 0 ? historyGeneration : simulationRunner.getGeneration();
+    showHistory(generation - 1);
+  }
+
+  /**
+   * shows an earlier generation from the history without changing the simulation, until the
+   * simulation is started again or changed
+   *
+   * @param generation the generation to show
+   */
+  private void showHistory(int generation) {
+    whenDone(simulationRunner.show(generation), shown -> {
+      if (shown >= 0) {
+        historyGeneration = shown;
+        simulationPage.setHistorySliderValue(shown);
+      }
+    });
+  }
+
+  /**
+   * rewinds the simulation to the generation shown from the history, if any, so that starting,
+   * jumping, saving or changing settings carries on from what is on screen
+   */
+  private void commitHistory() {
+    if (historyGeneration < 0) {
+      return;
+    }
+    Consumer<List<Integer>> rebuilder = makeRebuilder();
+    whenDone(simulationRunner.rewind(historyGeneration,
+        states -> rebuilder.accept(Arrays.stream(states).boxed().toList())), generation -> {
+      if (generation >= 0) {
+        simulationPage.truncateGraph(generation);
+      }
+    });
+    historyGeneration = -1;
+  }
+
+  /**
+   * makes a function that creates the cells of the simulation again from the given states, keeping
+   * its shape and neighborhood. Everything it needs is read now, so that it can be run by the
+   * thread running the simulation.
+   *
+   * @return a function taking the state of each cell in row-major order
+   */
+  private Consumer<List<Integer>> makeRebuilder() {
+    Simulation<?> model = simulationModel;
+    int rows = xmlParser.getHeight();
+    int cols = xmlParser.getWidth();
+    String cellShape = xmlParser.getCellShape();
+    String neighborhoodType = xmlParser.getNeighborhoodType();
+    return states -> model.createCellsAndGrid(rows, cols, states, model.getCellShape(cellShape),
+        SimulationFactory.getNeighborhood(neighborhoodType));
+  }
+
+  /**
+   * shows the error a request made of the thread running the simulation failed with, if any
+   *
+   * @param request the request made of the thread running the simulation
+   */
+  private void whenDone(CompletableFuture<?> request) {
+    whenDone(request, result -> {
+    });
+  }
+
+  /**
+   * runs an action on the JavaFX thread once the thread running the simulation has carried out a
+   * request, or shows the error the request failed with
+   *
+   * @param request the request made of the thread running the simulation
+   * @param action  receives the result of the request
+   */
+  private <T> void whenDone(CompletableFuture<T> request, Consumer<T> action) {
+    request.whenComplete((result, error) -> Platform.runLater(() -> {
+      if (error != null) {
+        showMessage(AlertType.ERROR, describe(error));
+      } else {
+        action.accept(result);
+      }
+    }));
+  }
+
+  /**
+   * describes an error thrown by the thread running the simulation, by its name if it has no
+   * message, as is the case for a StackOverflowError
+   *
+   * @param error the error to describe
+   * @return the message of the error, or its name
+   */
+  private static String describe(Throwable error) {
+    return error.getMessage() != null ? error.getMessage() : error.toString();
+  }
+
   /**
    * Shows a message dialog box according to the type and message text arguments
    *
@@ -375,10 +533,10 @@ public class Controller {
   /**
    * set up the filechooser
    *
-   * @param extensionAccepted a string that specifies what type of file extensions are accepted
+   * @param extensionAccepted strings that specify what type of file extensions are accepted
    * @return returns the FileChooser object.
    */
-  private FileChooser makeChooser(String extensionAccepted) {
+  private FileChooser makeChooser(String... extensionAccepted) {
     FileChooser result = new FileChooser();
     result.setTitle(textConfig.getString(UPLOAD_FILE_WINDOW_TITLE_KEY));
 
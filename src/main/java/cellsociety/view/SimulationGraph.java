@@ -84,6 +84,34 @@ public class SimulationGraph {
     step++;
   }
 
+  /**
+   * updates the graph with the state counts of a given generation. Generations may be skipped, for
+   * instance when the simulation runs faster than it is displayed, and generations that are already
+   * on the graph are ignored.
+   *
+   * @param stateCount map of existing states and the number of cells in that state
+   * @param generation the generation the state counts were taken at
+   */
+  public void updateGraph(Map<Integer, Integer> stateCount, int generation) {
+    if (generation >= step) {
+      step = generation;
+      updateGraph(stateCount);
+    }
+  }
+
+  /**
+   * removes every point after a generation from the graph, so that the graph follows the
+   * simulation again after it is rewound to that generation
+   *
+   * @param generation the last generation to keep on the graph
+   */
+  public void truncateGraph(int generation) {
+    for (XYChart.Series<Number, Number> series : lineChart.getData()) {
+      series.getData().removeIf(data -> data.getXValue().intValue() > generation);
+    }
+    step = Math.min(step, generation + 1);
+  }
+
   /**
    * clears the graph
    */
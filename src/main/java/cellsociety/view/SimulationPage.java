@@ -2,6 +2,7 @@ package cellsociety.view;
 
 import cellsociety.Point;
 import cellsociety.model.core.cell.Cell;
+import cellsociety.model.simulation.SimulationSnapshot;
 import cellsociety.view.cellview.CellView;
 import cellsociety.view.cellview.FallingCellView;
 import cellsociety.view.cellview.FireCellView;
@@ -23,6 +24,7 @@ import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.Slider;
+import javafx.scene.control.TextField;
 import javafx.scene.text.Font;
 import javafx.scene.text.Text;
 
@@ -55,6 +57,14 @@ public class SimulationPage {
   public static final String SPEED_SLIDER_Y_KEY = "SPEED_SLIDER_Y";
   public static final String SETTINGS_BUTTON_Y_KEY = "SETTINGS_BUTTON_Y";
   public static final String ADD_SIMULATION_BUTTON_Y_KEY = "ADD_SIMULATION_BUTTON_Y";
+  public static final String JUMP_FIELD_Y_KEY = "JUMP_FIELD_Y";
+  public static final String JUMP_FIELD_WIDTH_KEY = "JUMP_FIELD_WIDTH";
+  public static final String JUMP_BUTTON_Y_KEY = "JUMP_BUTTON_Y";
+  public static final String JUMP_DEFAULT_KEY = "JUMP_DEFAULT";
+  public static final String STEP_BACK_BUTTON_Y_KEY = "STEP_BACK_BUTTON_Y";
+  public static final String HISTORY_SLIDER_X_KEY = "HISTORY_SLIDER_X";
+  public static final String HISTORY_SLIDER_Y_KEY = "HISTORY_SLIDER_Y";
+  public static final String HISTORY_SLIDER_WIDTH_KEY = "HISTORY_SLIDER_WIDTH";
   public static final String SPEED_SLIDER_MIN_KEY = "SLIDER_MIN";
   public static final String SPEED_SLIDER_MAX_KEY = "SLIDER_MAX";
   public static final String DEFAULT_RESOURCE_PACKAGE = "cellsociety.";
@@ -80,6 +90,8 @@ public class SimulationPage {
   public static final String CLOSE_GRAPH_BUTTON_KEY = "CloseGraph";
   public static final String SETTINGS_BUTTON_KEY = "Settings";
   public static final String MULTI_SIMULATION_BUTTON = "AddSimulationButton";
+  public static final String JUMP_BUTTON_KEY = "JumpButton";
+  public static final String STEP_BACK_BUTTON_KEY = "StepBackButton";
   private final Scene scene;
   private final Group root;
   private final ResourceBundle configProperties;
@@ -97,7 +109,12 @@ public class SimulationPage {
   private Button simulationGraphButton;
   private Button settingsButton;
   private Button addSimulationButton;
+  private Button jumpButton;
+  private TextField jumpField;
+  private Button stepBackButton;
   private Slider speedSlider;
+  private Slider historySlider;
+  private boolean isUpdatingHistorySlider;
   private Text simulationTitleDisplay;
   private Label speedLabel;
   private ResourceBundle buttonLabels;
@@ -129,6 +146,7 @@ public class SimulationPage {
         Integer.parseInt(params.get("Width")), allVertices);
     initializeButtons(eventHandlers);
     initializeSlider(Integer.parseInt(params.get("InitialSlider")));
+    initializeHistorySlider();
     initializeTitleDisplay(params.get("SimulationName"));
     updateView(gridIterator);
     addToRoot();
@@ -146,9 +164,13 @@ public class SimulationPage {
         simulationGraphButton,
         settingsButton,
         addSimulationButton,
+        jumpField,
+        jumpButton,
+        stepBackButton,
         simulationTitleDisplay,
         speedSlider,
-        speedLabel
+        speedLabel,
+        historySlider
     );
   }
 
@@ -219,6 +241,17 @@ public class SimulationPage {
 
   }
 
+  /**
+   * set up the history slider below the grid, which scrubs through the recent generations kept in
+   * memory
+   */
+  private void initializeHistorySlider() {
+    historySlider = new Slider(0, 0, 0);
+    historySlider.setLayoutX(configInt(HISTORY_SLIDER_X_KEY));
+    historySlider.setLayoutY(configInt(HISTORY_SLIDER_Y_KEY));
+    historySlider.setPrefWidth(configInt(HISTORY_SLIDER_WIDTH_KEY));
+  }
+
 
   /**
    * initialize the buttons
@@ -261,6 +294,41 @@ public class SimulationPage {
         eventHandlers.get("multiSimulationHandler"),
         configInt(BUTTON_START_X_KEY),
         configInt(ADD_SIMULATION_BUTTON_Y_KEY));
+    jumpField = new TextField(configProperties.getString(JUMP_DEFAULT_KEY));
+    jumpField.setLayoutX(configInt(BUTTON_START_X_KEY));
+    jumpField.setLayoutY(configInt(JUMP_FIELD_Y_KEY));
+    jumpField.setPrefWidth(configInt(JUMP_FIELD_WIDTH_KEY));
+    jumpButton = makeButton(buttonLabels.getString(JUMP_BUTTON_KEY),
+        eventHandlers.get("jumpHandler"),
+        configInt(BUTTON_START_X_KEY),
+        configInt(JUMP_BUTTON_Y_KEY));
+    stepBackButton = makeButton(buttonLabels.getString(STEP_BACK_BUTTON_KEY),
+        eventHandlers.get("stepBackHandler"),
+        configInt(BUTTON_START_X_KEY),
+        configInt(STEP_BACK_BUTTON_Y_KEY));
+  }
+
+  /**
+   * gets the number of generations to jump, as typed in the jump field
+   *
+   * @return the number of generations to jump, or 0 if the field does not hold a positive integer
+   */
+  public int getJumpGenerations() {
+    try {
+      return Math.max(0, Integer.parseInt(jumpField.getText().trim()));
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * adds a sample taken during a jump to the graph
+   *
+   * @param generation the generation the sample was taken at
+   * @param stateCount map of existing states and the number of cells in that state
+   */
+  public void addGraphSample(int generation, Map<Integer, Integer> stateCount) {
+    graph.updateGraph(stateCount, generation);
   }
 
   /**
@@ -270,6 +338,15 @@ public class SimulationPage {
     graph.resetGraph();
   }
 
+  /**
+   * removes the generations after the given one from the graph, after the simulation is rewound
+   *
+   * @param generation the generation the simulation was rewound to
+   */
+  public void truncateGraph(int generation) {
+    graph.truncateGraph(generation);
+  }
+
   /**
    * show and hide the graph according to its visibility boolean flag
    */
@@ -313,6 +390,46 @@ public class SimulationPage {
     speedSlider.valueProperty().addListener(speedSliderHandler);
   }
 
+  /**
+   * adds an event listener for the history slider, which is only called when the user moves the
+   * slider, not when it follows the running simulation
+   *
+   * @param historySliderHandler listens to the generation picked on the slider
+   */
+  public void setHistorySliderHandler(ChangeListener<Number> historySliderHandler) {
+    historySlider.valueProperty().addListener((observable, oldValue, newValue) -> {
+      if (!isUpdatingHistorySlider) {
+        historySliderHandler.changed(observable, oldValue, newValue);
+      }
+    });
+  }
+
+  /**
+   * moves the history slider to the latest generation and updates the range of generations it
+   * covers, without calling its handler
+   *
+   * @param oldestGeneration the oldest generation kept in the history
+   * @param latestGeneration the generation the simulation has reached
+   */
+  public void updateHistorySlider(int oldestGeneration, int latestGeneration) {
+    isUpdatingHistorySlider = true;
+    historySlider.setMax(latestGeneration);
+    historySlider.setMin(oldestGeneration);
+    historySlider.setValue(latestGeneration);
+    isUpdatingHistorySlider = false;
+  }
+
+  /**
+   * moves the history slider to a generation without calling its handler
+   *
+   * @param generation the generation being shown
+   */
+  public void setHistorySliderValue(int generation) {
+    isUpdatingHistorySlider = true;
+    historySlider.setValue(generation);
+    isUpdatingHistorySlider = false;
+  }
+
   /**
    * gets the value from the speed slider
    *
@@ -384,6 +501,22 @@ public class SimulationPage {
     graph.updateGraph(stateCount);
   }
 
+  /**
+   * updates the view with a snapshot of the simulation taken by the thread running it
+   *
+   * @param snapshot the states of all cells in row-major order, and the generation they belong to
+   */
+  public void updateView(SimulationSnapshot snapshot) {
+    stateCount.clear();
+    int[] states = snapshot.states();
+    int numCols = board[0].length;
+    for (int i = 0; i < states.length; i++) {
+      board[i / numCols][i % numCols].updateState(states[i]);
+      stateCount.merge(states[i], 1, Integer::sum);
+    }
+    graph.updateGraph(stateCount, snapshot.generation());
+  }
+
   /**
    * gets integer value from config file according to its key string
    *
@@ -447,6 +580,8 @@ public class SimulationPage {
     simulationGraphButton.setText(buttonLabels.getString(SHOW_GRAPH_BUTTON_KEY));
     settingsButton.setText(buttonLabels.getString(SETTINGS_BUTTON_KEY));
     addSimulationButton.setText(buttonLabels.getString(MULTI_SIMULATION_BUTTON));
+    jumpButton.setText(buttonLabels.getString(JUMP_BUTTON_KEY));
+    stepBackButton.setText(buttonLabels.getString(STEP_BACK_BUTTON_KEY));
   }
 
 }